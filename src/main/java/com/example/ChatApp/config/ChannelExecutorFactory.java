@@ -0,0 +1,91 @@
+package com.example.ChatApp.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds the executors behind the STOMP client channels and instruments them:
+ * chat.websocket.channel.wait (time queued), chat.websocket.channel.task (run time),
+ * chat.websocket.channel.in.flight and, for pools, chat.websocket.channel.queued,
+ * all tagged with the channel name.
+ */
+@Component
+@RequiredArgsConstructor
+public class ChannelExecutorFactory {
+
+    private final MeterRegistry meterRegistry;
+
+    public Executor create(String channel, WebSocketProperties.Channel settings) {
+        Tags tags = Tags.of("channel", channel);
+        TaskDecorator decorator = timingDecorator(tags);
+        String threadPrefix = "ws-" + channel + "-";
+
+        if (settings.isVirtualThreads()) {
+            // blocking handlers park a virtual thread instead of holding a pool thread
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadPrefix);
+            executor.setVirtualThreads(true); // fails fast below Java 21
+            executor.setConcurrencyLimit(settings.getConcurrencyLimit());
+            executor.setTaskDecorator(decorator);
+            return executor;
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix(threadPrefix);
+        executor.setCorePoolSize(settings.getCorePoolSize());
+        executor.setMaxPoolSize(settings.getMaxPoolSize());
+        executor.setQueueCapacity(settings.getQueueCapacity());
+        executor.setKeepAliveSeconds(settings.getKeepAliveSeconds());
+        executor.setAllowCoreThreadTimeOut(true);
+        // a full queue pushes back on the connection that produced the work
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setTaskDecorator(decorator);
+        Gauge.builder("chat.websocket.channel.queued", executor, ThreadPoolTaskExecutor::getQueueSize)
+                .description("Tasks waiting for a pool thread")
+                .tags(tags)
+                .register(meterRegistry);
+        return executor; // registered as a bean by the broker config, which initializes and shuts it down
+    }
+
+    private TaskDecorator timingDecorator(Tags tags) {
+        Timer wait = Timer.builder("chat.websocket.channel.wait")
+                .description("Time from submit until a thread starts the task")
+                .tags(tags)
+                .register(meterRegistry);
+        Timer run = Timer.builder("chat.websocket.channel.task")
+                .description("Time spent running the task")
+                .tags(tags)
+                .register(meterRegistry);
+        AtomicInteger inFlight = new AtomicInteger();
+        Gauge.builder("chat.websocket.channel.in.flight", inFlight, AtomicInteger::get)
+                .description("Tasks submitted and not yet finished")
+                .tags(tags)
+                .register(meterRegistry);
+
+        return task -> {
+            long submittedAt = System.nanoTime();
+            inFlight.incrementAndGet();
+            return () -> {
+                long startedAt = System.nanoTime();
+                wait.record(startedAt - submittedAt, TimeUnit.NANOSECONDS);
+                try {
+                    task.run();
+                } finally {
+                    run.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                    inFlight.decrementAndGet();
+                }
+            };
+        };
+    }
+}
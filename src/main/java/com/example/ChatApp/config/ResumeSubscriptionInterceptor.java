@@ -0,0 +1,125 @@
+package com.example.ChatApp.config;
+
+import com.example.ChatApp.dto.MessageDto;
+import com.example.ChatApp.security.ChatUserPrincipal;
+import com.example.ChatApp.service.ChatService;
+import com.example.ChatApp.service.MessageBroadcaster;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.broker.AbstractBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.simp.user.UserDestinationMessageHandler;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongFunction;
+
+/**
+ * Reconnect catch-up. A SUBSCRIBE carrying {@code resume-after: <message id>} gets the
+ * messages it missed since that id replayed to the subscribing session only, instead of the
+ * client reloading the whole history. Room pages come from {@code RoomTailCache} when the
+ * gap is recent and from the indexed range query otherwise.
+ * <p>
+ * Runs after the SUBSCRIBE was handled, so the subscription already receives anything newer
+ * and nothing falls between replay and live delivery; clients drop the odd duplicate by id.
+ * With the broker relay the subscription is registered asynchronously, so that guarantee
+ * is best effort there.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ResumeSubscriptionInterceptor implements ExecutorChannelInterceptor {
+
+    public static final String RESUME_HEADER = "resume-after";
+
+    private static final String ROOM_PREFIX = "/topic/room.";
+    private static final String PRIVATE_DESTINATION = "/user/queue/messages";
+
+    private final ChatService chatService;
+    // the broadcaster needs the client channels this interceptor is installed on
+    private final ObjectProvider<MessageBroadcaster> messageBroadcaster;
+    private final WebSocketProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        if (ex != null) {
+            return;
+        }
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || !StompCommand.SUBSCRIBE.equals(accessor.getCommand())) {
+            return;
+        }
+        String resumeAfter = accessor.getFirstNativeHeader(RESUME_HEADER);
+        String destination = accessor.getDestination();
+        if (resumeAfter == null || destination == null) {
+            return;
+        }
+
+        Long after = parseId(resumeAfter);
+        if (after == null) {
+            return;
+        }
+
+        // each handler of the inbound channel sees the frame; replay once, after the one that subscribes
+        if (destination.startsWith(ROOM_PREFIX) && handler instanceof AbstractBrokerMessageHandler) {
+            Long roomId = parseId(destination.substring(ROOM_PREFIX.length()));
+            if (roomId == null) {
+                return;
+            }
+            replay(accessor, destination, "room", after,
+                    cursor -> chatService.getMessagesForRoomDto(roomId, null, cursor, ChatService.MAX_PAGE_SIZE));
+        } else if (PRIVATE_DESTINATION.equals(destination)
+                && handler instanceof UserDestinationMessageHandler
+                && accessor.getUser() instanceof ChatUserPrincipal principal) {
+            replay(accessor, destination, "private", after,
+                    cursor -> chatService.getPrivateMessagesAfter(principal.userId(), cursor, ChatService.MAX_PAGE_SIZE));
+        }
+    }
+
+    private static Long parseId(String value) {
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            log.debug("Ignoring resume for non-numeric id '{}'", value);
+            return null;
+        }
+    }
+
+    private void replay(StompHeaderAccessor accessor, String destination, String kind, Long after,
+                        LongFunction<List<MessageDto>> pageAfter) {
+        int maxMessages = properties.getResume().getMaxMessages();
+        List<MessageDto> missed = new ArrayList<>();
+        long cursor = after;
+        boolean truncated = false;
+        while (true) {
+            List<MessageDto> page = pageAfter.apply(cursor);
+            int remaining = maxMessages - missed.size();
+            if (page.size() > remaining) {
+                missed.addAll(page.subList(0, remaining));
+                truncated = true;
+                break;
+            }
+            missed.addAll(page);
+            if (page.size() < ChatService.MAX_PAGE_SIZE) {
+                break;
+            }
+            cursor = page.get(page.size() - 1).getId();
+        }
+
+        if (!missed.isEmpty()) {
+            messageBroadcaster.getObject().replay(
+                    accessor.getSessionId(), accessor.getSubscriptionId(), destination, missed, truncated);
+        }
+        meterRegistry.counter("chat.websocket.resume.messages", "kind", kind).increment(missed.size());
+    }
+}
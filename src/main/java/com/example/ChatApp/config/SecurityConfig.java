@@ -43,7 +43,8 @@ public class SecurityConfig {
                 		        "/style.css",
                 		        "/h2-console/**",
                 		        "/private.html",
-                		        "/private.js"
+                		        "/private.js",
+                		        "/actuator/health"
                 		).permitAll()
 
                         .anyRequest().authenticated()
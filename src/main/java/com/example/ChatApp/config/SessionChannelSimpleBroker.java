@@ -0,0 +1,53 @@
+package com.example.ChatApp.config;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The simple broker, remembering the outbound channel it opened for each session. With
+ * {@code preserve-order} that channel is the session's ordering decorator, so frames sent
+ * through {@link #clientOutboundChannel(String)} from outside the broker (reconnect replays)
+ * queue behind and ahead of the broker's own frames for that session instead of racing them.
+ */
+public class SessionChannelSimpleBroker extends SimpleBrokerMessageHandler {
+
+    private final Map<String, MessageChannel> sessionChannels = new ConcurrentHashMap<>();
+
+    public SessionChannelSimpleBroker(SubscribableChannel clientInboundChannel, MessageChannel clientOutboundChannel,
+                                      SubscribableChannel brokerChannel, Collection<String> destinationPrefixes) {
+        super(clientInboundChannel, clientOutboundChannel, brokerChannel, destinationPrefixes);
+    }
+
+    /** The channel the broker sends to this session on, or the plain outbound channel for an unknown session. */
+    public MessageChannel clientOutboundChannel(String sessionId) {
+        MessageChannel channel = sessionChannels.get(sessionId);
+        return channel != null ? channel : getClientOutboundChannel();
+    }
+
+    @Override
+    protected MessageChannel getClientOutboundChannelForSession(String sessionId) {
+        // called once per CONNECT
+        MessageChannel channel = super.getClientOutboundChannelForSession(sessionId);
+        sessionChannels.put(sessionId, channel);
+        return channel;
+    }
+
+    @Override
+    protected void handleMessageInternal(Message<?> message) {
+        super.handleMessageInternal(message);
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) == SimpMessageType.DISCONNECT) {
+            String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+            if (sessionId != null) {
+                sessionChannels.remove(sessionId);
+            }
+        }
+    }
+}
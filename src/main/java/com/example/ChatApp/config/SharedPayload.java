@@ -0,0 +1,80 @@
+package com.example.ChatApp.config;
+
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A message body serialized once and handed to every subscriber as the same
+ * {@link TextMessage} fragment. The broker copies message headers to each subscriber's
+ * copy, so the instance travels in the {@link #HEADER} header (never sent on the wire).
+ * <p>
+ * {@link SharedPayloadStompEncoder} then encodes only the per-session STOMP headers,
+ * and {@link SlowConsumerSessionDecorator} sends them followed by {@link #tail()}
+ * as the final fragment of the same WebSocket message. The tail is a String because
+ * STOMP frames here are text frames and continuation fragments must match; the
+ * container still encodes it to UTF-8 per session, so the saving is the per-session
+ * frame and body copy, not the socket encode.
+ */
+public final class SharedPayload {
+
+    public static final String HEADER = "chatSharedPayload";
+
+    // encoder -> session decorator; both run on the same outbound thread in StompSubProtocolHandler
+    private static final ThreadLocal<Handoff> HANDOFF = new ThreadLocal<>();
+
+    private final byte[] body;
+    private final TextMessage tail;
+
+    public SharedPayload(byte[] body) {
+        this.body = body;
+        this.tail = new TextMessage(new String(body, StandardCharsets.UTF_8) + '\0', true);
+    }
+
+    public byte[] body() {
+        return body;
+    }
+
+    /** Body plus the STOMP frame terminator, as the last fragment of a text message. */
+    public TextMessage tail() {
+        return tail;
+    }
+
+    void handOff(byte[] head) {
+        HANDOFF.set(new Handoff(head, this));
+    }
+
+    /**
+     * Returns the payload whose headers were just encoded into {@code message},
+     * or null when the message is an ordinary frame.
+     */
+    static SharedPayload takeFor(WebSocketMessage<?> message) {
+        Handoff handoff = HANDOFF.get();
+        if (handoff == null) {
+            return null;
+        }
+        HANDOFF.remove();
+        byte[] bytes = null;
+        if (message instanceof TextMessage text) {
+            bytes = text.asBytes();
+        } else if (message instanceof BinaryMessage binary && binary.getPayload().hasArray()) {
+            bytes = binary.getPayload().array();
+        }
+        return bytes == handoff.head() ? handoff.payload() : null;
+    }
+
+    /** Head and body copied into one frame, for transports that cannot send fragments. */
+    WebSocketMessage<?> joinedWith(WebSocketMessage<?> head) {
+        byte[] headBytes = head instanceof TextMessage text ? text.asBytes() : ((BinaryMessage) head).getPayload().array();
+        byte[] frame = new byte[headBytes.length + body.length + 1];
+        System.arraycopy(headBytes, 0, frame, 0, headBytes.length);
+        System.arraycopy(body, 0, frame, headBytes.length, body.length);
+        return head instanceof TextMessage ? new TextMessage(frame) : new BinaryMessage(ByteBuffer.wrap(frame));
+    }
+
+    private record Handoff(byte[] head, SharedPayload payload) {
+    }
+}
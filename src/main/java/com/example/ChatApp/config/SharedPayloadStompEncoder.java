@@ -0,0 +1,77 @@
+package com.example.ChatApp.config;
+
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.NativeMessageHeaderAccessor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * For MESSAGE frames carrying a {@link SharedPayload}, encodes only the command and
+ * headers; the body is appended by the session as a shared fragment. Every other
+ * frame goes through the standard encoder.
+ */
+public class SharedPayloadStompEncoder extends StompEncoder {
+
+    @Override
+    public byte[] encode(Map<String, Object> headers, byte[] payload) {
+        if (!(headers.get(SharedPayload.HEADER) instanceof SharedPayload shared)
+                || shared.body() != payload
+                || StompHeaderAccessor.getCommand(headers) != StompCommand.MESSAGE) {
+            return super.encode(headers, payload);
+        }
+        byte[] head = encodeHead(headers, payload.length);
+        shared.handOff(head);
+        return head;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static byte[] encodeHead(Map<String, Object> headers, int contentLength) {
+        StringBuilder frame = new StringBuilder(256).append(StompCommand.MESSAGE.name()).append('\n');
+        Object nativeHeaders = headers.get(NativeMessageHeaderAccessor.NATIVE_HEADERS);
+        if (nativeHeaders instanceof Map<?, ?> map) {
+            for (Map.Entry<String, List<String>> entry : ((Map<String, List<String>>) map).entrySet()) {
+                if (StompHeaderAccessor.STOMP_CONTENT_LENGTH_HEADER.equals(entry.getKey()) || entry.getValue() == null) {
+                    continue;
+                }
+                for (String value : entry.getValue()) {
+                    frame.append(escape(entry.getKey())).append(':').append(escape(value)).append('\n');
+                }
+            }
+        }
+        frame.append(StompHeaderAccessor.STOMP_CONTENT_LENGTH_HEADER).append(':').append(contentLength).append("\n\n");
+        return frame.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // STOMP 1.2 header escaping, as the standard encoder applies to MESSAGE frames
+    private static String escape(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder escaped = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            String replacement = switch (c) {
+                case '\\' -> "\\\\";
+                case ':' -> "\\c";
+                case '\n' -> "\\n";
+                case '\r' -> "\\r";
+                default -> null;
+            };
+            if (replacement != null && escaped == null) {
+                escaped = new StringBuilder(text.length() + 8).append(text, 0, i);
+            }
+            if (escaped != null) {
+                if (replacement != null) {
+                    escaped.append(replacement);
+                } else {
+                    escaped.append(c);
+                }
+            }
+        }
+        return escaped != null ? escaped.toString() : text;
+    }
+}
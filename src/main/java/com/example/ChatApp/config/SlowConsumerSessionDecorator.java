@@ -0,0 +1,170 @@
+package com.example.ChatApp.config;
+
+import io.micrometer.core.instrument.Counter;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+import org.springframework.web.socket.sockjs.transport.SockJsSession;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Lets many threads send to one session without waiting on each other.
+ * One thread writes to the socket at a time; the others queue the message
+ * and return. When the queue passes the buffer limit the session's
+ * {@link WebSocketProperties.SlowConsumerPolicy} applies, so a reader that
+ * stops draining its socket costs a bounded amount of memory and never
+ * more than one outbound thread.
+ * <p>
+ * Extends Spring's decorator because STOMP publish ordering depends on its
+ * message callback; the buffering itself is done here so drops can be counted.
+ */
+public class SlowConsumerSessionDecorator extends ConcurrentWebSocketSessionDecorator {
+
+    private final WebSocketProperties.SlowConsumerPolicy policy;
+    private final Counter droppedCounter;
+    private final Counter disconnectedCounter;
+
+    private final Queue<Outgoing> buffer = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger bufferSize = new AtomicInteger();
+    private final Lock flushLock = new ReentrantLock();
+    private volatile long sendStartTime;
+    private volatile Consumer<WebSocketMessage<?>> messageCallback;
+    private final AtomicBoolean limitExceeded = new AtomicBoolean();
+
+    public SlowConsumerSessionDecorator(WebSocketSession delegate,
+                                        int sendTimeLimit,
+                                        int bufferSizeLimit,
+                                        WebSocketProperties.SlowConsumerPolicy policy,
+                                        Counter droppedCounter,
+                                        Counter disconnectedCounter) {
+        super(delegate, sendTimeLimit, bufferSizeLimit,
+                policy == WebSocketProperties.SlowConsumerPolicy.DROP_OLDEST ? OverflowStrategy.DROP : OverflowStrategy.TERMINATE);
+        this.policy = policy;
+        this.droppedCounter = droppedCounter;
+        this.disconnectedCounter = disconnectedCounter;
+    }
+
+    @Override
+    public int getBufferSize() {
+        return bufferSize.get();
+    }
+
+    @Override
+    public long getTimeSinceSendStarted() {
+        long startedAt = sendStartTime;
+        return startedAt > 0 ? System.currentTimeMillis() - startedAt : 0;
+    }
+
+    @Override
+    public void setMessageCallback(Consumer<WebSocketMessage<?>> callback) {
+        this.messageCallback = callback;
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+        Outgoing outgoing = toOutgoing(message);
+        if (limitExceeded.get()) {
+            return; // already being closed
+        }
+        buffer.add(outgoing);
+        bufferSize.addAndGet(outgoing.length());
+        Consumer<WebSocketMessage<?>> callback = messageCallback;
+        if (callback != null) {
+            callback.accept(message); // lets the next ordered message for this session through
+        }
+
+        do {
+            if (!tryFlush()) {
+                checkLimits(); // someone else is writing; only police the backlog
+                break;
+            }
+        } while (!buffer.isEmpty() && !limitExceeded.get());
+    }
+
+    private Outgoing toOutgoing(WebSocketMessage<?> message) {
+        SharedPayload shared = SharedPayload.takeFor(message);
+        if (shared == null) {
+            return new Outgoing(message, null, message.getPayloadLength());
+        }
+        int length = message.getPayloadLength() + shared.body().length + 1;
+        if (message instanceof TextMessage head && !(getDelegate() instanceof SockJsSession)) {
+            // per-session headers, then the body every subscriber shares
+            return new Outgoing(new TextMessage(head.getPayload(), false), shared.tail(), length);
+        }
+        return new Outgoing(shared.joinedWith(message), null, length); // SockJS re-frames each message anyway
+    }
+
+    private boolean tryFlush() throws IOException {
+        if (!flushLock.tryLock()) {
+            return false;
+        }
+        try {
+            Outgoing next;
+            while (!limitExceeded.get() && (next = buffer.poll()) != null) {
+                bufferSize.addAndGet(-next.length());
+                sendStartTime = System.currentTimeMillis();
+                getDelegate().sendMessage(next.head());
+                if (next.tail() != null) {
+                    getDelegate().sendMessage(next.tail());
+                }
+                sendStartTime = 0;
+            }
+            return true;
+        } finally {
+            sendStartTime = 0;
+            flushLock.unlock();
+        }
+    }
+
+    private void checkLimits() {
+        long sendTime = getTimeSinceSendStarted();
+        if (sendTime > getSendTimeLimit()) {
+            // the socket is stuck, dropping messages would not help
+            disconnect("Send time " + sendTime + " ms exceeded the limit of " + getSendTimeLimit() + " ms");
+        }
+        int bufferSizeLimit = getBufferSizeLimit();
+        if (limitExceeded.get() || bufferSize.get() <= bufferSizeLimit) {
+            return;
+        }
+        if (policy == WebSocketProperties.SlowConsumerPolicy.DISCONNECT) {
+            disconnect("Buffer size " + bufferSize.get() + " bytes exceeded the limit of " + bufferSizeLimit + " bytes");
+        }
+        while (bufferSize.get() > bufferSizeLimit) {
+            Outgoing oldest = buffer.poll();
+            if (oldest == null) {
+                break;
+            }
+            bufferSize.addAndGet(-oldest.length());
+            droppedCounter.increment();
+        }
+    }
+
+    private void disconnect(String reason) {
+        if (!limitExceeded.compareAndSet(false, true)) {
+            return;
+        }
+        buffer.clear();
+        bufferSize.set(0);
+        disconnectedCounter.increment();
+        // SubProtocolWebSocketHandler closes the session when it sees this
+        throw new SessionLimitExceededException(reason, CloseStatus.SESSION_NOT_RELIABLE);
+    }
+
+    /**
+     * One queued message; {@code tail} is the shared last fragment, if any. The length
+     * is taken up front because a text payload's length re-encodes it on every call.
+     */
+    private record Outgoing(WebSocketMessage<?> head, WebSocketMessage<?> tail, int length) {
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.ChatApp.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.simp.broker.AbstractBrokerMessageHandler;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.user.UserDestinationResolver;
+import org.springframework.messaging.support.AbstractSubscribableChannel;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.config.annotation.DelegatingWebSocketMessageBrokerConfiguration;
+import org.springframework.web.socket.messaging.StompSubProtocolHandler;
+import org.springframework.web.socket.messaging.SubProtocolHandler;
+import org.springframework.web.socket.messaging.SubProtocolWebSocketHandler;
+
+import java.util.Locale;
+
+/**
+ * Takes the place of {@code @EnableWebSocketMessageBroker} so every session can be
+ * wrapped in a {@link SlowConsumerSessionDecorator}, STOMP frames can carry a
+ * {@link SharedPayload} and the simple broker is a {@link SessionChannelSimpleBroker}.
+ * The rest of the broker setup still comes from the {@link WebSocketConfig} configurer.
+ */
+@Configuration(proxyBeanMethods = false)
+@RequiredArgsConstructor
+public class WebSocketBrokerConfig extends DelegatingWebSocketMessageBrokerConfiguration {
+
+    private final WebSocketProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    @Override
+    @Bean
+    @Nullable
+    public AbstractBrokerMessageHandler simpleBrokerMessageHandler(AbstractSubscribableChannel clientInboundChannel,
+                                                                   AbstractSubscribableChannel clientOutboundChannel,
+                                                                   AbstractSubscribableChannel brokerChannel,
+                                                                   UserDestinationResolver userDestinationResolver) {
+        AbstractBrokerMessageHandler configured = super.simpleBrokerMessageHandler(
+                clientInboundChannel, clientOutboundChannel, brokerChannel, userDestinationResolver);
+        if (!(configured instanceof SimpleBrokerMessageHandler simple)) {
+            return configured; // relay mode
+        }
+        // same settings as the registry applied; path matcher, cache limit and selector live in the subscription registry
+        SessionChannelSimpleBroker broker = new SessionChannelSimpleBroker(
+                clientInboundChannel, clientOutboundChannel, brokerChannel, simple.getDestinationPrefixes());
+        broker.setSubscriptionRegistry(simple.getSubscriptionRegistry());
+        broker.setTaskScheduler(simple.getTaskScheduler());
+        broker.setHeartbeatValue(simple.getHeartbeatValue());
+        broker.setHeaderInitializer(simple.getHeaderInitializer());
+        broker.setPreservePublishOrder(simple.isPreservePublishOrder());
+        broker.setAutoStartup(simple.isAutoStartup());
+        return broker;
+    }
+
+    @Override
+    @Bean
+    public WebSocketHandler subProtocolWebSocketHandler(AbstractSubscribableChannel clientInboundChannel,
+                                                       AbstractSubscribableChannel clientOutboundChannel) {
+        WebSocketProperties.SlowConsumerPolicy policy = properties.getTransport().getSlowConsumerPolicy();
+        String policyTag = policy.name().toLowerCase(Locale.ROOT);
+        Counter dropped = Counter.builder("chat.websocket.slow.consumer.dropped")
+                .description("Messages discarded because a session's send buffer was full")
+                .tag("policy", policyTag)
+                .register(meterRegistry);
+        Counter disconnected = Counter.builder("chat.websocket.slow.consumer.disconnected")
+                .description("Sessions closed for exceeding the send time or buffer limit")
+                .tag("policy", policyTag)
+                .register(meterRegistry);
+
+        return new SubProtocolWebSocketHandler(clientInboundChannel, clientOutboundChannel) {
+            @Override
+            public void addProtocolHandler(SubProtocolHandler handler) {
+                if (handler instanceof StompSubProtocolHandler stomp) {
+                    stomp.setEncoder(new SharedPayloadStompEncoder());
+                }
+                super.addProtocolHandler(handler);
+            }
+
+            @Override
+            protected WebSocketSession decorateSession(WebSocketSession session) {
+                // limits come from WebSocketConfig.configureWebSocketTransport
+                return new SlowConsumerSessionDecorator(session, getSendTimeLimit(), getSendBufferSizeLimit(),
+                        policy, dropped, disconnected);
+            }
+        };
+    }
+}
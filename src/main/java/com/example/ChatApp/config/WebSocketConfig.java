@@ -1,23 +1,74 @@
 package com.example.ChatApp.config;
 
+import com.example.ChatApp.security.StompAuthChannelInterceptor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.*;
 
+// @EnableWebSocketMessageBroker is replaced by WebSocketBrokerConfig
 @Configuration
-@EnableWebSocketMessageBroker
+@EnableConfigurationProperties(WebSocketProperties.class)
+@RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private final StompAuthChannelInterceptor stompAuthChannelInterceptor;
+    private final ResumeSubscriptionInterceptor resumeSubscriptionInterceptor;
+    private final WebSocketProperties properties;
+    private final ChannelExecutorFactory channelExecutorFactory;
+
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         registry.addEndpoint("/ws")
                 .setAllowedOriginPatterns("*")
                 .withSockJS(); // SockJS fallback
+        // a session's frames are handled one after another; other sessions still run in parallel
+        registry.setPreserveReceiveOrder(properties.isPreserveOrder());
     }
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry registry) {
-        registry.enableSimpleBroker("/topic", "/queue"); // where clients subscribe
+        WebSocketProperties.Broker broker = properties.getBroker();
+        if (broker.getMode() == WebSocketProperties.BrokerMode.RELAY) {
+            // every node relays to the same external broker, so topics fan out across nodes
+            registry.enableStompBrokerRelay("/topic", "/queue")
+                    .setRelayHost(broker.getRelayHost())
+                    .setRelayPort(broker.getRelayPort())
+                    .setVirtualHost(broker.getVirtualHost())
+                    .setClientLogin(broker.getClientLogin())
+                    .setClientPasscode(broker.getClientPasscode())
+                    .setSystemLogin(broker.getSystemLogin())
+                    .setSystemPasscode(broker.getSystemPasscode())
+                    // share which users are connected where, so /user/ destinations resolve on any node
+                    .setUserDestinationBroadcast("/topic/unresolved-user-destination")
+                    .setUserRegistryBroadcast("/topic/simp-user-registry");
+        } else {
+            registry.enableSimpleBroker("/topic", "/queue"); // where clients subscribe
+        }
         registry.setApplicationDestinationPrefixes("/app"); // where clients send
+        registry.setUserDestinationPrefix("/user"); // per-user queues, resolved to the user's sessions
+        registry.setPreservePublishOrder(properties.isPreserveOrder());
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        WebSocketProperties.Transport transport = properties.getTransport();
+        registration.setMessageSizeLimit(transport.getMessageSizeLimit()) // largest inbound frame
+                .setSendTimeLimit(transport.getSendTimeLimitMs())
+                .setSendBufferSizeLimit(transport.getSendBufferSizeLimit());
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        // the handshake on /ws is open; the STOMP CONNECT frame carries the JWT
+        registration.interceptors(stompAuthChannelInterceptor, resumeSubscriptionInterceptor);
+        registration.executor(channelExecutorFactory.create("inbound", properties.getInbound()));
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.executor(channelExecutorFactory.create("outbound", properties.getOutbound()));
     }
 }
@@ -1,7 +1,8 @@
 package com.example.ChatApp.config;
 
-import com.example.ChatApp.security.JwtUtil;
-import com.example.ChatApp.util.OnlineUserTracker;
+import com.example.ChatApp.security.ChatUserPrincipal;
+import com.example.ChatApp.service.PresenceService;
+import com.example.ChatApp.util.LongIntCounterMap;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.event.EventListener;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
@@ -11,16 +12,20 @@ import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Counts STOMP sessions per user; the first session brings a user online and the last one
+ * to close takes them offline, both published by {@link PresenceService}. Sessions map to the
+ * principal that is already bound to them, so a session costs one map node on top of what
+ * the connection holds anyway; counts are primitive.
+ */
 @Component
 @RequiredArgsConstructor
 public class WebSocketPresenceListener {
 
-    private final JwtUtil jwtUtil;
-    private final OnlineUserTracker onlineUserTracker;
-    private final Map<String, Long> sessionToUser = new ConcurrentHashMap<>();
-    private final Map<Long, AtomicInteger> userConnectionCount = new ConcurrentHashMap<>();
+    private final PresenceService presenceService;
+    private final Map<String, ChatUserPrincipal> sessionToUser = new ConcurrentHashMap<>();
+    private final LongIntCounterMap userConnectionCount = new LongIntCounterMap();
 
     @EventListener
     public void handleSessionConnected(SessionConnectedEvent event) {
@@ -30,19 +35,13 @@ public class WebSocketPresenceListener {
             return;
         }
 
-        String authHeader = accessor.getFirstNativeHeader("Authorization");
-        if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            String token = authHeader.substring(7);
-            if (jwtUtil.validateToken(token)) {
-                Long userId = jwtUtil.getUserIdFromToken(token);
-                Long existing = sessionToUser.putIfAbsent(sessionId, userId);
-                if (existing == null) {
-                    int count = userConnectionCount
-                            .computeIfAbsent(userId, id -> new AtomicInteger(0))
-                            .incrementAndGet();
-                    if (count == 1) {
-                        onlineUserTracker.userConnected(userId);
-                    }
+        // CONNECT was authenticated by StompAuthChannelInterceptor, which bound the principal
+        if (event.getUser() instanceof ChatUserPrincipal principal) {
+            Long userId = principal.userId();
+            ChatUserPrincipal existing = sessionToUser.putIfAbsent(sessionId, principal);
+            if (existing == null) {
+                if (userConnectionCount.increment(userId) == 1) {
+                    presenceService.userConnected(userId, principal.username());
                 }
             }
         }
@@ -56,18 +55,14 @@ public class WebSocketPresenceListener {
             return;
         }
 
-        Long userId = sessionToUser.remove(sessionId);
-        if (userId == null) {
+        ChatUserPrincipal principal = sessionToUser.remove(sessionId);
+        if (principal == null) {
             return;
         }
 
-        AtomicInteger counter = userConnectionCount.get(userId);
-        if (counter != null) {
-            int remaining = counter.decrementAndGet();
-            if (remaining <= 0) {
-                userConnectionCount.remove(userId, counter);
-                onlineUserTracker.userDisconnected(userId);
-            }
+        Long userId = principal.userId();
+        if (userConnectionCount.decrement(userId) == 0) {
+            presenceService.userDisconnected(userId, principal.username());
         }
     }
 }
@@ -0,0 +1,88 @@
+package com.example.ChatApp.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings under {@code chat.websocket}.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "chat.websocket")
+public class WebSocketProperties {
+
+    private Broker broker = new Broker();
+    /** Per-session ordering of inbound frames and outbound messages. */
+    private boolean preserveOrder = true;
+    private Channel inbound = new Channel();
+    private Channel outbound = new Channel();
+    private Transport transport = new Transport();
+    private Resume resume = new Resume();
+
+    public enum BrokerMode {
+        /** In-memory broker, subscriptions live in this JVM only. */
+        SIMPLE,
+        /** Relay to an external STOMP broker (e.g. RabbitMQ) shared by all nodes. */
+        RELAY
+    }
+
+    public enum SlowConsumerPolicy {
+        /** Discard the oldest buffered messages to stay under the buffer limit. */
+        DROP_OLDEST,
+        /** Close the session; the client reconnects and resumes from its last seen message. */
+        DISCONNECT
+    }
+
+    @Getter
+    @Setter
+    public static class Broker {
+        private BrokerMode mode = BrokerMode.SIMPLE;
+        private String relayHost = "localhost";
+        private int relayPort = 61613;
+        private String virtualHost;
+        private String clientLogin = "guest";
+        private String clientPasscode = "guest";
+        private String systemLogin = "guest";
+        private String systemPasscode = "guest";
+    }
+
+    /**
+     * Executor behind one of the client channels. A thread pool by default,
+     * or one virtual thread per task when {@code virtualThreads} is set.
+     */
+    @Getter
+    @Setter
+    public static class Channel {
+        private boolean virtualThreads = false;
+        private int corePoolSize = Runtime.getRuntime().availableProcessors() * 2;
+        private int maxPoolSize = Integer.MAX_VALUE;
+        private int queueCapacity = Integer.MAX_VALUE;
+        private int keepAliveSeconds = 60;
+        /** Max concurrent virtual threads, -1 for no limit. */
+        private int concurrencyLimit = -1;
+    }
+
+    /**
+     * Per-session limits. A session whose socket write takes longer than
+     * {@code sendTimeLimitMs} is closed under either policy; the policy decides
+     * what happens when the pending bytes pass {@code sendBufferSizeLimit}.
+     */
+    @Getter
+    @Setter
+    public static class Transport {
+        private int messageSizeLimit = 64 * 1024;
+        private int sendTimeLimitMs = 10_000;
+        private int sendBufferSizeLimit = 512 * 1024;
+        private SlowConsumerPolicy slowConsumerPolicy = SlowConsumerPolicy.DISCONNECT;
+        /** Bodies at least this large are encoded once per broadcast, see {@link SharedPayload}. */
+        private int sharedPayloadMinBytes = 1024;
+    }
+
+    @Getter
+    @Setter
+    public static class Resume {
+        /** Most missed messages replayed per subscription; beyond that the client reloads. */
+        private int maxMessages = 1000;
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.ChatApp.controller;
+
+import com.example.ChatApp.dto.InboxEntryDto;
+import com.example.ChatApp.security.ChatUserPrincipal;
+import com.example.ChatApp.service.InboxService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/inbox")
+@RequiredArgsConstructor
+public class InboxController {
+
+    private final InboxService inboxService;
+
+    @GetMapping
+    public ResponseEntity<List<InboxEntryDto>> getInbox(
+            @AuthenticationPrincipal ChatUserPrincipal principal,
+            @RequestParam(defaultValue = "50") int limit
+    ) {
+        return ResponseEntity.ok(inboxService.getInbox(principal.userId(), limit));
+    }
+
+    /** {@code conversationKey} is {@code room:<roomId>} or {@code dm:<lower user id>:<higher user id>}. */
+    @PostMapping("/{conversationKey}/read")
+    public ResponseEntity<Void> markRead(
+            @AuthenticationPrincipal ChatUserPrincipal principal,
+            @PathVariable String conversationKey
+    ) {
+        inboxService.markRead(principal.userId(), conversationKey);
+        return ResponseEntity.noContent().build();
+    }
+}
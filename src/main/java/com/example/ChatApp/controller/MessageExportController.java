@@ -0,0 +1,66 @@
+package com.example.ChatApp.controller;
+
+import com.example.ChatApp.security.ChatUserPrincipal;
+import com.example.ChatApp.service.MessageExportService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * History downloads for compliance: every message of a room or of the caller's private
+ * conversation as NDJSON, gzip-compressed with {@code ?gzip=true}. The body is written on
+ * an async thread while it is read from the database.
+ */
+@RestController
+@RequestMapping("/api/rooms")
+@RequiredArgsConstructor
+public class MessageExportController {
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final MediaType GZIP = MediaType.parseMediaType("application/gzip");
+
+    private final MessageExportService messageExportService;
+
+    @GetMapping("/{roomId}/export")
+    public ResponseEntity<StreamingResponseBody> exportRoom(
+            @PathVariable Long roomId,
+            @RequestParam(defaultValue = "false") boolean gzip
+    ) {
+        messageExportService.checkRoom(roomId);
+        return download("room-" + roomId, gzip, out -> messageExportService.writeRoom(roomId, out));
+    }
+
+    @GetMapping("/private/{otherUserId}/export")
+    public ResponseEntity<StreamingResponseBody> exportConversation(
+            @AuthenticationPrincipal ChatUserPrincipal principal,
+            @PathVariable Long otherUserId,
+            @RequestParam(defaultValue = "false") boolean gzip
+    ) {
+        messageExportService.checkUser(otherUserId);
+        Long userId = principal.userId();
+        return download("private-" + userId + "-" + otherUserId, gzip,
+                out -> messageExportService.writeConversation(userId, otherUserId, out));
+    }
+
+    private static ResponseEntity<StreamingResponseBody> download(String name, boolean gzip, StreamingResponseBody export) {
+        StreamingResponseBody body = gzip
+                ? out -> {
+                    GZIPOutputStream zipped = new GZIPOutputStream(out, 64 * 1024);
+                    export.writeTo(zipped);
+                    zipped.finish();
+                }
+                : export;
+        String filename = name + (gzip ? ".ndjson.gz" : ".ndjson");
+        return ResponseEntity.ok()
+                .contentType(gzip ? GZIP : NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(filename).build().toString())
+                .body(body);
+    }
+}
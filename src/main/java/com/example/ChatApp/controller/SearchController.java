@@ -0,0 +1,29 @@
+package com.example.ChatApp.controller;
+
+import com.example.ChatApp.dto.SearchPageDto;
+import com.example.ChatApp.security.ChatUserPrincipal;
+import com.example.ChatApp.service.SearchService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/search")
+@RequiredArgsConstructor
+public class SearchController {
+
+    private final SearchService searchService;
+
+    @GetMapping
+    public ResponseEntity<SearchPageDto> search(
+            @AuthenticationPrincipal ChatUserPrincipal principal,
+            @RequestParam String q,
+            @RequestParam(required = false) Long roomId,
+            @RequestParam(required = false) Long otherUserId,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "20") int limit
+    ) {
+        return ResponseEntity.ok(searchService.search(principal.userId(), q, roomId, otherUserId, offset, limit));
+    }
+}
@@ -1,8 +1,12 @@
 package com.example.ChatApp.controller;
 
+import com.example.ChatApp.dto.PresencePageDto;
 import com.example.ChatApp.dto.UserPresenceDto;
 import com.example.ChatApp.entity.User;
 import com.example.ChatApp.repository.UserRepository;
+import com.example.ChatApp.security.ChatUserPrincipal;
+import com.example.ChatApp.service.IdentityCache;
+import com.example.ChatApp.service.PresenceService;
 import com.example.ChatApp.util.OnlineUserTracker;
 
 import lombok.RequiredArgsConstructor;
@@ -12,7 +16,7 @@ import java.util.List;
 import java.util.Set;
 
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 @RestController
@@ -24,17 +28,19 @@ public class UserController {
 
     private final OnlineUserTracker onlineUserTracker;
 
-    @GetMapping("/presence")
-    public ResponseEntity<List<UserPresenceDto>> getUserPresence(Authentication authentication) {
-        String currentUsername = (String) authentication.getPrincipal();
-        Set<Long> onlineUserIds = onlineUserTracker.getOnlineUsers();
+    private final PresenceService presenceService;
+
+    private final IdentityCache identityCache;
 
-        List<UserPresenceDto> users = userRepository.findAll().stream()
-                .filter(user -> !user.getUsername().equals(currentUsername))
+    // full directory, O(all users); clients use /presence/online plus /topic/presence deltas
+    @GetMapping("/presence")
+    public ResponseEntity<List<UserPresenceDto>> getUserPresence(@AuthenticationPrincipal ChatUserPrincipal principal) {
+        List<UserPresenceDto> users = userRepository.findAllPresence().stream()
+                .filter(user -> !user.id().equals(principal.userId()))
                 .map(user -> new UserPresenceDto(
-                        user.getId(),
-                        user.getUsername(),
-                        onlineUserIds.contains(user.getId())
+                        user.id(),
+                        user.username(),
+                        onlineUserTracker.isOnline(user.id())
                 ))
                 .sorted(
                         Comparator.comparing(UserPresenceDto::online).reversed()
@@ -45,6 +51,15 @@ public class UserController {
         return ResponseEntity.ok(users);
     }
 
+    @GetMapping("/presence/online")
+    public ResponseEntity<PresencePageDto> getOnlinePresence(
+            @AuthenticationPrincipal ChatUserPrincipal principal,
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "100") int limit
+    ) {
+        return ResponseEntity.ok(presenceService.onlinePage(principal.userId(), after, limit));
+    }
+
     @GetMapping("/online")
     public ResponseEntity<Set<Long>> getOnlineUsers() {
         return ResponseEntity.ok(onlineUserTracker.getOnlineUsers());
@@ -53,21 +68,20 @@ public class UserController {
     // TEMP: mark a user as online for testing
     @PostMapping("/online/{userId}")
     public ResponseEntity<Void> markOnline(@PathVariable Long userId) {
-        onlineUserTracker.userConnected(userId);
+        presenceService.userConnected(userId, identityCache.findUsername(userId).orElse(null));
         return ResponseEntity.ok().build();
     }
 
     // TEMP: mark a user as offline for testing
     @DeleteMapping("/online/{userId}")
     public ResponseEntity<Void> markOffline(@PathVariable Long userId) {
-        onlineUserTracker.userDisconnected(userId);
+        presenceService.userDisconnected(userId, identityCache.findUsername(userId).orElse(null));
         return ResponseEntity.ok().build();
     }
 
     @GetMapping("/me")
-    public ResponseEntity<User> me(Authentication authentication) {
-        String username = (String) authentication.getPrincipal();
-        User user = userRepository.findByUsername(username)
+    public ResponseEntity<User> me(@AuthenticationPrincipal ChatUserPrincipal principal) {
+        User user = userRepository.findById(principal.userId())
                 .orElseThrow(() -> new RuntimeException("User not found"));
         // You can create a DTO later; for now returning entity is fine for testing
         return ResponseEntity.ok(user);
@@ -8,6 +8,5 @@ import lombok.Setter;
 public class ChatMessageRequest {
     private Long roomId;
     private Long receiverId; // null for public room
-    private Long senderId;  // add this
     private String content;
 }
@@ -0,0 +1,18 @@
+package com.example.ChatApp.dto;
+
+import java.time.Instant;
+
+/** One conversation in a user's inbox: a room ({@code roomId}) or a private chat ({@code otherUserId}). */
+public record InboxEntryDto(
+        String conversationKey,
+        Long roomId,
+        Long otherUserId,
+        String title,
+        Long lastMessageId,
+        Long lastSenderId,
+        String lastSenderUsername,
+        String lastPreview,
+        Instant lastTimestamp,
+        long unread
+) {
+}
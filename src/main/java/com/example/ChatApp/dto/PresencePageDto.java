@@ -0,0 +1,13 @@
+package com.example.ChatApp.dto;
+
+import java.util.List;
+
+/**
+ * One page of online users ordered by id; {@code next} is the cursor for the following
+ * page, null on the last one.
+ */
+public record PresencePageDto(
+        List<UserPresenceDto> users,
+        Long next
+) {
+}
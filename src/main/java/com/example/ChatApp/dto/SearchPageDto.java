@@ -0,0 +1,13 @@
+package com.example.ChatApp.dto;
+
+import java.util.List;
+
+/**
+ * One page of search results, best match first; {@code nextOffset} is the offset of the
+ * following page, null on the last one.
+ */
+public record SearchPageDto(
+        List<MessageDto> messages,
+        Integer nextOffset
+) {
+}
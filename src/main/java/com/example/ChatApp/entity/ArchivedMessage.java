@@ -0,0 +1,50 @@
+package com.example.ChatApp.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * A message moved out of {@code messages} by {@code MessageArchiver} once it was older than
+ * {@code chat.persistence.archive.hot-days}. Same columns, ids and indexes as {@link Message},
+ * so history reads can continue from one table into the other with the same keyset.
+ */
+@Entity
+@Table(name = "messages_archive", indexes = {
+        @Index(name = "idx_messages_archive_room_ts_id", columnList = "room_id, timestamp, id"),
+        @Index(name = "idx_messages_archive_sender_ts_id", columnList = "sender_id, timestamp, id"),
+        @Index(name = "idx_messages_archive_receiver_ts_id", columnList = "receiver_id, timestamp, id"),
+        @Index(name = "idx_messages_archive_conversation_id", columnList = "conversation_key, id")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+public class ArchivedMessage {
+
+    @Id
+    private Long id; // the id it had in messages
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "sender_id", nullable = false)
+    private User sender;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "room_id")
+    private ChatRoom room;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "receiver_id")
+    private User receiver;
+
+    @Column(name = "conversation_key", length = 45)
+    private String conversationKey;
+
+    @Column(nullable = false, length = Message.MAX_CONTENT_LENGTH)
+    private String content;
+
+    @Column(nullable = false)
+    private Instant timestamp;
+}
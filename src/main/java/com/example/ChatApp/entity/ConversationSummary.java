@@ -0,0 +1,36 @@
+package com.example.ChatApp.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Running totals of one room or private conversation, kept up to date as messages are
+ * stored (see {@code InboxService}). Unread counts are {@code messageCount} minus a user's
+ * {@link ReadMarker}; the preview is the message {@code lastMessageId} points at.
+ */
+@Entity
+@Table(name = "conversation_summaries")
+@Getter
+@Setter
+@NoArgsConstructor
+public class ConversationSummary {
+
+    @Id
+    @Column(length = 45)
+    private String conversationKey; // "room:<id>" or Message.conversationKey
+
+    private Long roomId;
+
+    // the two participants of a private conversation
+    private Long userLowId;
+
+    private Long userHighId;
+
+    @Column(nullable = false)
+    private long messageCount;
+
+    @Column(nullable = false)
+    private Long lastMessageId; // ids are time-ordered, so the greatest is the newest
+}
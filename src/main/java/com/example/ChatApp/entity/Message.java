@@ -6,16 +6,25 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 
 @Entity
-@Table(name = "messages")
+@Table(name = "messages", indexes = {
+        @Index(name = "idx_messages_room_ts_id", columnList = "room_id, timestamp, id"),
+        @Index(name = "idx_messages_sender_ts_id", columnList = "sender_id, timestamp, id"),
+        @Index(name = "idx_messages_receiver_ts_id", columnList = "receiver_id, timestamp, id"),
+        @Index(name = "idx_messages_conversation_id", columnList = "conversation_key, id")
+})
 @Getter
 @Setter
 @NoArgsConstructor
 public class Message {
 
+    /** Length of the {@code content} column, in characters. */
+    public static final int MAX_CONTENT_LENGTH = 1000;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @TimeOrderedId
     private Long id;
 
     // Sender of the message
@@ -33,7 +42,11 @@ public class Message {
     @JoinColumn(name = "receiver_id")
     private User receiver;
 
-    @Column(nullable = false, length = 1000)
+    // same for both directions of a private conversation, null for room messages
+    @Column(name = "conversation_key", length = 45)
+    private String conversationKey;
+
+    @Column(nullable = false, length = MAX_CONTENT_LENGTH)
     private String content;
 
     @Column(nullable = false)
@@ -41,6 +54,14 @@ public class Message {
 
     @PrePersist
     public void prePersist() {
-        this.timestamp = Instant.now();
+        this.timestamp = Instant.now().truncatedTo(ChronoUnit.MICROS); // column precision, so the sent copy matches what is read back
+        if (receiver != null) {
+            this.conversationKey = conversationKey(sender.getId(), receiver.getId());
+        }
+    }
+
+    /** {@code dm:<lower user id>:<higher user id>}. */
+    public static String conversationKey(Long userA, Long userB) {
+        return "dm:" + Math.min(userA, userB) + ":" + Math.max(userA, userB);
     }
 }
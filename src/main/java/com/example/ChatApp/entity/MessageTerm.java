@@ -0,0 +1,52 @@
+package com.example.ChatApp.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+
+/**
+ * One posting of the search index: {@code term} occurs {@code hits} times in message
+ * {@code messageId} of the room or conversation {@code scopeKey}. A term's newest postings in
+ * a scope are one range on {@code idx_message_terms_lookup}, which also carries the hits.
+ */
+@Entity
+@Table(name = "message_terms", indexes = {
+        @Index(name = "idx_message_terms_lookup", columnList = "term, scope_key, message_id, hits"),
+        @Index(name = "idx_message_terms_message", columnList = "message_id")
+})
+@IdClass(MessageTerm.Key.class)
+@Getter
+@Setter
+@NoArgsConstructor
+public class MessageTerm {
+
+    @Id
+    @Column(length = 32)
+    private String term;
+
+    @Id
+    @Column(length = 45)
+    private String scopeKey; // InboxService.conversationKey of the message
+
+    @Id
+    private Long messageId;
+
+    @Column(nullable = false)
+    private int hits;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        private String term;
+        private String scopeKey;
+        private Long messageId;
+    }
+}
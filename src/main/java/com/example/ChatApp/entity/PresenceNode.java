@@ -0,0 +1,28 @@
+package com.example.ChatApp.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/** One node's entry in the cluster presence table, see {@code JpaPresenceStore}. */
+@Entity
+@Table(name = "presence_nodes")
+@Getter
+@Setter
+@NoArgsConstructor
+public class PresenceNode {
+
+    @Id
+    private Integer nodeId; // chat.node-id
+
+    @Column(nullable = false)
+    private long beat;
+
+    @Column(nullable = false)
+    private long version;
+
+    @Lob
+    @Column(nullable = false, length = 64 * 1024 * 1024)
+    private byte[] users; // user ids, 8 bytes each
+}
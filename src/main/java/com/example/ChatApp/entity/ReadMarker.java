@@ -0,0 +1,43 @@
+package com.example.ChatApp.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+
+/**
+ * How far a user has read a conversation, as the {@link ConversationSummary#getMessageCount()}
+ * at that point. A user's markers are their inbox.
+ */
+@Entity
+@Table(name = "read_markers")
+@IdClass(ReadMarker.Key.class)
+@Getter
+@Setter
+@NoArgsConstructor
+public class ReadMarker {
+
+    @Id
+    private Long userId;
+
+    @Id
+    @Column(length = 45)
+    private String conversationKey;
+
+    @Column(nullable = false)
+    private long readCount;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        private Long userId;
+        private String conversationKey;
+    }
+}
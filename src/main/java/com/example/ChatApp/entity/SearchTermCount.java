@@ -0,0 +1,45 @@
+package com.example.ChatApp.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+
+/**
+ * Document frequency of the search index: how many messages of the room or conversation
+ * {@code scopeKey} contain {@code term}, i.e. how many {@link MessageTerm} postings the pair
+ * has. Kept in the transaction that writes or replaces the postings.
+ */
+@Entity
+@Table(name = "search_term_counts")
+@IdClass(SearchTermCount.Key.class)
+@Getter
+@Setter
+@NoArgsConstructor
+public class SearchTermCount {
+
+    @Id
+    @Column(length = 32)
+    private String term;
+
+    @Id
+    @Column(length = 45)
+    private String scopeKey;
+
+    @Column(nullable = false)
+    private long documents;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        private String term;
+        private String scopeKey;
+    }
+}
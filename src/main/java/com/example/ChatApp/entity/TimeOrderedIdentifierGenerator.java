@@ -0,0 +1,66 @@
+package com.example.ChatApp.entity;
+
+import com.example.ChatApp.util.TimeOrderedIdGenerator;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.factory.spi.CustomIdGeneratorCreationContext;
+import org.hibernate.resource.beans.container.spi.BeanContainer;
+import org.hibernate.resource.beans.spi.BeanInstanceProducer;
+import org.hibernate.resource.beans.spi.ManagedBeanRegistry;
+
+import java.lang.reflect.Member;
+
+/**
+ * Hibernate side of {@link TimeOrderedId}. Hibernate creates the generator itself, so the
+ * Spring-managed {@link TimeOrderedIdGenerator} of the same application context is looked up
+ * through Hibernate's bean container (Spring Boot registers its bean factory there); entity
+ * ids and write-behind ids then come from the same sequence.
+ */
+public class TimeOrderedIdentifierGenerator implements IdentifierGenerator {
+
+    // the context's singleton; JPA-compliant creation would build a second, unconfigured instance
+    private static final BeanContainer.LifecycleOptions SHARED_BEAN = new BeanContainer.LifecycleOptions() {
+        @Override
+        public boolean canUseCachedReferences() {
+            return true;
+        }
+
+        @Override
+        public boolean useJpaCompliantCreation() {
+            return false;
+        }
+    };
+
+    private final TimeOrderedIdGenerator idGenerator;
+
+    public TimeOrderedIdentifierGenerator(TimeOrderedId config, Member member, CustomIdGeneratorCreationContext context) {
+        BeanContainer beanContainer = context.getServiceRegistry()
+                .requireService(ManagedBeanRegistry.class)
+                .getBeanContainer();
+        if (beanContainer == null) {
+            throw new IllegalStateException("@TimeOrderedId on " + member.getName()
+                    + " needs a bean container (hibernate.resource.beans.container) to find the TimeOrderedIdGenerator");
+        }
+        this.idGenerator = beanContainer.getBean(TimeOrderedIdGenerator.class, SHARED_BEAN, NoFallback.INSTANCE)
+                .getBeanInstance();
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        return idGenerator.nextId();
+    }
+
+    private enum NoFallback implements BeanInstanceProducer {
+        INSTANCE;
+
+        @Override
+        public <B> B produceBeanInstance(Class<B> beanType) {
+            throw new IllegalStateException("No " + beanType.getSimpleName() + " bean for @TimeOrderedId");
+        }
+
+        @Override
+        public <B> B produceBeanInstance(String name, Class<B> beanType) {
+            return produceBeanInstance(beanType);
+        }
+    }
+}
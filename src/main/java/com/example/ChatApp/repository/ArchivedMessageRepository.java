@@ -0,0 +1,135 @@
+package com.example.ChatApp.repository;
+
+import com.example.ChatApp.dto.MessageDto;
+import com.example.ChatApp.entity.ArchivedMessage;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+public interface ArchivedMessageRepository extends JpaRepository<ArchivedMessage, Long> {
+
+    // The cold tier continues a history read where messages ran out, so the keyset is passed
+    // as (timestamp, id) values: the cursor row may be in either table.
+
+    @Query("""
+            select new com.example.ChatApp.dto.MessageDto(
+                m.id, s.id, s.username, m.receiver.id, m.room.id, m.content, m.timestamp)
+            from ArchivedMessage m join m.sender s
+            where m.room.id = :roomId
+            order by m.timestamp desc, m.id desc
+            """)
+    List<MessageDto> findLatestInRoom(@Param("roomId") Long roomId, Pageable page);
+
+    @Query("""
+            select new com.example.ChatApp.dto.MessageDto(
+                m.id, s.id, s.username, m.receiver.id, m.room.id, m.content, m.timestamp)
+            from ArchivedMessage m join m.sender s
+            where m.room.id = :roomId
+              and (m.timestamp < :timestamp or (m.timestamp = :timestamp and m.id < :id))
+            order by m.timestamp desc, m.id desc
+            """)
+    List<MessageDto> findInRoomBefore(@Param("roomId") Long roomId, @Param("timestamp") Instant timestamp,
+                                      @Param("id") Long id, Pageable page);
+
+    @Query("""
+            select new com.example.ChatApp.dto.MessageDto(
+                m.id, s.id, s.username, m.receiver.id, m.room.id, m.content, m.timestamp)
+            from ArchivedMessage m join m.sender s
+            where m.room.id = :roomId
+              and (m.timestamp > :timestamp or (m.timestamp = :timestamp and m.id > :id))
+            order by m.timestamp asc, m.id asc
+            """)
+    List<MessageDto> findInRoomAfter(@Param("roomId") Long roomId, @Param("timestamp") Instant timestamp,
+                                     @Param("id") Long id, Pageable page);
+
+    @Query("""
+            select new com.example.ChatApp.dto.MessageDto(
+                m.id, s.id, s.username, m.receiver.id, m.room.id, m.content, m.timestamp)
+            from ArchivedMessage m join m.sender s
+            where m.receiver.id is not null
+              and (m.sender.id = :userId or m.receiver.id = :userId)
+              and (m.timestamp > :timestamp or (m.timestamp = :timestamp and m.id > :id))
+            order by m.timestamp asc, m.id asc
+            """)
+    List<MessageDto> findPrivateAfter(@Param("userId") Long userId, @Param("timestamp") Instant timestamp,
+                                      @Param("id") Long id, Pageable page);
+
+    // only keyed private messages are archived, see MessageRepository.findArchivableIds
+    @Query("""
+            select new com.example.ChatApp.dto.MessageDto(
+                m.id, s.id, s.username, m.receiver.id, m.room.id, m.content, m.timestamp)
+            from ArchivedMessage m join m.sender s
+            where m.conversationKey = :conversationKey
+            order by m.id asc
+            """)
+    List<MessageDto> findConversation(@Param("conversationKey") String conversationKey);
+
+    @Query("""
+            select new com.example.ChatApp.dto.MessageDto(
+                m.id, s.id, s.username, m.receiver.id, m.room.id, m.content, m.timestamp)
+            from ArchivedMessage m join m.sender s
+            where m.id in :ids
+            """)
+    List<MessageDto> findByIds(@Param("ids") List<Long> ids);
+
+    @Query("""
+            select new com.example.ChatApp.dto.MessageDto(
+                m.id, s.id, s.username, m.receiver.id, m.room.id, m.content, m.timestamp)
+            from ArchivedMessage m join m.sender s
+            where m.id > :after
+            order by m.id asc
+            """)
+    List<MessageDto> findAllAfter(@Param("after") Long after, Pageable page);
+
+    boolean existsByRoomId(Long roomId);
+
+    @Query("select m.timestamp from ArchivedMessage m where m.id = :id")
+    Optional<Instant> findTimestamp(@Param("id") Long id);
+
+    // Copies rows from messages; one already copied by another node is skipped.
+    @Modifying
+    @Query("""
+            insert into ArchivedMessage (id, sender, room, receiver, conversationKey, content, timestamp)
+            select m.id, m.sender, m.room, m.receiver, m.conversationKey, m.content, m.timestamp
+            from Message m
+            where m.id in :ids
+              and not exists (select 1 from ArchivedMessage a where a.id = m.id)
+            """)
+    int copyFromMessages(@Param("ids") List<Long> ids);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = MessageRepository.EXPORT_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("""
+            select new com.example.ChatApp.dto.MessageDto(
+                m.id, s.id, s.username, m.receiver.id, m.room.id, m.content, m.timestamp)
+            from ArchivedMessage m join m.sender s
+            where m.room.id = :roomId
+            order by m.timestamp asc, m.id asc
+            """)
+    Stream<MessageDto> streamRoom(@Param("roomId") Long roomId);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = MessageRepository.EXPORT_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("""
+            select new com.example.ChatApp.dto.MessageDto(
+                m.id, s.id, s.username, m.receiver.id, m.room.id, m.content, m.timestamp)
+            from ArchivedMessage m join m.sender s
+            where m.conversationKey = :conversationKey
+            order by m.id asc
+            """)
+    Stream<MessageDto> streamConversation(@Param("conversationKey") String conversationKey);
+}
@@ -1,18 +1,223 @@
 package com.example.ChatApp.repository;
 
+import com.example.ChatApp.dto.MessageDto;
 import com.example.ChatApp.entity.Message;
-import com.example.ChatApp.entity.User;
-import com.example.ChatApp.entity.ChatRoom;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface MessageRepository extends JpaRepository<Message, Long> {
 
-    List<Message> findByRoomOrderByTimestampAsc(ChatRoom room);
+    // Room history is read newest-first by keyset on (room_id, timestamp, id), backed by
+    // idx_messages_room_ts_id. Cursors are message ids; the cursor row is joined by primary key.
 
-    List<Message> findBySenderAndReceiverOrReceiverAndSenderOrderByTimestampAsc(
-            User sender, User receiver,
-            User receiver2, User sender2
-    );
-}
\ No newline at end of file
+    @Query("""
+            select new com.example.ChatApp.dto.MessageDto(
+                m.id, s.id, s.username, m.receiver.id, m.room.id, m.content, m.timestamp)
+            from Message m join m.sender s
+            where m.room.id = :roomId
+            order by m.timestamp desc, m.id desc
+            """)
+    List<MessageDto> findLatestInRoom(@Param("roomId") Long roomId, Pageable page);
+
+    @Query("""
+            select new com.example.ChatApp.dto.MessageDto(
+                m.id, s.id, s.username, m.receiver.id, m.room.id, m.content, m.timestamp)
+            from Message m join m.sender s, Message c
+            where c.id = :before
+              and m.room.id = :roomId
+              and (m.timestamp < c.timestamp or (m.timestamp = c.timestamp and m.id < c.id))
+            order by m.timestamp desc, m.id desc
+            """)
+    List<MessageDto> findInRoomBefore(@Param("roomId") Long roomId, @Param("before") Long before, Pageable page);
+
+    @Query("""
+            select new com.example.ChatApp.dto.MessageDto(
+                m.id, s.id, s.username, m.receiver.id, m.room.id, m.content, m.timestamp)
+            from Message m join m.sender s, Message c
+            where c.id = :after
+              and m.room.id = :roomId
+              and (m.timestamp > c.timestamp or (m.timestamp = c.timestamp and m.id > c.id))
+            order by m.timestamp asc, m.id asc
+            """)
+    List<MessageDto> findInRoomAfter(@Param("roomId") Long roomId, @Param("after") Long after, Pageable page);
+
+    // every private message to or from the user after the cursor, for reconnect catch-up;
+    // each side of the "or" is a range on idx_messages_sender_ts_id / idx_messages_receiver_ts_id
+    @Query("""
+            select new com.example.ChatApp.dto.MessageDto(
+                m.id, s.id, s.username, m.receiver.id, m.room.id, m.content, m.timestamp)
+            from Message m join m.sender s, Message c
+            where c.id = :after
+              and m.receiver.id is not null
+              and (m.sender.id = :userId or m.receiver.id = :userId)
+              and (m.timestamp > c.timestamp or (m.timestamp = c.timestamp and m.id > c.id))
+            order by m.timestamp asc, m.id asc
+            """)
+    List<MessageDto> findPrivateAfter(@Param("userId") Long userId, @Param("after") Long after, Pageable page);
+
+    // A private conversation is one range on idx_messages_conversation_id. The "ByParticipants"
+    // variants cover rows written before conversation keys, until ConversationKeyBackfill is done.
+
+    @Query("""
+            select new com.example.ChatApp.dto.MessageDto(
+                m.id, s.id, s.username, m.receiver.id, m.room.id, m.content, m.timestamp)
+            from Message m join m.sender s
+            where m.conversationKey = :conversationKey
+            order by m.id asc
+            """)
+    List<MessageDto> findConversation(@Param("conversationKey") String conversationKey);
+
+    @Query("""
+            select new com.example.ChatApp.dto.MessageDto(
+                m.id, s.id, s.username, m.receiver.id, m.room.id, m.content, m.timestamp)
+            from Message m join m.sender s
+            where (m.sender.id = :userA and m.receiver.id = :userB)
+               or (m.sender.id = :userB and m.receiver.id = :userA)
+            order by m.timestamp asc, m.id asc
+            """)
+    List<MessageDto> findConversationByParticipants(@Param("userA") Long userA, @Param("userB") Long userB);
+
+    @Query("select m.id from Message m where m.id > :after and m.receiver.id is not null and m.conversationKey is null order by m.id")
+    List<Long> findUnkeyedPrivateIds(@Param("after") Long after, Pageable page);
+
+    @Query("select max(m.id) from Message m")
+    Long findMaxId();
+
+    @Modifying
+    @Query("""
+            update Message m
+            set m.conversationKey = concat('dm:', cast(least(m.sender.id, m.receiver.id) as String),
+                                           ':', cast(greatest(m.sender.id, m.receiver.id) as String))
+            where m.id in :ids and m.conversationKey is null
+            """)
+    int assignConversationKeys(@Param("ids") List<Long> ids);
+
+    // Search results and index rebuilds, read by primary key.
+
+    @Query("""
+            select new com.example.ChatApp.dto.MessageDto(
+                m.id, s.id, s.username, m.receiver.id, m.room.id, m.content, m.timestamp)
+            from Message m join m.sender s
+            where m.id in :ids
+            """)
+    List<MessageDto> findByIds(@Param("ids") List<Long> ids);
+
+    @Query("""
+            select new com.example.ChatApp.dto.MessageDto(
+                m.id, s.id, s.username, m.receiver.id, m.room.id, m.content, m.timestamp)
+            from Message m join m.sender s
+            where m.id > :after
+            order by m.id asc
+            """)
+    List<MessageDto> findAllAfter(@Param("after") Long after, Pageable page);
+
+    // Archival (MessageArchiver) and reads that continue from the archive back into this table.
+
+    // a primary key range: ids below belowId were issued before the cutoff, older rows have small ids;
+    // private messages wait for their conversation key
+    @Query("""
+            select m.id from Message m
+            where m.id > :after and m.id < :belowId and m.timestamp < :cutoff
+              and (m.receiver is null or m.conversationKey is not null)
+            order by m.id
+            """)
+    List<Long> findArchivableIds(@Param("after") Long after, @Param("belowId") Long belowId,
+                                 @Param("cutoff") Instant cutoff, Pageable page);
+
+    @Modifying
+    @Query("delete from Message m where m.id in :ids")
+    int deleteByIdIn(@Param("ids") List<Long> ids);
+
+    @Query("select m.timestamp from Message m where m.id = :id")
+    Optional<Instant> findTimestamp(@Param("id") Long id);
+
+    @Query("""
+            select new com.example.ChatApp.dto.MessageDto(
+                m.id, s.id, s.username, m.receiver.id, m.room.id, m.content, m.timestamp)
+            from Message m join m.sender s
+            where m.room.id = :roomId
+              and (m.timestamp > :timestamp or (m.timestamp = :timestamp and m.id > :id))
+            order by m.timestamp asc, m.id asc
+            """)
+    List<MessageDto> findInRoomAfterPosition(@Param("roomId") Long roomId, @Param("timestamp") Instant timestamp,
+                                             @Param("id") Long id, Pageable page);
+
+    @Query("""
+            select new com.example.ChatApp.dto.MessageDto(
+                m.id, s.id, s.username, m.receiver.id, m.room.id, m.content, m.timestamp)
+            from Message m join m.sender s
+            where m.room.id = :roomId
+              and (m.timestamp < :timestamp or (m.timestamp = :timestamp and m.id < :id))
+            order by m.timestamp desc, m.id desc
+            """)
+    List<MessageDto> findInRoomBeforePosition(@Param("roomId") Long roomId, @Param("timestamp") Instant timestamp,
+                                              @Param("id") Long id, Pageable page);
+
+    @Query("""
+            select new com.example.ChatApp.dto.MessageDto(
+                m.id, s.id, s.username, m.receiver.id, m.room.id, m.content, m.timestamp)
+            from Message m join m.sender s
+            where m.receiver.id is not null
+              and (m.sender.id = :userId or m.receiver.id = :userId)
+              and (m.timestamp > :timestamp or (m.timestamp = :timestamp and m.id > :id))
+            order by m.timestamp asc, m.id asc
+            """)
+    List<MessageDto> findPrivateAfterPosition(@Param("userId") Long userId, @Param("timestamp") Instant timestamp,
+                                              @Param("id") Long id, Pageable page);
+
+    // Whole-history exports, oldest first. Rows are fetched EXPORT_FETCH_SIZE at a time from a
+    // forward-only cursor (MySQL needs useCursorFetch=true) and must be read inside a transaction.
+
+    String EXPORT_FETCH_SIZE = "500";
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("""
+            select new com.example.ChatApp.dto.MessageDto(
+                m.id, s.id, s.username, m.receiver.id, m.room.id, m.content, m.timestamp)
+            from Message m join m.sender s
+            where m.room.id = :roomId
+            order by m.timestamp asc, m.id asc
+            """)
+    Stream<MessageDto> streamRoom(@Param("roomId") Long roomId);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("""
+            select new com.example.ChatApp.dto.MessageDto(
+                m.id, s.id, s.username, m.receiver.id, m.room.id, m.content, m.timestamp)
+            from Message m join m.sender s
+            where m.conversationKey = :conversationKey
+            order by m.id asc
+            """)
+    Stream<MessageDto> streamConversation(@Param("conversationKey") String conversationKey);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("""
+            select new com.example.ChatApp.dto.MessageDto(
+                m.id, s.id, s.username, m.receiver.id, m.room.id, m.content, m.timestamp)
+            from Message m join m.sender s
+            where (m.sender.id = :userA and m.receiver.id = :userB)
+               or (m.sender.id = :userB and m.receiver.id = :userA)
+            order by m.timestamp asc, m.id asc
+            """)
+    Stream<MessageDto> streamConversationByParticipants(@Param("userA") Long userA, @Param("userB") Long userB);
+}
@@ -0,0 +1,26 @@
+package com.example.ChatApp.repository;
+
+import com.example.ChatApp.entity.PresenceNode;
+import com.example.ChatApp.util.NodeHeartbeat;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface PresenceNodeRepository extends JpaRepository<PresenceNode, Integer> {
+
+    // every node polls the headers each heartbeat; the user blobs are only read when their version moved
+
+    @Query("select new com.example.ChatApp.util.NodeHeartbeat(p.nodeId, p.beat, p.version) from PresenceNode p")
+    List<NodeHeartbeat> findHeartbeats();
+
+    @Query("select p.users from PresenceNode p where p.nodeId = :nodeId")
+    Optional<byte[]> findUsers(@Param("nodeId") Integer nodeId);
+
+    @Modifying
+    @Query("update PresenceNode p set p.beat = :beat where p.nodeId = :nodeId and p.version = :version")
+    int touch(@Param("nodeId") Integer nodeId, @Param("beat") long beat, @Param("version") long version);
+}
@@ -0,0 +1,36 @@
+package com.example.ChatApp.repository;
+
+import com.example.ChatApp.dto.InboxEntryDto;
+import com.example.ChatApp.entity.ReadMarker;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface ReadMarkerRepository extends JpaRepository<ReadMarker, ReadMarker.Key> {
+
+    // the user's markers, each joined by primary key to its summary, last message (in either
+    // tier) and title; no counting over messages
+    @Query("""
+            select new com.example.ChatApp.dto.InboxEntryDto(
+                s.conversationKey, s.roomId,
+                case when s.userLowId = :userId then s.userHighId else s.userLowId end,
+                coalesce(c.name, u.username),
+                s.lastMessageId, coalesce(ms.id, ams.id), coalesce(ms.username, ams.username),
+                substring(coalesce(m.content, am.content), 1, 100), coalesce(m.timestamp, am.timestamp),
+                s.messageCount - r.readCount)
+            from ReadMarker r
+            join ConversationSummary s on s.conversationKey = r.conversationKey
+            left join Message m on m.id = s.lastMessageId
+            left join m.sender ms
+            left join ArchivedMessage am on am.id = s.lastMessageId
+            left join am.sender ams
+            left join ChatRoom c on c.id = s.roomId
+            left join User u on u.id = (case when s.userLowId = :userId then s.userHighId else s.userLowId end)
+            where r.userId = :userId
+            order by s.lastMessageId desc
+            """)
+    List<InboxEntryDto> findInbox(@Param("userId") Long userId, Pageable page);
+}
@@ -1,14 +1,30 @@
 package com.example.ChatApp.repository;
 
+import com.example.ChatApp.dto.UserPresenceDto;
 import com.example.ChatApp.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
 
     Optional<User> findByUsername(String username);
 
+    @Query("select u.username from User u where u.id = :id")
+    Optional<String> findUsernameById(@Param("id") Long id);
+
+    // presence reads select id and username only, never whole users with their password hashes
+
+    @Query("select new com.example.ChatApp.dto.UserPresenceDto(u.id, u.username, false) from User u")
+    List<UserPresenceDto> findAllPresence();
+
+    @Query("select new com.example.ChatApp.dto.UserPresenceDto(u.id, u.username, true) from User u where u.id in :ids order by u.id")
+    List<UserPresenceDto> findOnlinePresence(@Param("ids") Collection<Long> ids);
+
     Optional<User> findByEmail(String email);
 
     boolean existsByUsername(String username);
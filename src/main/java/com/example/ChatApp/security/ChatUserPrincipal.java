@@ -0,0 +1,22 @@
+package com.example.ChatApp.security;
+
+import java.security.Principal;
+
+/**
+ * Authenticated user as carried by the JWT claims. Controllers receive it through
+ * {@code @AuthenticationPrincipal} instead of looking the user up again, and it is the
+ * user bound to each STOMP session.
+ * <p>
+ * {@link #getName()} is the user id, because that is the key STOMP user destinations
+ * are addressed by.
+ */
+public record ChatUserPrincipal(
+        Long userId,
+        String username
+) implements Principal {
+
+    @Override
+    public String getName() {
+        return String.valueOf(userId);
+    }
+}
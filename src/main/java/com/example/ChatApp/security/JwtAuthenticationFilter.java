@@ -1,7 +1,5 @@
 package com.example.ChatApp.security;
 
-import com.example.ChatApp.entity.User;
-import com.example.ChatApp.repository.UserRepository;
 import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -18,8 +16,7 @@ import java.io.IOException;
 @RequiredArgsConstructor
 public class JwtAuthenticationFilter extends GenericFilter {
 
-    private final JwtUtil jwtUtil;
-    private final UserRepository userRepository;
+    private final TokenPrincipalResolver tokenPrincipalResolver;
 
     @Override
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
@@ -34,22 +31,17 @@ public class JwtAuthenticationFilter extends GenericFilter {
             token = header.substring(7);
         }
 
-        if (token != null && jwtUtil.validateToken(token) &&
-                SecurityContextHolder.getContext().getAuthentication() == null) {
-
-            Long userId = jwtUtil.getUserIdFromToken(token);
-            User user = userRepository.findById(userId).orElse(null);
-
-            if (user != null) {
+        if (token != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+            tokenPrincipalResolver.resolve(token).ifPresent(principal -> {
                 UsernamePasswordAuthenticationToken authToken =
                         new UsernamePasswordAuthenticationToken(
-                                user.getUsername(),
+                                principal,
                                 null,
                                 java.util.List.of(() -> "USER")
                         );
                 authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(httpRequest));
                 SecurityContextHolder.getContext().setAuthentication(authToken);
-            }
+            });
         }
 
         chain.doFilter(request, response);
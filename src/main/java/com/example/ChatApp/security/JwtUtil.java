@@ -3,53 +3,59 @@ package com.example.ChatApp.security;
 import com.example.ChatApp.entity.User;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
 import java.util.Date;
+import java.util.Optional;
 
 @Component
 public class JwtUtil {
 
-    private final String SECRET_KEY = "your-very-strong-secret-key-change-this";
-    private final long EXPIRATION_MS = 1000 * 60 * 30; // 30 minutes
-
-    private Key getSigningKey() {
-        return Keys.hmacShaKeyFor(SECRET_KEY.getBytes());
+    // key and parser are immutable and thread-safe, so they are built once
+    private final Key signingKey;
+    private final JwtParser parser;
+    private final long expirationMs;
+
+    public JwtUtil(
+            @Value("${chat.jwt.secret}") String secret,
+            @Value("${chat.jwt.expiration-ms:1800000}") long expirationMs
+    ) {
+        this.signingKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+        this.expirationMs = expirationMs;
     }
 
     public String generateToken(User user) {
         Date now = new Date();
-        Date expiryDate = new Date(now.getTime() + EXPIRATION_MS);
+        Date expiryDate = new Date(now.getTime() + expirationMs);
 
         return Jwts.builder()
                 .setSubject(String.valueOf(user.getId()))
                 .claim("username", user.getUsername())
                 .setIssuedAt(now)
                 .setExpiration(expiryDate)
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
-    public Long getUserIdFromToken(String token) {
-        Claims claims = parseClaims(token);
-        return Long.parseLong(claims.getSubject());
-    }
-
-    public boolean validateToken(String token) {
+    /**
+     * Verifies signature and expiry and returns the claims in a single parse,
+     * or empty when the token is malformed, forged or expired.
+     */
+    public Optional<Claims> verify(String token) {
         try {
-            parseClaims(token);
-            return true;
+            return Optional.of(parser.parseClaimsJws(token).getBody());
         } catch (JwtException | IllegalArgumentException ex) {
-            return false;
+            return Optional.empty();
         }
     }
 
-    private Claims parseClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    public long getExpirationMs() {
+        return expirationMs;
     }
 }
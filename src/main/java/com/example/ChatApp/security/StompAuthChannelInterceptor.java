@@ -0,0 +1,70 @@
+package com.example.ChatApp.security;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Authenticates the STOMP CONNECT frame from its {@code Authorization} header and binds the
+ * resulting {@link ChatUserPrincipal} to the session. Later frames on the session carry that
+ * user, so they need no token parsing, and clients cannot claim to be someone else.
+ * <p>
+ * Queues are only reachable through {@code /user/queue/...}, which the broker resolves to
+ * the subscriber's own sessions, so direct SUBSCRIBEs to {@code /queue/...} are refused.
+ * SENDs must go to {@code /app/...}, where {@code ChatWebSocketController.sendMessage} sets
+ * the sender from the session; a SEND straight to a broker or user destination would reach
+ * subscribers with whatever sender the client wrote into the body.
+ */
+@Component
+@RequiredArgsConstructor
+public class StompAuthChannelInterceptor implements ChannelInterceptor {
+
+    private static final String APPLICATION_PREFIX = "/app/";
+
+    private final TokenPrincipalResolver tokenPrincipalResolver;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null) {
+            return message;
+        }
+
+        if (StompCommand.SUBSCRIBE.equals(accessor.getCommand())) {
+            String destination = accessor.getDestination();
+            if (destination != null && destination.startsWith("/queue/")) {
+                throw new AccessDeniedException("Subscribe to /user" + destination + " instead");
+            }
+            return message;
+        }
+
+        if (StompCommand.SEND.equals(accessor.getCommand())) {
+            String destination = accessor.getDestination();
+            if (destination == null || !destination.startsWith(APPLICATION_PREFIX)) {
+                throw new AccessDeniedException("Messages can only be sent to " + APPLICATION_PREFIX + "...");
+            }
+            return message;
+        }
+
+        if (!StompCommand.CONNECT.equals(accessor.getCommand())) {
+            return message;
+        }
+
+        String authHeader = accessor.getFirstNativeHeader("Authorization");
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            throw new BadCredentialsException("Missing bearer token");
+        }
+
+        ChatUserPrincipal principal = tokenPrincipalResolver.resolve(authHeader.substring(7))
+                .orElseThrow(() -> new BadCredentialsException("Invalid token"));
+        accessor.setUser(principal);
+        return message;
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.ChatApp.security;
+
+import com.example.ChatApp.util.ExpiringLruCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+/**
+ * Turns a bearer token into a {@link ChatUserPrincipal}. Verified tokens are cached until
+ * they expire, so repeat requests with the same token skip signature verification.
+ */
+@Component
+public class TokenPrincipalResolver {
+
+    private final JwtUtil jwtUtil;
+    private final ExpiringLruCache<String, ChatUserPrincipal> principals;
+
+    public TokenPrincipalResolver(
+            JwtUtil jwtUtil,
+            @Value("${chat.cache.principal.max-size:10000}") int maxSize
+    ) {
+        this.jwtUtil = jwtUtil;
+        this.principals = new ExpiringLruCache<>(maxSize, jwtUtil.getExpirationMs());
+    }
+
+    public Optional<ChatUserPrincipal> resolve(String token) {
+        ChatUserPrincipal cached = principals.get(token);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        return jwtUtil.verify(token).map(claims -> {
+            ChatUserPrincipal principal = new ChatUserPrincipal(
+                    Long.parseLong(claims.getSubject()),
+                    claims.get("username", String.class)
+            );
+            principals.put(token, principal, claims.getExpiration().getTime());
+            return principal;
+        });
+    }
+}
@@ -4,103 +4,118 @@ import com.example.ChatApp.dto.MessageDto;
 import com.example.ChatApp.entity.ChatRoom;
 import com.example.ChatApp.entity.ChatRoomType;
 import com.example.ChatApp.entity.Message;
-import com.example.ChatApp.entity.User;
 import com.example.ChatApp.repository.ChatRoomRepository;
-import com.example.ChatApp.repository.MessageRepository;
-import com.example.ChatApp.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.List;
+import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
 public class ChatService {
 
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
+
     private final ChatRoomRepository chatRoomRepository;
-    private final MessageRepository messageRepository;
-    private final UserRepository userRepository;
+    private final IdentityCache identityCache;
+    private final RoomTailCache roomTailCache;
+    private final MessageStore messageStore;
+    private final SearchIndexer searchIndexer;
 
     public List<ChatRoom> getPublicRooms() {
         return chatRoomRepository.findByType(ChatRoomType.PUBLIC);
     }
 
-//    public List<Message> getMessagesForRoom(Long roomId) {
-//        ChatRoom room = chatRoomRepository.findById(roomId)
-//                .orElseThrow(() -> new RuntimeException("Room not found"));
-//        return messageRepository.findByRoomOrderByTimestampAsc(room);
-//    }
+    /**
+     * Returns one page of room history in ascending order. With no cursor the newest
+     * {@code limit} messages are returned; {@code before}/{@code after} are message ids.
+     * Pages within the newest messages of an active room come from {@link RoomTailCache},
+     * the rest from the {@link MessageStore}.
+     */
+    public List<MessageDto> getMessagesForRoomDto(Long roomId, Long before, Long after, int limit) {
+        if (before != null && after != null) {
+            throw new RuntimeException("Use either before or after, not both");
+        }
+        if (!identityCache.roomExists(roomId)) {
+            throw new RuntimeException("Room not found");
+        }
 
-    public List<MessageDto> getMessagesForRoomDto(Long roomId) {
-        ChatRoom room = chatRoomRepository.findById(roomId)
-                .orElseThrow(() -> new RuntimeException("Room not found"));
+        int pageSize = clampPageSize(limit);
+        Optional<List<MessageDto>> cached = roomTailCache.page(roomId, before, after, pageSize);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
 
-        List<Message> messages = messageRepository.findByRoomOrderByTimestampAsc(room);
+        return messageStore.roomPage(roomId, before, after, pageSize);
+    }
 
-        return messages.stream()
-                .map(m -> new MessageDto(
-                        m.getId(),
-                        m.getSender() != null ? m.getSender().getId() : null,
-                        m.getSender() != null ? m.getSender().getUsername() : null,
-                        m.getReceiver() != null ? m.getReceiver().getId() : null,
-                        m.getRoom() != null ? m.getRoom().getId() : null,
-                        m.getContent(),
-                        m.getTimestamp()
-                ))
-                .toList();
+    private int clampPageSize(int limit) {
+        if (limit <= 0) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(limit, MAX_PAGE_SIZE);
     }
     
+    /** The whole conversation, oldest first. */
     public List<MessageDto> getPrivateMessagesDto(Long user1Id, Long user2Id) {
-        User u1 = userRepository.findById(user1Id)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        User u2 = userRepository.findById(user2Id)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-
-        List<Message> messages = messageRepository
-                .findBySenderAndReceiverOrReceiverAndSenderOrderByTimestampAsc(u1, u2, u1, u2);
-
-        return messages.stream()
-                .map(m -> new MessageDto(
-                        m.getId(),
-                        m.getSender() != null ? m.getSender().getId() : null,
-                        m.getSender() != null ? m.getSender().getUsername() : null,
-                        m.getReceiver() != null ? m.getReceiver().getId() : null,
-                        m.getRoom() != null ? m.getRoom().getId() : null,
-                        m.getContent(),
-                        m.getTimestamp()
-                ))
-                .toList();
+        return messageStore.conversation(user1Id, user2Id);
     }
 
-    public Long getUserIdByUsername(String username) {
-        return userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"))
-                .getId();
+    /** Private messages to or from the user that came after message {@code after}, oldest first. */
+    public List<MessageDto> getPrivateMessagesAfter(Long userId, Long after, int limit) {
+        return messageStore.privateAfter(userId, after, clampPageSize(limit));
     }
 
-    public Message saveMessage(Long senderId, Long roomId, Long receiverId, String content) {
-        User sender = userRepository.findById(senderId)
+    /**
+     * Validates and stores a message through the {@link MessageStore}; once it is stored it
+     * joins the room's cached tail and {@link SearchIndexer} indexes it in the background.
+     * <p>
+     * Sender, room and receiver are checked through {@link IdentityCache}, so a steady-state
+     * send performs no lookup reads.
+     * Content must be present and fit the {@code content} column, since write-behind and the
+     * log store acknowledge the message before the row is inserted.
+     */
+    public MessageDto saveMessage(Long senderId, Long roomId, Long receiverId, String content) {
+        String senderUsername = identityCache.findUsername(senderId)
                 .orElseThrow(() -> new RuntimeException("Sender not found"));
-//        ChatRoom room = chatRoomRepository.findById(roomId)
-//                .orElseThrow(() -> new RuntimeException("Room not found"));
-
-        Message message = new Message();
-        message.setSender(sender);
-        if (roomId != null) {
-            ChatRoom room = chatRoomRepository.findById(roomId)
-                    .orElseThrow(() -> new RuntimeException("Room not found"));
-            message.setRoom(room);
+        if (roomId != null && !identityCache.roomExists(roomId)) {
+            throw new RuntimeException("Room not found");
+        }
+        if (receiverId != null && identityCache.findUsername(receiverId).isEmpty()) {
+            throw new RuntimeException("Receiver not found");
         }
-        if (receiverId != null) {
-            User receiver = userRepository.findById(receiverId)
-                    .orElseThrow(() -> new RuntimeException("Receiver not found"));
-            message.setReceiver(receiver);
+        if (content == null) {
+            throw new RuntimeException("Message content is required");
+        }
+        if (content.length() > Message.MAX_CONTENT_LENGTH) {
+            throw new RuntimeException("Message content is longer than " + Message.MAX_CONTENT_LENGTH + " characters");
         }
-        message.setContent(content);
 
-        return messageRepository.save(message);
+        MessageDto dto = messageStore.append(senderId, senderUsername, roomId, receiverId, content);
+        afterCommit(() -> {
+            roomTailCache.append(dto);
+            searchIndexer.enqueue(dto);
+        });
+        return dto;
     }
 
+    // cached history must never show a message that was rolled back
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
 
     public ChatRoom createPublicRoom(String name) {
         ChatRoom room = new ChatRoom();
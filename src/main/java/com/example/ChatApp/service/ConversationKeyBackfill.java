@@ -0,0 +1,132 @@
+package com.example.ChatApp.service;
+
+import com.example.ChatApp.repository.MessageRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Fills {@code conversation_key} on private messages written before the column existed, in
+ * batches of {@code batch-size} ids walked in primary key order with a pause in between, so
+ * a large table is keyed without long locks. Several nodes may run it at once; a row is
+ * only keyed while its key is null.
+ * <p>
+ * Until it finished, private history is read with the participant query, which also finds
+ * unkeyed rows. New messages get their key on insert, except on nodes still running the
+ * version before the column during a rolling upgrade: every {@code recheck-ms} the rows
+ * added since the previous check are looked at again, and unkeyed ones send reads back to
+ * the participant query until they are keyed too.
+ */
+@Slf4j
+@Component
+public class ConversationKeyBackfill {
+
+    private final MessageRepository messageRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final long pauseMs;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile boolean complete;
+    // every private message with an id up to this one has its key; checks start above it
+    private volatile long keyedThrough = Long.MIN_VALUE;
+    // the highest id when the previous check started
+    private long previousMaxId = Long.MIN_VALUE;
+
+    public ConversationKeyBackfill(
+            MessageRepository messageRepository,
+            TransactionTemplate transactionTemplate,
+            @Value("${chat.persistence.conversation-backfill.batch-size:1000}") int batchSize,
+            @Value("${chat.persistence.conversation-backfill.pause-ms:50}") long pauseMs
+    ) {
+        this.messageRepository = messageRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.pauseMs = pauseMs;
+    }
+
+    /** True once every private message has a conversation key. */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        check();
+    }
+
+    @Scheduled(fixedDelayString = "${chat.persistence.conversation-backfill.recheck-ms:60000}",
+            initialDelayString = "${chat.persistence.conversation-backfill.recheck-ms:60000}")
+    public void recheck() {
+        check();
+    }
+
+    private void check() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            Long maxId = messageRepository.findMaxId();
+            if (messageRepository.findUnkeyedPrivateIds(keyedThrough, PageRequest.of(0, 1)).isEmpty()) {
+                // a row below this check's max id may still be committing, so the next check covers it
+                keyedThrough = Math.max(keyedThrough, previousMaxId);
+                previousMaxId = maxId != null ? maxId : Long.MIN_VALUE;
+                complete = true;
+                running.set(false);
+                return;
+            }
+        } catch (RuntimeException e) {
+            running.set(false);
+            throw e;
+        }
+        complete = false;
+        Thread thread = new Thread(() -> {
+            try {
+                run();
+            } finally {
+                running.set(false);
+            }
+        }, "conversation-key-backfill");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void run() {
+        log.info("Backfilling conversation keys of private messages");
+        long after = keyedThrough;
+        long keyed = 0;
+        try {
+            while (true) {
+                List<Long> ids = messageRepository.findUnkeyedPrivateIds(after, PageRequest.of(0, batchSize));
+                if (ids.isEmpty()) {
+                    break;
+                }
+                Integer updated = transactionTemplate.execute(status -> messageRepository.assignConversationKeys(ids));
+                keyed += updated != null ? updated : 0;
+                after = ids.get(ids.size() - 1);
+                if (ids.size() < batchSize) {
+                    break;
+                }
+                Thread.sleep(pauseMs);
+            }
+        } catch (DataAccessException e) {
+            // reads stay on the participant query; the next check starts over
+            log.error("Conversation key backfill stopped after {} messages", keyed, e);
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        complete = true;
+        log.info("Backfilled conversation keys of {} private messages", keyed);
+    }
+}
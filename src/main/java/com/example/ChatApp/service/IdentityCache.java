@@ -0,0 +1,56 @@
+package com.example.ChatApp.service;
+
+import com.example.ChatApp.repository.ChatRoomRepository;
+import com.example.ChatApp.repository.UserRepository;
+import com.example.ChatApp.util.ExpiringLruCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+/**
+ * Remembers user ids (with their usernames) and room ids that are known to exist, so the
+ * message write path can skip the lookup reads once an id has been seen. Misses are
+ * checked against the database and negative results are not cached.
+ */
+@Component
+public class IdentityCache {
+
+    private final UserRepository userRepository;
+    private final ChatRoomRepository chatRoomRepository;
+    private final ExpiringLruCache<Long, String> usernames;
+    private final ExpiringLruCache<Long, Boolean> rooms;
+
+    public IdentityCache(
+            UserRepository userRepository,
+            ChatRoomRepository chatRoomRepository,
+            @Value("${chat.cache.identity.max-size:10000}") int maxSize,
+            @Value("${chat.cache.identity.ttl-seconds:300}") long ttlSeconds
+    ) {
+        this.userRepository = userRepository;
+        this.chatRoomRepository = chatRoomRepository;
+        this.usernames = new ExpiringLruCache<>(maxSize, ttlSeconds * 1000);
+        this.rooms = new ExpiringLruCache<>(maxSize, ttlSeconds * 1000);
+    }
+
+    public Optional<String> findUsername(Long userId) {
+        String cached = usernames.get(userId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<String> username = userRepository.findUsernameById(userId);
+        username.ifPresent(name -> usernames.put(userId, name));
+        return username;
+    }
+
+    public boolean roomExists(Long roomId) {
+        if (rooms.get(roomId) != null) {
+            return true;
+        }
+        boolean exists = chatRoomRepository.existsById(roomId);
+        if (exists) {
+            rooms.put(roomId, Boolean.TRUE);
+        }
+        return exists;
+    }
+}
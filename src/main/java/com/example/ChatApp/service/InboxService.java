@@ -0,0 +1,164 @@
+package com.example.ChatApp.service;
+
+import com.example.ChatApp.dto.InboxEntryDto;
+import com.example.ChatApp.dto.MessageDto;
+import com.example.ChatApp.entity.Message;
+import com.example.ChatApp.repository.ReadMarkerRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Per-user inbox: every room and private conversation the user takes part in, with its last
+ * message and how many messages they have not read. Stored messages bump a
+ * {@code ConversationSummary} in the same transaction and move the sender's
+ * {@code ReadMarker} past their own message, so reading the inbox is a lookup of the user's
+ * markers and never counts messages.
+ * <p>
+ * A user is in a room once they posted or marked it read, and in a private conversation
+ * from its first message. Conversations from before the summaries existed show up with
+ * their next message.
+ */
+@Service
+@RequiredArgsConstructor
+public class InboxService {
+
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 200;
+
+    private static final String ROOM_KEY_PREFIX = "room:";
+    private static final String PRIVATE_KEY_PREFIX = "dm:";
+
+    private static final String BUMP_SUMMARY_SQL =
+            "update conversation_summaries set message_count = message_count + ?, last_message_id = greatest(last_message_id, ?) where conversation_key = ?";
+    private static final String INSERT_SUMMARY_SQL =
+            "insert into conversation_summaries (conversation_key, room_id, user_low_id, user_high_id, message_count, last_message_id) values (?, ?, ?, ?, ?, ?)";
+    private static final String COUNT_SQL =
+            "select message_count from conversation_summaries where conversation_key = ?";
+    private static final String ADVANCE_MARKER_SQL =
+            "update read_markers set read_count = greatest(read_count, ?) where user_id = ? and conversation_key = ?";
+    private static final String INSERT_MARKER_SQL =
+            "insert into read_markers (user_id, conversation_key, read_count) values (?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ReadMarkerRepository readMarkerRepository;
+    private final IdentityCache identityCache;
+
+    public static String roomKey(Long roomId) {
+        return ROOM_KEY_PREFIX + roomId;
+    }
+
+    public static String conversationKey(MessageDto message) {
+        return message.getReceiverId() != null
+                ? Message.conversationKey(message.getSenderId(), message.getReceiverId())
+                : roomKey(message.getRoomId());
+    }
+
+    /** Conversations of the user, most recently active first. */
+    public List<InboxEntryDto> getInbox(Long userId, int limit) {
+        int pageSize = limit <= 0 ? DEFAULT_LIMIT : Math.min(limit, MAX_LIMIT);
+        return readMarkerRepository.findInbox(userId, PageRequest.of(0, pageSize));
+    }
+
+    /**
+     * Counts newly stored messages into their conversations. Runs in the transaction that
+     * inserts them, so summaries and markers never get ahead of the messages.
+     * <p>
+     * The bump holds the conversation's summary row lock until that transaction commits, so
+     * synchronous sends into one busy room are serialized on it for the rest of their insert
+     * and commit. With write-behind each batch takes the lock once per conversation for all of
+     * its messages, which is the setting to use for rooms with many concurrent senders.
+     */
+    @Transactional
+    public void record(List<MessageDto> messages) {
+        // one pass per conversation, in key order so concurrent writers lock summaries alike
+        Map<String, List<MessageDto>> byConversation = new TreeMap<>();
+        for (MessageDto message : messages) {
+            byConversation.computeIfAbsent(conversationKey(message), key -> new ArrayList<>()).add(message);
+        }
+        byConversation.forEach(this::recordConversation);
+    }
+
+    /** Marks everything currently in the conversation as read by the user. */
+    @Transactional
+    public void markRead(Long userId, String conversationKey) {
+        checkParticipant(userId, conversationKey);
+        Long count = jdbcTemplate.query(COUNT_SQL, rs -> rs.next() ? rs.getLong(1) : 0L, conversationKey);
+        advanceMarker(userId, conversationKey, count);
+    }
+
+    private void recordConversation(String key, List<MessageDto> messages) {
+        MessageDto first = messages.get(0);
+        int added = messages.size();
+        long lastId = messages.stream().mapToLong(MessageDto::getId).max().orElseThrow();
+
+        boolean created = false;
+        if (jdbcTemplate.update(BUMP_SUMMARY_SQL, added, lastId, key) == 0) {
+            Long low = first.getReceiverId() != null ? Math.min(first.getSenderId(), first.getReceiverId()) : null;
+            Long high = first.getReceiverId() != null ? Math.max(first.getSenderId(), first.getReceiverId()) : null;
+            try {
+                jdbcTemplate.update(INSERT_SUMMARY_SQL, key, first.getRoomId(), low, high, added, lastId);
+                created = true;
+            } catch (DuplicateKeyException e) {
+                // another writer created it first
+                jdbcTemplate.update(BUMP_SUMMARY_SQL, added, lastId, key);
+            }
+        }
+
+        // the summary row stays locked until commit, so this is exactly our own increment on top
+        long count = jdbcTemplate.queryForObject(COUNT_SQL, Long.class, key);
+        Map<Long, Long> readBySender = new LinkedHashMap<>();
+        for (int i = 0; i < added; i++) {
+            // a sender has read up to and including their own message
+            readBySender.put(messages.get(i).getSenderId(), count - added + i + 1);
+        }
+        readBySender.forEach((userId, read) -> advanceMarker(userId, key, read));
+
+        if (created && first.getReceiverId() != null) {
+            for (Long participant : List.of(first.getSenderId(), first.getReceiverId())) {
+                if (!readBySender.containsKey(participant)) {
+                    advanceMarker(participant, key, 0);
+                }
+            }
+        }
+    }
+
+    private void advanceMarker(Long userId, String key, long readCount) {
+        if (jdbcTemplate.update(ADVANCE_MARKER_SQL, readCount, userId, key) > 0) {
+            return;
+        }
+        try {
+            jdbcTemplate.update(INSERT_MARKER_SQL, userId, key, readCount);
+        } catch (DuplicateKeyException e) {
+            jdbcTemplate.update(ADVANCE_MARKER_SQL, readCount, userId, key);
+        }
+    }
+
+    private void checkParticipant(Long userId, String key) {
+        try {
+            if (key.startsWith(ROOM_KEY_PREFIX)
+                    && identityCache.roomExists(Long.valueOf(key.substring(ROOM_KEY_PREFIX.length())))) {
+                return;
+            }
+            if (key.startsWith(PRIVATE_KEY_PREFIX)) {
+                String[] ids = key.substring(PRIVATE_KEY_PREFIX.length()).split(":");
+                if (ids.length == 2 && key.equals(Message.conversationKey(Long.valueOf(ids[0]), Long.valueOf(ids[1])))
+                        && (userId.equals(Long.valueOf(ids[0])) || userId.equals(Long.valueOf(ids[1])))) {
+                    return;
+                }
+            }
+        } catch (NumberFormatException e) {
+            // falls through
+        }
+        throw new RuntimeException("Conversation not found");
+    }
+}
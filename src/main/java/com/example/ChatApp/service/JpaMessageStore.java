@@ -0,0 +1,214 @@
+package com.example.ChatApp.service;
+
+import com.example.ChatApp.dto.MessageDto;
+import com.example.ChatApp.entity.Message;
+import com.example.ChatApp.repository.ArchivedMessageRepository;
+import com.example.ChatApp.repository.ChatRoomRepository;
+import com.example.ChatApp.repository.MessageRepository;
+import com.example.ChatApp.repository.UserRepository;
+import com.example.ChatApp.util.TimeOrderedIdGenerator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Messages in the database: the {@code messages} table, continued into {@code messages_archive}
+ * for history that was archived. Always present; {@link LogMessageStore} reads the history
+ * from before its log through here.
+ */
+@Component
+@RequiredArgsConstructor
+public class JpaMessageStore implements MessageStore {
+
+    private final ChatRoomRepository chatRoomRepository;
+    private final MessageRepository messageRepository;
+    private final ArchivedMessageRepository archivedMessageRepository;
+    private final UserRepository userRepository;
+    private final TimeOrderedIdGenerator idGenerator;
+    private final Optional<MessageBatchWriter> messageBatchWriter;
+    private final ConversationKeyBackfill conversationKeyBackfill;
+    private final InboxService inboxService;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * With write-behind enabled the message gets its id and timestamp here and is queued for
+     * a batched insert, so it can be broadcast before it reaches the database; queuing opens
+     * no transaction. Otherwise it is inserted in a transaction of its own. Either way
+     * {@link InboxService} counts it in the transaction that inserts it. Sender, room and
+     * receiver are attached as references, so a send performs no lookup reads.
+     */
+    @Override
+    public MessageDto append(Long senderId, String senderUsername, Long roomId, Long receiverId, String content) {
+        if (messageBatchWriter.isPresent()) {
+            MessageDto dto = new MessageDto(
+                    idGenerator.nextId(),
+                    senderId,
+                    senderUsername,
+                    receiverId,
+                    roomId,
+                    content,
+                    Instant.now().truncatedTo(ChronoUnit.MICROS) // column precision
+            );
+            messageBatchWriter.get().enqueue(dto);
+            return dto;
+        }
+        return transactionTemplate.execute(status -> save(senderId, senderUsername, roomId, receiverId, content));
+    }
+
+    private MessageDto save(Long senderId, String senderUsername, Long roomId, Long receiverId, String content) {
+        Message message = new Message();
+        message.setSender(userRepository.getReferenceById(senderId));
+        if (roomId != null) {
+            message.setRoom(chatRoomRepository.getReferenceById(roomId));
+        }
+        if (receiverId != null) {
+            message.setReceiver(userRepository.getReferenceById(receiverId));
+        }
+        message.setContent(content);
+
+        Message saved = messageRepository.save(message);
+        MessageDto dto = new MessageDto(
+                saved.getId(),
+                senderId,
+                senderUsername,
+                receiverId,
+                roomId,
+                saved.getContent(),
+                saved.getTimestamp()
+        );
+        inboxService.record(List.of(dto));
+        return dto;
+    }
+
+    /** A page that runs past the oldest message in {@code messages} continues in the archive. */
+    @Override
+    public List<MessageDto> roomPage(Long roomId, Long before, Long after, int limit) {
+        Pageable page = PageRequest.of(0, limit);
+
+        if (after != null) {
+            List<MessageDto> newer = messageRepository.findInRoomAfter(roomId, after, page);
+            if (!newer.isEmpty()) {
+                return newer;
+            }
+            // nothing newer, or the cursor was archived
+            return archivedMessageRepository.findTimestamp(after)
+                    .map(at -> continueAfter(
+                            archivedMessageRepository.findInRoomAfter(roomId, at, after, page), at, after, limit,
+                            (timestamp, id, rest) -> messageRepository.findInRoomAfterPosition(roomId, timestamp, id, rest)))
+                    .orElse(newer);
+        }
+
+        List<MessageDto> newestFirst = before != null
+                ? messageRepository.findInRoomBefore(roomId, before, page)
+                : messageRepository.findLatestInRoom(roomId, page);
+        if (newestFirst.size() < limit) {
+            newestFirst = continueInArchive(roomId, before, newestFirst, limit);
+        }
+        return ascending(newestFirst);
+    }
+
+    /** Up to {@code limit} room messages before the position ({@code timestamp}, {@code id}), oldest first. */
+    public List<MessageDto> roomPageBefore(Long roomId, Instant timestamp, Long id, int limit) {
+        List<MessageDto> newestFirst = messageRepository.findInRoomBeforePosition(roomId, timestamp, id, PageRequest.of(0, limit));
+        if (newestFirst.size() < limit) {
+            newestFirst = continueInArchive(roomId, timestamp, id, newestFirst, limit);
+        }
+        return ascending(newestFirst);
+    }
+
+    /** The whole conversation, oldest first: its archived part, then what is still in {@code messages}. */
+    @Override
+    public List<MessageDto> conversation(Long userA, Long userB) {
+        String conversationKey = Message.conversationKey(userA, userB);
+        List<MessageDto> hot = conversationKeyBackfill.isComplete()
+                ? messageRepository.findConversation(conversationKey)
+                : messageRepository.findConversationByParticipants(userA, userB);
+        List<MessageDto> archived = archivedMessageRepository.findConversation(conversationKey);
+        if (archived.isEmpty()) {
+            return hot;
+        }
+        List<MessageDto> messages = new ArrayList<>(archived);
+        messages.addAll(hot);
+        return messages;
+    }
+
+    @Override
+    public List<MessageDto> privateAfter(Long userId, Long after, int limit) {
+        Pageable page = PageRequest.of(0, limit);
+        List<MessageDto> newer = messageRepository.findPrivateAfter(userId, after, page);
+        if (!newer.isEmpty()) {
+            return newer;
+        }
+        return archivedMessageRepository.findTimestamp(after)
+                .map(at -> continueAfter(
+                        archivedMessageRepository.findPrivateAfter(userId, at, after, page), at, after, limit,
+                        (timestamp, id, rest) -> messageRepository.findPrivateAfterPosition(userId, timestamp, id, rest)))
+                .orElse(newer);
+    }
+
+    // a short page of newest-first room history goes on with older messages from the archive
+    private List<MessageDto> continueInArchive(Long roomId, Long before, List<MessageDto> newestFirst, int pageSize) {
+        if (newestFirst.isEmpty() && before != null) {
+            return messageRepository.findTimestamp(before).or(() -> archivedMessageRepository.findTimestamp(before))
+                    .map(at -> continueInArchive(roomId, at, before, newestFirst, pageSize))
+                    .orElse(newestFirst);
+        }
+        return continueInArchive(roomId, null, null, newestFirst, pageSize);
+    }
+
+    // same, below the position (timestamp, id) when the page is empty, or the newest archived messages without one
+    private List<MessageDto> continueInArchive(Long roomId, Instant timestamp, Long id, List<MessageDto> newestFirst,
+                                               int pageSize) {
+        Pageable rest = PageRequest.of(0, pageSize - newestFirst.size());
+        List<MessageDto> older;
+        if (!newestFirst.isEmpty()) {
+            MessageDto oldest = newestFirst.get(newestFirst.size() - 1);
+            older = archivedMessageRepository.findInRoomBefore(roomId, oldest.getTimestamp(), oldest.getId(), rest);
+        } else if (id != null) {
+            older = archivedMessageRepository.findInRoomBefore(roomId, timestamp, id, rest);
+        } else {
+            older = archivedMessageRepository.findLatestInRoom(roomId, rest);
+        }
+        if (older.isEmpty()) {
+            return newestFirst;
+        }
+        List<MessageDto> combined = new ArrayList<>(newestFirst);
+        combined.addAll(older);
+        return combined;
+    }
+
+    // an oldest-first page read from the archive, filled up with what follows it in messages
+    private static List<MessageDto> continueAfter(List<MessageDto> archived, Instant at, Long after, int pageSize,
+                                                  PositionQuery hot) {
+        if (archived.size() == pageSize) {
+            return archived;
+        }
+        MessageDto last = archived.isEmpty() ? null : archived.get(archived.size() - 1);
+        List<MessageDto> messages = new ArrayList<>(archived);
+        messages.addAll(hot.after(
+                last != null ? last.getTimestamp() : at,
+                last != null ? last.getId() : after,
+                PageRequest.of(0, pageSize - archived.size())));
+        return messages;
+    }
+
+    private static List<MessageDto> ascending(List<MessageDto> newestFirst) {
+        List<MessageDto> messages = new ArrayList<>(newestFirst);
+        Collections.reverse(messages);
+        return messages;
+    }
+
+    @FunctionalInterface
+    private interface PositionQuery {
+        List<MessageDto> after(Instant timestamp, Long id, Pageable page);
+    }
+}
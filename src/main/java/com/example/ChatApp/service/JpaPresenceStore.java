@@ -0,0 +1,69 @@
+package com.example.ChatApp.service;
+
+import com.example.ChatApp.entity.PresenceNode;
+import com.example.ChatApp.repository.PresenceNodeRepository;
+import com.example.ChatApp.util.NodeHeartbeat;
+import com.example.ChatApp.util.PresenceStore;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/** {@link PresenceStore} on the shared database, one {@code presence_nodes} row per node. */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "chat.presence.mode", havingValue = "cluster")
+public class JpaPresenceStore implements PresenceStore {
+
+    private final PresenceNodeRepository presenceNodeRepository;
+
+    @Override
+    @Transactional
+    public boolean heartbeat(int nodeId, long beat, long version) {
+        return presenceNodeRepository.touch(nodeId, beat, version) == 1;
+    }
+
+    @Override
+    @Transactional
+    public void write(int nodeId, long beat, long version, long[] users) {
+        PresenceNode node = presenceNodeRepository.findById(nodeId).orElseGet(PresenceNode::new);
+        node.setNodeId(nodeId);
+        node.setBeat(beat);
+        node.setVersion(version);
+        node.setUsers(pack(users));
+        presenceNodeRepository.save(node);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<NodeHeartbeat> heartbeats() {
+        return presenceNodeRepository.findHeartbeats();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long[] users(int nodeId) {
+        return presenceNodeRepository.findUsers(nodeId).map(JpaPresenceStore::unpack).orElse(new long[0]);
+    }
+
+    @Override
+    @Transactional
+    public void remove(int nodeId) {
+        presenceNodeRepository.deleteById(nodeId);
+    }
+
+    private static byte[] pack(long[] users) {
+        ByteBuffer buffer = ByteBuffer.allocate(users.length * Long.BYTES);
+        buffer.asLongBuffer().put(users);
+        return buffer.array();
+    }
+
+    private static long[] unpack(byte[] packed) {
+        long[] users = new long[packed.length / Long.BYTES];
+        ByteBuffer.wrap(packed).asLongBuffer().get(users);
+        return users;
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.ChatApp.service;
+
+import com.example.ChatApp.config.WebSocketProperties;
+import com.example.ChatApp.dto.MessageDto;
+import com.example.ChatApp.entity.Message;
+import com.example.ChatApp.util.MessageLog;
+import com.example.ChatApp.util.MessageLogIndex;
+import com.example.ChatApp.util.TimeOrderedIdGenerator;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Messages in a local {@link MessageLog}: a send returns once its record is on disk, which
+ * group commit keeps well under a millisecond, and {@link MessageLogReplicator} copies the
+ * log into the database afterwards. History since the first logged message is read from the
+ * log through a {@link MessageLogIndex} per room, per user (private messages) and per
+ * conversation, rebuilt from the log at startup; older history comes from
+ * {@link JpaMessageStore}. Replicated rows that are also in the log are skipped there by id.
+ * <p>
+ * Once the replicator is past a whole segment, {@link #stopReadingBefore} moves the first
+ * logged message up so reads of those messages go to the database, and
+ * {@link #deleteBefore} later drops their index entries and the segment files.
+ * <p>
+ * The log lives on this node's disk, so this store cannot serve several nodes.
+ */
+@Component
+@Primary
+@ConditionalOnProperty(name = "chat.persistence.store", havingValue = "log")
+public class LogMessageStore implements MessageStore {
+
+    private final JpaMessageStore jpaMessageStore;
+    private final TimeOrderedIdGenerator idGenerator;
+    private final MessageLogIndex index = new MessageLogIndex();
+    private final Object appendLock = new Object();
+    private final MessageLog messageLog;
+
+    // the first logged message; everything before it is only in the database
+    private volatile Instant firstTimestamp;
+    private volatile long firstId = Long.MAX_VALUE;
+
+    public LogMessageStore(
+            JpaMessageStore jpaMessageStore,
+            TimeOrderedIdGenerator idGenerator,
+            WebSocketProperties webSocketProperties,
+            MeterRegistry meterRegistry,
+            @Value("${chat.persistence.log.dir:data/message-log}") String dir,
+            @Value("${chat.persistence.log.segment-bytes:67108864}") int segmentBytes
+    ) throws IOException {
+        if (webSocketProperties.getBroker().getMode() == WebSocketProperties.BrokerMode.RELAY) {
+            throw new IllegalStateException("chat.persistence.store=log keeps messages on one node and cannot be used with the relay broker");
+        }
+        this.jpaMessageStore = jpaMessageStore;
+        this.idGenerator = idGenerator;
+        this.messageLog = MessageLog.open(Path.of(dir), segmentBytes, this::index);
+        Gauge.builder("chat.persistence.log.index.entries", index, MessageLogIndex::entryCount).register(meterRegistry);
+    }
+
+    @Override
+    public MessageDto append(Long senderId, String senderUsername, Long roomId, Long receiverId, String content) {
+        MessageDto message;
+        long position;
+        // ids and log order agree, so the index stays sorted by appending
+        synchronized (appendLock) {
+            message = new MessageDto(
+                    idGenerator.nextId(),
+                    senderId,
+                    senderUsername,
+                    receiverId,
+                    roomId,
+                    content,
+                    Instant.now().truncatedTo(ChronoUnit.MICROS) // column precision
+            );
+            position = messageLog.append(MessageLogCodec.encode(message));
+        }
+        messageLog.awaitDurable(position);
+        return message;
+    }
+
+    @Override
+    public List<MessageDto> roomPage(Long roomId, Long before, Long after, int limit) {
+        long first = firstId;
+        String key = InboxService.roomKey(roomId);
+        if (after != null) {
+            return pageAfter(key, after, first, limit, size -> jpaMessageStore.roomPage(roomId, null, after, size));
+        }
+        if (first == Long.MAX_VALUE || (before != null && before < first)) {
+            return jpaMessageStore.roomPage(roomId, before, null, limit);
+        }
+
+        List<MessageDto> newer = read(index.before(key, before, limit));
+        if (newer.size() == limit) {
+            return newer;
+        }
+        // the log has nothing older for this room; go on below its oldest message, or below the log
+        MessageDto oldest = newer.isEmpty() ? null : newer.get(0);
+        List<MessageDto> messages = new ArrayList<>(oldest != null
+                ? jpaMessageStore.roomPageBefore(roomId, oldest.getTimestamp(), oldest.getId(), limit - newer.size())
+                : jpaMessageStore.roomPageBefore(roomId, firstTimestamp, first, limit));
+        messages.addAll(newer);
+        return messages;
+    }
+
+    @Override
+    public List<MessageDto> conversation(Long userA, Long userB) {
+        long first = firstId;
+        List<MessageDto> messages = new ArrayList<>(beforeLog(jpaMessageStore.conversation(userA, userB), first));
+        messages.addAll(read(index.after(Message.conversationKey(userA, userB), first - 1, Integer.MAX_VALUE)));
+        return messages;
+    }
+
+    @Override
+    public List<MessageDto> privateAfter(Long userId, Long after, int limit) {
+        return pageAfter(userKey(userId), after, firstId, limit, size -> jpaMessageStore.privateAfter(userId, after, size));
+    }
+
+    @PreDestroy
+    public void close() {
+        messageLog.close();
+    }
+
+    MessageLog messageLog() {
+        return messageLog;
+    }
+
+    /**
+     * Makes the first durable record at or after {@code position} the first logged message,
+     * so older ones are read from the database; they must be replicated. False when there is
+     * no such record yet. The index keeps the older entries for readers still using them.
+     */
+    boolean stopReadingBefore(long position) {
+        long[] first = new long[1];
+        Instant[] timestamp = new Instant[1];
+        messageLog.scan(position, 1, (at, record) -> {
+            first[0] = MessageLogCodec.id(record);
+            timestamp[0] = MessageLogCodec.timestamp(record);
+        });
+        if (timestamp[0] == null) {
+            return false;
+        }
+        firstTimestamp = timestamp[0];
+        firstId = first[0];
+        return true;
+    }
+
+    /** Drops the index entries and segments before {@code position}; returns the segments deleted. */
+    int deleteBefore(long position) {
+        index.removeBefore(position);
+        return messageLog.deleteSegmentsBefore(position);
+    }
+
+    // a cursor from before the log reads on in the database until it reaches logged messages
+    private List<MessageDto> pageAfter(String key, long after, long first, int limit, IntFunction<List<MessageDto>> stored) {
+        if (after >= first) {
+            return read(index.after(key, after, limit));
+        }
+        List<MessageDto> messages = beforeLog(stored.apply(limit), first);
+        if (messages.size() < limit) {
+            messages.addAll(read(index.after(key, first - 1, limit - messages.size())));
+        }
+        return messages;
+    }
+
+    private static List<MessageDto> beforeLog(List<MessageDto> stored, long first) {
+        List<MessageDto> messages = new ArrayList<>(stored.size());
+        for (MessageDto message : stored) {
+            if (message.getId() < first) {
+                messages.add(message);
+            }
+        }
+        return messages;
+    }
+
+    private List<MessageDto> read(long[] positions) {
+        List<MessageDto> messages = new ArrayList<>(positions.length);
+        for (long position : positions) {
+            messages.add(MessageLogCodec.decode(messageLog.read(position)));
+        }
+        return messages;
+    }
+
+    // called by the log in log order, at startup and once records are durable
+    private void index(long position, ByteBuffer record) {
+        long id = MessageLogCodec.id(record);
+        if (firstId == Long.MAX_VALUE) {
+            firstTimestamp = MessageLogCodec.timestamp(record);
+            firstId = id;
+        }
+        Long roomId = MessageLogCodec.roomId(record);
+        if (roomId != null) {
+            index.add(InboxService.roomKey(roomId), id, position);
+            return;
+        }
+        Long receiverId = MessageLogCodec.receiverId(record);
+        if (receiverId == null) {
+            return; // neither room nor receiver, nobody reads it back
+        }
+        long senderId = MessageLogCodec.senderId(record);
+        index.add(userKey(senderId), id, position);
+        if (receiverId != senderId) {
+            index.add(userKey(receiverId), id, position);
+        }
+        index.add(Message.conversationKey(senderId, receiverId), id, position);
+    }
+
+    private static String userKey(long userId) {
+        return "user:" + userId;
+    }
+}
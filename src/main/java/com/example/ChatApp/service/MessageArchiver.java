@@ -0,0 +1,129 @@
+package com.example.ChatApp.service;
+
+import com.example.ChatApp.repository.ArchivedMessageRepository;
+import com.example.ChatApp.repository.MessageRepository;
+import com.example.ChatApp.util.TimeOrderedIdGenerator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves messages older than {@code hot-days} from {@code messages} to
+ * {@code messages_archive}, so the hot table and its indexes stay the size of recent
+ * traffic. Every {@code interval-ms} it walks the old rows in primary key order and moves
+ * {@code batch-size} of them per transaction (copy, then delete). After each batch it pauses
+ * long enough that archiving takes at most {@code max-duty-percent} of the time, which keeps
+ * its locks and I/O out of the way of live sends.
+ * <p>
+ * Runs on its own thread rather than the shared scheduler, whose other tasks must not wait
+ * out those pauses. Enable it on one node only: nodes archiving at once copy the same rows,
+ * and the later copy fails on the archive's primary key, which rolls that batch back and
+ * ends the node's run ("Archiving stopped") until its next interval.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "chat.persistence.archive.enabled", havingValue = "true")
+public class MessageArchiver {
+
+    private final MessageRepository messageRepository;
+    private final ArchivedMessageRepository archivedMessageRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int hotDays;
+    private final long intervalMs;
+    private final int batchSize;
+    private final int maxDutyPercent;
+    private final Counter archived;
+    private ScheduledExecutorService executor;
+
+    public MessageArchiver(
+            MessageRepository messageRepository,
+            ArchivedMessageRepository archivedMessageRepository,
+            TransactionTemplate transactionTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${chat.persistence.archive.hot-days:90}") int hotDays,
+            @Value("${chat.persistence.archive.interval-ms:600000}") long intervalMs,
+            @Value("${chat.persistence.archive.batch-size:500}") int batchSize,
+            @Value("${chat.persistence.archive.max-duty-percent:10}") int maxDutyPercent
+    ) {
+        if (maxDutyPercent < 1 || maxDutyPercent > 100) {
+            throw new IllegalArgumentException("chat.persistence.archive.max-duty-percent must be between 1 and 100");
+        }
+        this.messageRepository = messageRepository;
+        this.archivedMessageRepository = archivedMessageRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.hotDays = hotDays;
+        this.intervalMs = intervalMs;
+        this.batchSize = batchSize;
+        this.maxDutyPercent = maxDutyPercent;
+        this.archived = meterRegistry.counter("chat.persistence.archived");
+    }
+
+    @PostConstruct
+    public void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "message-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::archive, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /** One pass over everything older than the cutoff. Returns the number of messages moved. */
+    public long archive() {
+        Instant cutoff = Instant.now().minus(hotDays, ChronoUnit.DAYS);
+        // before the id epoch only auto-increment ids are old enough, so the timestamp alone bounds them
+        long belowId = cutoff.isAfter(TimeOrderedIdGenerator.EPOCH) ? TimeOrderedIdGenerator.firstIdAt(cutoff) : Long.MAX_VALUE;
+        long after = Long.MIN_VALUE;
+        long moved = 0;
+        try {
+            while (true) {
+                long started = System.nanoTime();
+                List<Long> ids = messageRepository.findArchivableIds(after, belowId, cutoff, PageRequest.of(0, batchSize));
+                if (ids.isEmpty()) {
+                    break;
+                }
+                transactionTemplate.executeWithoutResult(status -> {
+                    archivedMessageRepository.copyFromMessages(ids);
+                    messageRepository.deleteByIdIn(ids);
+                });
+                moved += ids.size();
+                archived.increment(ids.size());
+                after = ids.get(ids.size() - 1);
+                if (ids.size() < batchSize) {
+                    break;
+                }
+                long busyNanos = System.nanoTime() - started;
+                TimeUnit.NANOSECONDS.sleep(busyNanos * (100 - maxDutyPercent) / maxDutyPercent);
+            }
+        } catch (DataAccessException | TransactionException e) {
+            log.error("Archiving stopped after {} messages, the next run continues", moved, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (moved > 0) {
+            log.info("Archived {} messages older than {}", moved, cutoff);
+        }
+        return moved;
+    }
+}
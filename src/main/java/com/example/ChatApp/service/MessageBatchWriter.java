@@ -0,0 +1,190 @@
+package com.example.ChatApp.service;
+
+import com.example.ChatApp.dto.MessageDto;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Write-behind persistence for chat messages. Callers hand over fully built messages
+ * (server-assigned id and timestamp) and return immediately; a single flusher thread
+ * drains the bounded queue into JDBC batch inserts of up to {@code batch-size} rows,
+ * waiting at most {@code linger-ms} for a batch to fill, through {@link MessageInserter}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "chat.persistence.write-behind.enabled", havingValue = "true")
+public class MessageBatchWriter {
+
+    private static final long RETRY_DELAY_MS = 1000;
+    private static final long SHUTDOWN_TIMEOUT_MS = 30_000;
+
+    private final MessageInserter messageInserter;
+    private final BlockingQueue<MessageDto> queue;
+    // queued or in a batch that has not committed yet; readers merge these with what the database returns
+    private final Set<MessageDto> unflushed = ConcurrentHashMap.newKeySet();
+    private final int batchSize;
+    private final long lingerMs;
+    private final long offerTimeoutMs;
+
+    // enqueue() holds the read lock, shutdown() the write lock, so nothing is accepted after the final drain
+    private final ReadWriteLock acceptLock = new ReentrantReadWriteLock();
+    private volatile boolean running = true;
+    private Thread flusher;
+
+    public MessageBatchWriter(
+            MessageInserter messageInserter,
+            @Value("${chat.persistence.write-behind.batch-size:500}") int batchSize,
+            @Value("${chat.persistence.write-behind.linger-ms:20}") long lingerMs,
+            @Value("${chat.persistence.write-behind.queue-capacity:10000}") int queueCapacity,
+            @Value("${chat.persistence.write-behind.offer-timeout-ms:500}") long offerTimeoutMs
+    ) {
+        this.messageInserter = messageInserter;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.lingerMs = lingerMs;
+        this.offerTimeoutMs = offerTimeoutMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        flusher = new Thread(this::runFlusher, "message-batch-writer");
+        flusher.start();
+    }
+
+    /**
+     * Queues a message for persistence. Blocks for up to {@code offer-timeout-ms} when the
+     * queue is full and then fails, so a slow database pushes back on senders.
+     */
+    public void enqueue(MessageDto message) {
+        acceptLock.readLock().lock();
+        try {
+            if (!running) {
+                throw new RuntimeException("Message writer is shutting down");
+            }
+            unflushed.add(message);
+            if (!queue.offer(message, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                unflushed.remove(message);
+                throw new RuntimeException("Message queue is full, try again");
+            }
+        } catch (InterruptedException e) {
+            unflushed.remove(message);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while queueing message", e);
+        } finally {
+            acceptLock.readLock().unlock();
+        }
+    }
+
+    public int pendingCount() {
+        return queue.size();
+    }
+
+    /**
+     * Messages for the room that were accepted but are not committed yet. Read this before
+     * querying the database and every accepted message is in one result or the other.
+     */
+    public List<MessageDto> pendingInRoom(Long roomId) {
+        List<MessageDto> pending = new ArrayList<>();
+        for (MessageDto message : unflushed) {
+            if (Objects.equals(roomId, message.getRoomId())) {
+                pending.add(message);
+            }
+        }
+        return pending;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        acceptLock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            acceptLock.writeLock().unlock();
+        }
+
+        flusher.join(SHUTDOWN_TIMEOUT_MS);
+        if (flusher.isAlive()) {
+            log.error("Message writer did not drain within {} ms, {} messages not persisted",
+                    SHUTDOWN_TIMEOUT_MS, queue.size());
+        }
+    }
+
+    private void runFlusher() {
+        List<MessageDto> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                collectBatch(batch);
+            } catch (InterruptedException e) {
+                // nothing interrupts this thread on purpose; flush what we have and keep draining
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.forEach(unflushed::remove);
+                batch.clear();
+            }
+        }
+    }
+
+    private void collectBatch(List<MessageDto> batch) throws InterruptedException {
+        MessageDto first = queue.poll(lingerMs, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMs);
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0 || !running) {
+                return;
+            }
+            MessageDto next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void flush(List<MessageDto> batch) {
+        while (true) {
+            try {
+                messageInserter.insertBatch(batch);
+                return;
+            } catch (DataIntegrityViolationException e) {
+                log.warn("Batch of {} messages rejected, inserting one by one", batch.size(), e);
+                messageInserter.insertIndividually(batch);
+                return;
+            } catch (DataAccessException e) {
+                log.error("Batch insert of {} messages failed, retrying in {} ms", batch.size(), RETRY_DELAY_MS, e);
+                sleepBeforeRetry();
+            }
+        }
+    }
+
+    private void sleepBeforeRetry() {
+        try {
+            Thread.sleep(RETRY_DELAY_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
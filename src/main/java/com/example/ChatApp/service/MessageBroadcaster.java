@@ -0,0 +1,131 @@
+package com.example.ChatApp.service;
+
+import com.example.ChatApp.config.SessionChannelSimpleBroker;
+import com.example.ChatApp.config.SharedPayload;
+import com.example.ChatApp.config.WebSocketProperties;
+import com.example.ChatApp.dto.MessageDto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.AbstractBrokerMessageHandler;
+import org.springframework.messaging.simp.broker.OrderedMessageChannelDecorator;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.List;
+
+/**
+ * Publishes chat messages to their STOMP destinations. Each message is serialized
+ * once, however many destinations and subscribers it reaches.
+ */
+@Component
+public class MessageBroadcaster {
+
+    public static final String RESUME_TRUNCATED_HEADER = "resume-truncated";
+
+    private static final String PRIVATE_QUEUE = "/queue/messages";
+    private static final Log ORDER_LOGGER = LogFactory.getLog(MessageBroadcaster.class);
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final MessageChannel clientOutboundChannel;
+    // empty in relay mode
+    private final ObjectProvider<AbstractBrokerMessageHandler> simpleBroker;
+    private final ObjectMapper objectMapper;
+    private final WebSocketProperties webSocketProperties;
+
+    public MessageBroadcaster(
+            SimpMessagingTemplate messagingTemplate,
+            @Qualifier("clientOutboundChannel") MessageChannel clientOutboundChannel,
+            @Qualifier("simpleBrokerMessageHandler") ObjectProvider<AbstractBrokerMessageHandler> simpleBroker,
+            ObjectMapper objectMapper,
+            WebSocketProperties webSocketProperties
+    ) {
+        this.messagingTemplate = messagingTemplate;
+        this.clientOutboundChannel = clientOutboundChannel;
+        this.simpleBroker = simpleBroker;
+        this.objectMapper = objectMapper;
+        this.webSocketProperties = webSocketProperties;
+    }
+
+    /** Public room: everyone subscribed to /topic/room.{id}. */
+    public void toRoom(MessageDto dto) {
+        messagingTemplate.send("/topic/room." + dto.getRoomId(), encode(dto));
+    }
+
+    /** Private: every session of the sender and the receiver (/user/queue/messages). */
+    public void toParticipants(MessageDto dto) {
+        Message<byte[]> message = encode(dto);
+        messagingTemplate.send(userQueue(dto.getSenderId()), message);
+        if (!dto.getReceiverId().equals(dto.getSenderId())) {
+            messagingTemplate.send(userQueue(dto.getReceiverId()), message);
+        }
+    }
+
+    /**
+     * Replays messages to one subscription of one session, bypassing the broker so other
+     * subscribers are not sent them again. When {@code truncated}, the last message tells the
+     * client that older missed messages were left out.
+     * <p>
+     * With the simple broker the frames join the session's own ordered channel, so nothing
+     * the broker sends afterwards overtakes them; a message published while the missed ones
+     * were being read can still arrive first, and the pages place messages by id. The relay
+     * keeps its session channels to itself, so there the replay is only ordered within itself.
+     */
+    public void replay(String sessionId, String subscriptionId, String destination,
+                       List<MessageDto> messages, boolean truncated) {
+        MessageChannel channel = sessionChannel(sessionId);
+        for (int i = 0; i < messages.size(); i++) {
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            accessor.setSessionId(sessionId);
+            accessor.setSubscriptionId(subscriptionId);
+            accessor.setDestination(destination);
+            accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+            if (truncated && i == messages.size() - 1) {
+                accessor.setNativeHeader(RESUME_TRUNCATED_HEADER, "true");
+            }
+            accessor.setLeaveMutable(true); // the ordering decorator adds its release callback
+            channel.send(MessageBuilder.createMessage(serialize(messages.get(i)), accessor.getMessageHeaders()));
+        }
+    }
+
+    private MessageChannel sessionChannel(String sessionId) {
+        if (simpleBroker.getIfAvailable() instanceof SessionChannelSimpleBroker broker) {
+            return broker.clientOutboundChannel(sessionId);
+        }
+        return OrderedMessageChannelDecorator.supportsOrderedMessages(clientOutboundChannel)
+                ? new OrderedMessageChannelDecorator(clientOutboundChannel, ORDER_LOGGER)
+                : clientOutboundChannel;
+    }
+
+    private String userQueue(Long userId) {
+        // same destination convertAndSendToUser builds; user names are numeric ids
+        return messagingTemplate.getUserDestinationPrefix() + userId + PRIVATE_QUEUE;
+    }
+
+    private Message<byte[]> encode(MessageDto dto) {
+        byte[] body = serialize(dto);
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        if (body.length >= webSocketProperties.getTransport().getSharedPayloadMinBytes()) {
+            accessor.setHeader(SharedPayload.HEADER, new SharedPayload(body));
+        }
+        return MessageBuilder.createMessage(body, accessor.getMessageHeaders());
+    }
+
+    private byte[] serialize(MessageDto dto) {
+        try {
+            return objectMapper.writeValueAsBytes(dto);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Could not serialize message " + dto.getId(), e);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.ChatApp.service;
+
+import com.example.ChatApp.dto.MessageDto;
+import com.example.ChatApp.entity.Message;
+import com.example.ChatApp.repository.ArchivedMessageRepository;
+import com.example.ChatApp.repository.MessageRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Full-history exports as newline-delimited JSON, one {@link MessageDto} per line, oldest
+ * first. Rows go from a database cursor straight to the output stream, so memory stays
+ * constant whatever the size of the room. Archived messages come first, then the ones still
+ * in {@code messages}; messages still in the write-behind queue are not included.
+ */
+@Slf4j
+@Service
+public class MessageExportService {
+
+    private final MessageRepository messageRepository;
+    private final ArchivedMessageRepository archivedMessageRepository;
+    private final IdentityCache identityCache;
+    private final ConversationKeyBackfill conversationKeyBackfill;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter lineWriter;
+
+    public MessageExportService(
+            MessageRepository messageRepository,
+            ArchivedMessageRepository archivedMessageRepository,
+            IdentityCache identityCache,
+            ConversationKeyBackfill conversationKeyBackfill,
+            ObjectMapper objectMapper
+    ) {
+        this.messageRepository = messageRepository;
+        this.archivedMessageRepository = archivedMessageRepository;
+        this.identityCache = identityCache;
+        this.conversationKeyBackfill = conversationKeyBackfill;
+        this.objectMapper = objectMapper;
+        // the servlet container flushes when its buffer fills, not after every line
+        this.lineWriter = objectMapper.writerFor(MessageDto.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /** Called before the response starts, so an unknown room is an ordinary error response. */
+    public void checkRoom(Long roomId) {
+        if (!identityCache.roomExists(roomId)) {
+            throw new RuntimeException("Room not found");
+        }
+    }
+
+    public void checkUser(Long userId) {
+        if (identityCache.findUsername(userId).isEmpty()) {
+            throw new RuntimeException("User not found");
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public void writeRoom(Long roomId, OutputStream out) throws IOException {
+        long count;
+        try (Stream<MessageDto> archived = archivedMessageRepository.streamRoom(roomId)) {
+            count = write(archived, out);
+        }
+        try (Stream<MessageDto> messages = messageRepository.streamRoom(roomId)) {
+            count += write(messages, out);
+        }
+        log.info("Exported {} messages of room {}", count, roomId);
+    }
+
+    @Transactional(readOnly = true)
+    public void writeConversation(Long userId, Long otherUserId, OutputStream out) throws IOException {
+        String conversationKey = Message.conversationKey(userId, otherUserId);
+        long count;
+        try (Stream<MessageDto> archived = archivedMessageRepository.streamConversation(conversationKey)) {
+            count = write(archived, out);
+        }
+        try (Stream<MessageDto> messages = conversationKeyBackfill.isComplete()
+                ? messageRepository.streamConversation(conversationKey)
+                : messageRepository.streamConversationByParticipants(userId, otherUserId)) {
+            count += write(messages, out);
+        }
+        log.info("Exported {} private messages between users {} and {}", count, userId, otherUserId);
+    }
+
+    private long write(Stream<MessageDto> messages, OutputStream out) throws IOException {
+        long count = 0;
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET); // a gzip stream still needs finishing
+            generator.setRootValueSeparator(null); // lines are separated by the newline alone
+            Iterator<MessageDto> iterator = messages.iterator();
+            while (iterator.hasNext()) {
+                lineWriter.writeValue(generator, iterator.next());
+                generator.writeRaw('\n');
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.ChatApp.service;
+
+import com.example.ChatApp.dto.MessageDto;
+import com.example.ChatApp.entity.Message;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * JDBC inserts of fully built messages (server-assigned id and timestamp), for the
+ * write-behind queue and the log replicator. Each insert updates the inbox summaries in
+ * the transaction that inserts the rows.
+ */
+@Slf4j
+@Component
+public class MessageInserter {
+
+    private static final String INSERT_SQL =
+            "insert into messages (id, sender_id, room_id, receiver_id, content, timestamp, conversation_key) values (?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final InboxService inboxService;
+    private boolean offsetDateTimeTimestamps;
+
+    public MessageInserter(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, InboxService inboxService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.inboxService = inboxService;
+    }
+
+    @PostConstruct
+    void detectTimestampBinding() {
+        // bind timestamps the way Hibernate does for Instant columns on this database
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+        offsetDateTimeTimestamps = "H2".equalsIgnoreCase(product);
+    }
+
+    /** One JDBC batch in one transaction; a constraint violation rolls back the whole batch. */
+    public void insertBatch(List<MessageDto> batch) {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), this::bind);
+            inboxService.record(batch);
+        });
+    }
+
+    /**
+     * Each message in its own transaction, after a batch was rejected. Messages that are
+     * already stored are skipped, other constraint violations are logged and dropped.
+     */
+    public void insertIndividually(List<MessageDto> batch) {
+        for (MessageDto message : batch) {
+            try {
+                insertOne(message);
+            } catch (DataIntegrityViolationException e) {
+                log.error("Dropping message {} that violates a constraint", message.getId(), e);
+            }
+        }
+    }
+
+    /**
+     * Each message in its own transaction, skipping those already stored, up to the first one
+     * the database rejects. Returns how many messages from the start of the batch are stored.
+     */
+    public int insertUntilRejected(List<MessageDto> batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            try {
+                insertOne(batch.get(i));
+            } catch (DataIntegrityViolationException e) {
+                log.error("Message {} violates a constraint", batch.get(i).getId(), e);
+                return i;
+            }
+        }
+        return batch.size();
+    }
+
+    private void insertOne(MessageDto message) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.update(INSERT_SQL, ps -> bind(ps, message));
+                inboxService.record(List.of(message));
+            });
+        } catch (DuplicateKeyException e) {
+            log.debug("Message {} is already stored", message.getId());
+        }
+    }
+
+    private void bind(PreparedStatement ps, MessageDto message) throws SQLException {
+        ps.setLong(1, message.getId());
+        ps.setLong(2, message.getSenderId());
+        setNullableLong(ps, 3, message.getRoomId());
+        setNullableLong(ps, 4, message.getReceiverId());
+        ps.setString(5, message.getContent());
+        if (offsetDateTimeTimestamps) {
+            ps.setObject(6, OffsetDateTime.ofInstant(message.getTimestamp(), ZoneOffset.UTC));
+        } else {
+            ps.setTimestamp(6, Timestamp.from(message.getTimestamp()), Calendar.getInstance(TimeZone.getTimeZone("UTC")));
+        }
+        ps.setString(7, message.getReceiverId() != null
+                ? Message.conversationKey(message.getSenderId(), message.getReceiverId())
+                : null);
+    }
+
+    private void setNullableLong(PreparedStatement ps, int index, Long value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.BIGINT);
+        } else {
+            ps.setLong(index, value);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.ChatApp.service;
+
+import com.example.ChatApp.dto.MessageDto;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * Message records of the {@link LogMessageStore} log: flags, id, timestamp in epoch
+ * microseconds, sender, room and receiver at fixed offsets, then the sender's username and
+ * the content as length-prefixed UTF-8. Indexing reads only the fixed part.
+ */
+final class MessageLogCodec {
+
+    private static final byte HAS_ROOM = 1;
+    private static final byte HAS_RECEIVER = 2;
+    private static final int ID = 1;
+    private static final int TIMESTAMP = 9;
+    private static final int SENDER = 17;
+    private static final int ROOM = 25;
+    private static final int RECEIVER = 33;
+    private static final int USERNAME = 41;
+
+    private MessageLogCodec() {
+    }
+
+    static byte[] encode(MessageDto message) {
+        byte[] username = message.getSenderUsername().getBytes(StandardCharsets.UTF_8);
+        byte[] content = message.getContent().getBytes(StandardCharsets.UTF_8);
+        Instant timestamp = message.getTimestamp();
+        ByteBuffer buffer = ByteBuffer.allocate(USERNAME + 4 + username.length + 4 + content.length);
+        buffer.put((byte) ((message.getRoomId() != null ? HAS_ROOM : 0) | (message.getReceiverId() != null ? HAS_RECEIVER : 0)))
+                .putLong(message.getId())
+                .putLong(timestamp.getEpochSecond() * 1_000_000 + timestamp.getNano() / 1000)
+                .putLong(message.getSenderId())
+                .putLong(message.getRoomId() != null ? message.getRoomId() : 0)
+                .putLong(message.getReceiverId() != null ? message.getReceiverId() : 0)
+                .putInt(username.length).put(username)
+                .putInt(content.length).put(content);
+        return buffer.array();
+    }
+
+    static MessageDto decode(ByteBuffer record) {
+        int usernameLength = record.getInt(USERNAME);
+        int contentAt = USERNAME + 4 + usernameLength;
+        return new MessageDto(
+                id(record),
+                senderId(record),
+                string(record, USERNAME + 4, usernameLength),
+                receiverId(record),
+                roomId(record),
+                string(record, contentAt + 4, record.getInt(contentAt)),
+                timestamp(record)
+        );
+    }
+
+    static long id(ByteBuffer record) {
+        return record.getLong(ID);
+    }
+
+    static Instant timestamp(ByteBuffer record) {
+        long micros = record.getLong(TIMESTAMP);
+        return Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000), Math.floorMod(micros, 1_000_000) * 1000L);
+    }
+
+    static long senderId(ByteBuffer record) {
+        return record.getLong(SENDER);
+    }
+
+    static Long roomId(ByteBuffer record) {
+        return (record.get(0) & HAS_ROOM) != 0 ? record.getLong(ROOM) : null;
+    }
+
+    static Long receiverId(ByteBuffer record) {
+        return (record.get(0) & HAS_RECEIVER) != 0 ? record.getLong(RECEIVER) : null;
+    }
+
+    private static String string(ByteBuffer record, int offset, int length) {
+        byte[] bytes = new byte[length];
+        record.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,245 @@
+package com.example.ChatApp.service;
+
+import com.example.ChatApp.dto.MessageDto;
+import com.example.ChatApp.util.MessageLog;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Copies the {@link LogMessageStore} log into the {@code messages} table, so exports,
+ * search, the inbox and reporting see logged messages a moment after they were sent.
+ * Reads up to {@code batch-size} durable records at a time and inserts them through
+ * {@link MessageInserter}, polling every {@code interval-ms} once caught up. The log
+ * position it got to is kept in {@value #CHECKPOINT_FILE} next to the segments; it is
+ * written after the batch commits, so a crash in between replays the batch and its rows
+ * are skipped as duplicates.
+ * <p>
+ * A message the database rejects (other than as a duplicate) stops replication in front of
+ * it: the position stays on its record, so neither it nor the segments from there on are
+ * deleted, {@code chat.persistence.log.replication.stalled} turns 1, and the insert is tried
+ * again every {@value #STALLED_RETRY_DELAY_MS} ms until the cause is fixed.
+ * <p>
+ * With {@code retention.enabled}, once the position is past a whole segment the store reads
+ * that segment's messages from the database instead, and {@code retention.grace-ms} later,
+ * when reads that started before have finished, the segment file and its index entries
+ * are deleted.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "chat.persistence.store", havingValue = "log")
+public class MessageLogReplicator {
+
+    static final String CHECKPOINT_FILE = "replicated.position";
+    private static final long RETRY_DELAY_MS = 1000;
+    private static final long STALLED_RETRY_DELAY_MS = 60_000;
+    private static final long SHUTDOWN_TIMEOUT_MS = 30_000;
+
+    private final LogMessageStore logMessageStore;
+    private final MessageLog messageLog;
+    private final MessageInserter messageInserter;
+    private final Path checkpoint;
+    private final int batchSize;
+    private final long intervalMs;
+    private final boolean retentionEnabled;
+    private final long graceMs;
+    private final Counter replicated;
+    private final Counter segmentsDeleted;
+    // {position, time} of each stopReadingBefore not yet followed by its deletion; worker thread only
+    private final Deque<long[]> retired = new ArrayDeque<>();
+
+    private volatile long position;
+    private volatile boolean stalled;
+    private volatile boolean running = true;
+    private Thread worker;
+
+    public MessageLogReplicator(
+            LogMessageStore logMessageStore,
+            MessageInserter messageInserter,
+            MeterRegistry meterRegistry,
+            @Value("${chat.persistence.log.dir:data/message-log}") String dir,
+            @Value("${chat.persistence.log.replication.batch-size:500}") int batchSize,
+            @Value("${chat.persistence.log.replication.interval-ms:50}") long intervalMs,
+            @Value("${chat.persistence.log.retention.enabled:true}") boolean retentionEnabled,
+            @Value("${chat.persistence.log.retention.grace-ms:60000}") long graceMs
+    ) {
+        this.logMessageStore = logMessageStore;
+        this.messageLog = logMessageStore.messageLog();
+        this.messageInserter = messageInserter;
+        this.checkpoint = Path.of(dir).resolve(CHECKPOINT_FILE);
+        this.batchSize = batchSize;
+        this.intervalMs = intervalMs;
+        this.retentionEnabled = retentionEnabled;
+        this.graceMs = graceMs;
+        this.replicated = meterRegistry.counter("chat.persistence.log.replicated");
+        this.segmentsDeleted = meterRegistry.counter("chat.persistence.log.segments.deleted");
+        Gauge.builder("chat.persistence.log.replication.lag", this, r -> r.messageLog.durablePosition() - r.position)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("chat.persistence.log.replication.stalled", this, r -> r.stalled ? 1 : 0)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        position = readCheckpoint();
+        worker = new Thread(this::run, "message-log-replicator");
+        worker.start();
+    }
+
+    /** Log position up to which every record is in the database. */
+    public long replicatedPosition() {
+        return position;
+    }
+
+    /** Stops once the log is replicated up to what was durable, or after the shutdown timeout. */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        worker.join(SHUTDOWN_TIMEOUT_MS);
+        if (worker.isAlive()) {
+            log.error("Message log replication did not catch up within {} ms, the rest is replicated on the next start",
+                    SHUTDOWN_TIMEOUT_MS);
+            worker.interrupt();
+        }
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            boolean draining = !running;
+            List<MessageDto> batch = new ArrayList<>(batchSize);
+            List<Long> positions = new ArrayList<>(batchSize);
+            long next = messageLog.scan(position, batchSize, (at, record) -> {
+                positions.add(at);
+                batch.add(MessageLogCodec.decode(record));
+            });
+            if (retentionEnabled && !draining) {
+                retain();
+            }
+            if (batch.isEmpty()) {
+                if (draining) {
+                    return;
+                }
+                sleep(intervalMs);
+                continue;
+            }
+            int stored = replicate(batch);
+            if (stored < 0) {
+                sleep(RETRY_DELAY_MS);
+                continue;
+            }
+            if (stored > 0) {
+                advance(stored == batch.size() ? next : positions.get(stored), stored);
+            }
+            if (stored == batch.size()) {
+                stalled = false;
+                continue;
+            }
+            if (!stalled) {
+                stalled = true;
+                log.error("Message log replication stopped at message {} (position {}), which the database rejects;"
+                        + " the log from there is kept and the insert retried every {} ms",
+                        batch.get(stored).getId(), positions.get(stored), STALLED_RETRY_DELAY_MS);
+            }
+            if (draining) {
+                return;
+            }
+            sleep(STALLED_RETRY_DELAY_MS);
+        }
+    }
+
+    private void advance(long to, int messages) {
+        position = to;
+        writeCheckpoint(to);
+        replicated.increment(messages);
+    }
+
+    private void retain() {
+        long now = System.currentTimeMillis();
+        long keepFrom = messageLog.segmentStart(position);
+        long lastRetired = retired.isEmpty() ? messageLog.firstPosition() : retired.peekLast()[0];
+        if (keepFrom > lastRetired && logMessageStore.stopReadingBefore(keepFrom)) {
+            retired.addLast(new long[]{keepFrom, now});
+        }
+        long deleteBefore = -1;
+        while (!retired.isEmpty() && now - retired.peekFirst()[1] >= graceMs) {
+            deleteBefore = retired.pollFirst()[0];
+        }
+        if (deleteBefore >= 0) {
+            int deleted = logMessageStore.deleteBefore(deleteBefore);
+            segmentsDeleted.increment(deleted);
+            log.info("Deleted {} replicated message log segments before position {}", deleted, deleteBefore);
+        }
+    }
+
+    // how many messages from the start of the batch are in the database, or -1 to retry the batch
+    private int replicate(List<MessageDto> batch) {
+        try {
+            try {
+                messageInserter.insertBatch(batch);
+                return batch.size();
+            } catch (DataIntegrityViolationException e) {
+                // replayed after a restart, or a row the database rejects
+                log.info("Batch of {} logged messages rejected, inserting one by one: {}", batch.size(), e.getMessage());
+                return messageInserter.insertUntilRejected(batch);
+            }
+        } catch (DataAccessException | TransactionException e) {
+            log.error("Replicating {} logged messages failed, retrying in {} ms", batch.size(), RETRY_DELAY_MS, e);
+            return -1;
+        }
+    }
+
+    private long readCheckpoint() throws IOException {
+        if (!Files.exists(checkpoint)) {
+            return messageLog.firstPosition();
+        }
+        long saved = Long.parseLong(Files.readString(checkpoint).trim());
+        if (saved < messageLog.firstPosition()) {
+            // older segments were deleted after a checkpoint write failed
+            return messageLog.firstPosition();
+        }
+        if (saved > messageLog.durablePosition()) {
+            log.warn("Replication checkpoint {} is past the end of the message log at {}, replicating from the end",
+                    saved, messageLog.durablePosition());
+            return messageLog.durablePosition();
+        }
+        return saved;
+    }
+
+    private void writeCheckpoint(long replicatedTo) {
+        Path next = checkpoint.resolveSibling(CHECKPOINT_FILE + ".tmp");
+        try {
+            Files.writeString(next, Long.toString(replicatedTo));
+            Files.move(next, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // a stale checkpoint only replays batches that are then skipped
+            log.warn("Could not save the replication checkpoint: {}", e.getMessage());
+        }
+    }
+
+    private void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
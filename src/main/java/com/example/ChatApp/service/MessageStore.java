@@ -0,0 +1,26 @@
+package com.example.ChatApp.service;
+
+import com.example.ChatApp.dto.MessageDto;
+
+import java.util.List;
+
+/**
+ * Where {@link ChatService} keeps messages. {@link JpaMessageStore} writes to the database
+ * (directly or through the write-behind queue); with {@code chat.persistence.store=log}
+ * {@link LogMessageStore} acknowledges from a local append-only log and replicates to the
+ * database in the background. Callers validate ids and clamp page sizes.
+ */
+public interface MessageStore {
+
+    /** Stores a message and returns it with its server-assigned id and timestamp. */
+    MessageDto append(Long senderId, String senderUsername, Long roomId, Long receiverId, String content);
+
+    /** Same contract as {@link ChatService#getMessagesForRoomDto}, oldest first. */
+    List<MessageDto> roomPage(Long roomId, Long before, Long after, int limit);
+
+    /** The whole conversation between the two users, oldest first. */
+    List<MessageDto> conversation(Long userA, Long userB);
+
+    /** Private messages to or from the user after message {@code after}, oldest first. */
+    List<MessageDto> privateAfter(Long userId, Long after, int limit);
+}
@@ -0,0 +1,96 @@
+package com.example.ChatApp.service;
+
+import com.example.ChatApp.dto.UserPresenceDto;
+import com.example.ChatApp.util.OnlineUserTracker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects presence transitions for {@code coalesce-ms} and publishes them as one diff (a
+ * JSON array of {@link UserPresenceDto}) per window, so a node restart that drops and
+ * reconnects thousands of sessions costs a few broadcasts instead of one per session.
+ * A user who changed state an even number of times within the window flapped and is left
+ * out; otherwise their state as the tracker has it at flush time is sent, which stays
+ * right even when connect and disconnect events of one user were recorded out of order.
+ */
+@Component
+public class PresenceAggregator {
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final OnlineUserTracker onlineUserTracker;
+    private final int maxBatch;
+    private final Map<Long, Change> pending = new ConcurrentHashMap<>();
+
+    private final Counter transitionsReceived;
+    private final Counter flapsCancelled;
+    private final Counter diffsEmitted;
+    private final Counter changesEmitted;
+
+    public PresenceAggregator(
+            SimpMessagingTemplate messagingTemplate,
+            OnlineUserTracker onlineUserTracker,
+            MeterRegistry meterRegistry,
+            @Value("${chat.presence.max-batch:500}") int maxBatch
+    ) {
+        this.messagingTemplate = messagingTemplate;
+        this.onlineUserTracker = onlineUserTracker;
+        this.maxBatch = maxBatch;
+        this.transitionsReceived = meterRegistry.counter("chat.presence.transitions.received");
+        this.flapsCancelled = meterRegistry.counter("chat.presence.flaps.cancelled");
+        this.diffsEmitted = meterRegistry.counter("chat.presence.diffs.emitted");
+        this.changesEmitted = meterRegistry.counter("chat.presence.changes.emitted");
+    }
+
+    /** Called once per transition the tracker reported for the user. */
+    public void record(Long userId, String username) {
+        transitionsReceived.increment();
+        pending.merge(userId, new Change(username, 1),
+                (previous, next) -> new Change(username, previous.transitions() + 1));
+    }
+
+    @Scheduled(fixedDelayString = "${chat.presence.coalesce-ms:250}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<UserPresenceDto> diff = new ArrayList<>();
+        for (Long userId : pending.keySet()) {
+            // a transition recorded after this remove starts the next window
+            Change change = pending.remove(userId);
+            if (change == null) {
+                continue;
+            }
+            if (change.transitions() % 2 == 0) {
+                flapsCancelled.increment();
+                continue;
+            }
+            boolean online = onlineUserTracker.isOnline(userId);
+            diff.add(new UserPresenceDto(userId, change.username(), online));
+            if (diff.size() == maxBatch) {
+                publish(diff);
+                diff = new ArrayList<>();
+            }
+        }
+        if (!diff.isEmpty()) {
+            publish(diff);
+        }
+    }
+
+    private void publish(List<UserPresenceDto> diff) {
+        messagingTemplate.convertAndSend(PresenceService.PRESENCE_TOPIC, diff);
+        diffsEmitted.increment();
+        changesEmitted.increment(diff.size());
+    }
+
+    private record Change(String username, int transitions) {
+    }
+}
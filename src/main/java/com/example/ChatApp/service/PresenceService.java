@@ -0,0 +1,74 @@
+package com.example.ChatApp.service;
+
+import com.example.ChatApp.dto.PresencePageDto;
+import com.example.ChatApp.dto.UserPresenceDto;
+import com.example.ChatApp.repository.UserRepository;
+import com.example.ChatApp.util.LongSetSnapshot;
+import com.example.ChatApp.util.OnlineUserTracker;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Online/offline state for clients. Transitions of {@link OnlineUserTracker} are published
+ * on {@value #PRESENCE_TOPIC} as arrays of {@link UserPresenceDto}, coalesced by
+ * {@link PresenceAggregator}; clients load the online set once with {@link #onlinePage}
+ * and then follow the diffs. In cluster mode the tracker also reports users that changed
+ * on other nodes.
+ */
+@Service
+@RequiredArgsConstructor
+public class PresenceService {
+
+    public static final String PRESENCE_TOPIC = "/topic/presence";
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 500;
+
+    private final OnlineUserTracker onlineUserTracker;
+    private final UserRepository userRepository;
+    private final PresenceAggregator presenceAggregator;
+    private final IdentityCache identityCache;
+
+    @PostConstruct
+    void followRemoteTransitions() {
+        onlineUserTracker.onRemoteTransition(userId ->
+                presenceAggregator.record(userId, identityCache.findUsername(userId).orElse(null)));
+    }
+
+    public void userConnected(Long userId, String username) {
+        if (onlineUserTracker.userConnected(userId)) {
+            presenceAggregator.record(userId, username);
+        }
+    }
+
+    public void userDisconnected(Long userId, String username) {
+        if (onlineUserTracker.userDisconnected(userId)) {
+            presenceAggregator.record(userId, username);
+        }
+    }
+
+    /** Online users other than {@code viewerId} with an id above {@code after}, ordered by id. */
+    public PresencePageDto onlinePage(Long viewerId, Long after, int limit) {
+        int pageSize = limit <= 0 ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+        LongSetSnapshot online = onlineUserTracker.getOnlineUsers();
+
+        // the snapshot is ordered by id, so a page starts at the cursor instead of sorting everyone
+        List<Long> ids = new ArrayList<>(pageSize + 1); // one extra tells whether another page follows
+        for (int i = after != null ? online.indexAfter(after) : 0; i < online.size() && ids.size() <= pageSize; i++) {
+            long id = online.get(i);
+            if (viewerId == null || id != viewerId) {
+                ids.add(id);
+            }
+        }
+        boolean more = ids.size() > pageSize;
+        if (more) {
+            ids = ids.subList(0, pageSize);
+        }
+
+        List<UserPresenceDto> users = ids.isEmpty() ? List.of() : userRepository.findOnlinePresence(ids);
+        return new PresencePageDto(users, more ? ids.get(ids.size() - 1) : null);
+    }
+}
@@ -0,0 +1,380 @@
+package com.example.ChatApp.service;
+
+import com.example.ChatApp.config.WebSocketProperties;
+import com.example.ChatApp.dto.MessageDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the newest {@code messages-per-room} messages of recently active rooms in memory,
+ * so join-time history and reconnect catch-up are answered without a database query.
+ * <p>
+ * Rooms are spread over independently locked shards, each an LRU map. A shard over its
+ * room count evicts its coldest room; when the whole cache is over its byte budget the
+ * least recently used room of the whole cache is evicted, found by comparing the last
+ * access of each shard's coldest room, until it fits again. Every room message
+ * is appended on send. A room that is not cached is loaded from the {@link MessageStore}
+ * on the first read (merged with writes still in the write-behind queue), after which
+ * pages inside the cached range never leave memory.
+ * <p>
+ * Disabled in relay broker mode, where other nodes' messages do not pass through here.
+ */
+@Component
+public class RoomTailCache {
+
+    // object headers, id/timestamp fields and the Instant; strings are counted separately
+    private static final int MESSAGE_OVERHEAD_BYTES = 160;
+
+    private final MessageStore messageStore;
+    private final Optional<MessageBatchWriter> messageBatchWriter;
+    private final boolean enabled;
+    private final int messagesPerRoom;
+    private final int maxRoomsPerShard;
+    private final long maxBytes;
+    private final Shard[] shards;
+    private final AtomicLong bytes = new AtomicLong();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter warmUps;
+    private final Counter evictions;
+
+    public RoomTailCache(
+            MessageStore messageStore,
+            Optional<MessageBatchWriter> messageBatchWriter,
+            WebSocketProperties webSocketProperties,
+            MeterRegistry meterRegistry,
+            @Value("${chat.cache.room-tail.enabled:true}") boolean enabled,
+            @Value("${chat.cache.room-tail.messages-per-room:200}") int messagesPerRoom,
+            @Value("${chat.cache.room-tail.max-rooms:10000}") int maxRooms,
+            @Value("${chat.cache.room-tail.max-bytes:67108864}") long maxBytes,
+            @Value("${chat.cache.room-tail.shards:16}") int shardCount
+    ) {
+        this.messageStore = messageStore;
+        this.messageBatchWriter = messageBatchWriter;
+        this.enabled = enabled && webSocketProperties.getBroker().getMode() != WebSocketProperties.BrokerMode.RELAY;
+        this.messagesPerRoom = messagesPerRoom;
+        this.maxRoomsPerShard = Math.max(1, maxRooms / shardCount);
+        this.maxBytes = maxBytes;
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard();
+        }
+
+        this.hits = meterRegistry.counter("chat.cache.room.tail.requests", "result", "hit");
+        this.misses = meterRegistry.counter("chat.cache.room.tail.requests", "result", "miss");
+        this.warmUps = meterRegistry.counter("chat.cache.room.tail.warmups");
+        this.evictions = meterRegistry.counter("chat.cache.room.tail.evictions");
+        Gauge.builder("chat.cache.room.tail.rooms", this, RoomTailCache::roomCount).register(meterRegistry);
+        Gauge.builder("chat.cache.room.tail.bytes", bytes, AtomicLong::get).baseUnit("bytes").register(meterRegistry);
+    }
+
+    /**
+     * Same contract as {@link ChatService#getMessagesForRoomDto}, with {@code limit} already
+     * clamped. Empty when the page reaches past what is cached and needs the database.
+     * The room must be known to exist.
+     */
+    public Optional<List<MessageDto>> page(Long roomId, Long before, Long after, int limit) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        RoomTail tail = shardFor(roomId).getOrCreate(roomId);
+        boolean loaded = warmUp(roomId, tail);
+
+        Optional<List<MessageDto>> page = tail.page(before, after, limit);
+        (page.isPresent() && !loaded ? hits : misses).increment();
+        return page;
+    }
+
+    /** Adds a message that was just sent; private messages are ignored. */
+    public void append(MessageDto message) {
+        if (!enabled || message.getRoomId() == null) {
+            return;
+        }
+        RoomTail tail = shardFor(message.getRoomId()).getOrCreate(message.getRoomId());
+        account(tail, tail.add(message));
+    }
+
+    private boolean warmUp(Long roomId, RoomTail tail) {
+        if (tail.isWarm()) {
+            return false;
+        }
+        synchronized (tail.warmUpLock) {
+            if (tail.isWarm()) {
+                return false;
+            }
+            // pending first: a message that leaves the queue before this read is already committed
+            List<MessageDto> pending = messageBatchWriter
+                    .map(writer -> writer.pendingInRoom(roomId))
+                    .orElse(List.of());
+            List<MessageDto> stored = messageStore.roomPage(roomId, null, null, messagesPerRoom);
+            // the store reads archived history too, so a short read is the whole room
+            boolean complete = stored.size() < messagesPerRoom;
+            account(tail, tail.warm(stored, pending, complete));
+            warmUps.increment();
+            return true;
+        }
+    }
+
+    private void account(RoomTail written, long delta) {
+        if (bytes.addAndGet(delta) > maxBytes) {
+            trim(written);
+        }
+    }
+
+    // the coldest room of the shard whose coldest room was used longest ago, one at a time
+    private void trim(RoomTail written) {
+        while (bytes.get() > maxBytes) {
+            Shard coldest = null;
+            long coldestAccess = Long.MAX_VALUE;
+            for (Shard shard : shards) {
+                long access = shard.eldestAccessExcept(written);
+                if (access != Long.MAX_VALUE && (coldest == null || access - coldestAccess < 0)) {
+                    coldest = shard;
+                    coldestAccess = access;
+                }
+            }
+            if (coldest == null || !coldest.evictEldestExcept(written)) {
+                return;
+            }
+        }
+    }
+
+    private Shard shardFor(Long roomId) {
+        return shards[Math.floorMod(Long.hashCode(roomId * 0x9E3779B97F4A7C15L), shards.length)];
+    }
+
+    private int roomCount() {
+        int count = 0;
+        for (Shard shard : shards) {
+            count += shard.size();
+        }
+        return count;
+    }
+
+    private static long sizeOf(MessageDto message) {
+        long chars = (message.getContent() != null ? message.getContent().length() : 0)
+                + (message.getSenderUsername() != null ? message.getSenderUsername().length() : 0);
+        return MESSAGE_OVERHEAD_BYTES + 2 * chars;
+    }
+
+    private final class Shard {
+
+        private final LinkedHashMap<Long, RoomTail> rooms = new LinkedHashMap<>(16, 0.75f, true);
+
+        synchronized RoomTail getOrCreate(Long roomId) {
+            RoomTail tail = rooms.get(roomId);
+            if (tail == null) {
+                tail = new RoomTail(messagesPerRoom);
+                rooms.put(roomId, tail);
+                if (rooms.size() > maxRoomsPerShard) {
+                    evictEldest();
+                }
+            }
+            tail.lastAccess = System.nanoTime();
+            return tail;
+        }
+
+        // access order makes the first room other than the written one the coldest; MAX_VALUE if none
+        synchronized long eldestAccessExcept(RoomTail written) {
+            for (RoomTail tail : rooms.values()) {
+                if (tail != written) {
+                    return tail.lastAccess;
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+
+        // the room that was just written stays, even when it alone is over the budget
+        synchronized boolean evictEldestExcept(RoomTail written) {
+            Iterator<Map.Entry<Long, RoomTail>> entries = rooms.entrySet().iterator();
+            while (entries.hasNext()) {
+                RoomTail tail = entries.next().getValue();
+                if (tail != written) {
+                    entries.remove();
+                    evicted(tail);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        synchronized int size() {
+            return rooms.size();
+        }
+
+        private void evictEldest() {
+            Iterator<Map.Entry<Long, RoomTail>> eldest = rooms.entrySet().iterator();
+            RoomTail tail = eldest.next().getValue();
+            eldest.remove();
+            evicted(tail);
+        }
+
+        private void evicted(RoomTail tail) {
+            bytes.addAndGet(-tail.evict());
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Ring buffer of one room's newest messages in ascending (timestamp, id) order.
+     * Sends arrive nearly in order, so inserts almost always land at the end.
+     */
+    private static final class RoomTail {
+
+        final Object warmUpLock = new Object();
+        // System.nanoTime() of the last read or write, guarded by the shard
+        long lastAccess;
+
+        private final MessageDto[] ring;
+        private int head;
+        private int size;
+        private long bytes;
+        private boolean warm;
+        private boolean complete; // holds every message the room has
+        private boolean evicted;
+
+        RoomTail(int capacity) {
+            this.ring = new MessageDto[capacity];
+        }
+
+        synchronized boolean isWarm() {
+            return warm;
+        }
+
+        /** Returns the change in retained bytes. */
+        synchronized long add(MessageDto message) {
+            if (evicted) {
+                return 0;
+            }
+            long before = bytes;
+            insert(message);
+            return bytes - before;
+        }
+
+        synchronized long warm(List<MessageDto> stored, List<MessageDto> pending, boolean complete) {
+            if (evicted) {
+                return 0;
+            }
+            long before = bytes;
+            this.complete = complete;
+            for (MessageDto message : stored) {
+                insert(message);
+            }
+            for (MessageDto message : pending) {
+                insert(message);
+            }
+            this.warm = true;
+            return bytes - before;
+        }
+
+        synchronized long evict() {
+            evicted = true;
+            return bytes;
+        }
+
+        synchronized Optional<List<MessageDto>> page(Long before, Long after, int limit) {
+            if (!warm) {
+                return Optional.empty();
+            }
+            if (after != null) {
+                int cursor = indexOf(after);
+                if (cursor < 0) {
+                    return Optional.empty();
+                }
+                return Optional.of(slice(cursor + 1, Math.min(size, cursor + 1 + limit)));
+            }
+
+            int end = size;
+            if (before != null) {
+                end = indexOf(before);
+                if (end < 0) {
+                    return Optional.empty();
+                }
+            }
+            int start = end - limit;
+            if (start < 0) {
+                if (!complete) {
+                    return Optional.empty();
+                }
+                start = 0;
+            }
+            return Optional.of(slice(start, end));
+        }
+
+        private void insert(MessageDto message) {
+            int position = size;
+            while (position > 0) {
+                int order = compare(at(position - 1), message);
+                if (order == 0) {
+                    return; // already here, from the database and from the send path
+                }
+                if (order < 0) {
+                    break;
+                }
+                position--;
+            }
+
+            if (size == ring.length) {
+                if (position == 0) {
+                    complete = false;
+                    return; // older than everything kept
+                }
+                bytes -= sizeOf(ring[head]);
+                ring[head] = null;
+                head = (head + 1) % ring.length;
+                size--;
+                position--;
+                complete = false;
+            }
+
+            for (int i = size; i > position; i--) {
+                ring[slot(i)] = at(i - 1);
+            }
+            ring[slot(position)] = message;
+            size++;
+            bytes += sizeOf(message);
+        }
+
+        private int indexOf(Long id) {
+            for (int i = size - 1; i >= 0; i--) {
+                if (id.equals(at(i).getId())) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private List<MessageDto> slice(int from, int to) {
+            List<MessageDto> messages = new ArrayList<>(Math.max(0, to - from));
+            for (int i = from; i < to; i++) {
+                messages.add(at(i));
+            }
+            return messages;
+        }
+
+        private MessageDto at(int index) {
+            return ring[slot(index)];
+        }
+
+        private int slot(int index) {
+            return (head + index) % ring.length;
+        }
+
+        private static int compare(MessageDto a, MessageDto b) {
+            int order = a.getTimestamp().compareTo(b.getTimestamp());
+            return order != 0 ? order : a.getId().compareTo(b.getId());
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.ChatApp.service;
+
+import com.example.ChatApp.dto.MessageDto;
+import com.example.ChatApp.repository.ArchivedMessageRepository;
+import com.example.ChatApp.repository.MessageRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Started with {@code --rebuild-search-index}, the application rebuilds the search index
+ * from both message tiers and exits. Messages are read in batches of {@code batch-size}
+ * walked in primary key order across {@code messages} and {@code messages_archive}, and each
+ * batch replaces the postings of its id range, so
+ * search keeps working meanwhile and nodes that are serving can keep indexing new messages.
+ * The document frequencies are recounted from the existing postings first, so each batch
+ * can adjust them by exactly what it replaces.
+ */
+@Slf4j
+@Component
+public class SearchIndexRebuild implements ApplicationRunner {
+
+    public static final String OPTION = "rebuild-search-index";
+
+    private final MessageRepository messageRepository;
+    private final ArchivedMessageRepository archivedMessageRepository;
+    private final SearchIndexer searchIndexer;
+    private final ApplicationContext applicationContext;
+    private final int batchSize;
+    private final long pauseMs;
+
+    public SearchIndexRebuild(
+            MessageRepository messageRepository,
+            ArchivedMessageRepository archivedMessageRepository,
+            SearchIndexer searchIndexer,
+            ApplicationContext applicationContext,
+            @Value("${chat.search.rebuild.batch-size:1000}") int batchSize,
+            @Value("${chat.search.rebuild.pause-ms:0}") long pauseMs
+    ) {
+        this.messageRepository = messageRepository;
+        this.archivedMessageRepository = archivedMessageRepository;
+        this.searchIndexer = searchIndexer;
+        this.applicationContext = applicationContext;
+        this.batchSize = batchSize;
+        this.pauseMs = pauseMs;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws InterruptedException {
+        if (!args.containsOption(OPTION)) {
+            return;
+        }
+        rebuild();
+        System.exit(SpringApplication.exit(applicationContext, () -> 0));
+    }
+
+    /** Returns the number of messages indexed. */
+    long rebuild() throws InterruptedException {
+        log.info("Rebuilding the search index");
+        searchIndexer.recount();
+        long after = Long.MIN_VALUE;
+        long count = 0;
+        while (true) {
+            List<MessageDto> batch = nextBatch(after);
+            if (batch.isEmpty()) {
+                break;
+            }
+            searchIndexer.reindex(batch);
+            count += batch.size();
+            after = batch.get(batch.size() - 1).getId();
+            if (batch.size() < batchSize) {
+                break;
+            }
+            if (count % (batchSize * 100L) == 0) {
+                log.info("Indexed {} messages", count);
+            }
+            if (pauseMs > 0) {
+                Thread.sleep(pauseMs);
+            }
+        }
+        log.info("Rebuilt the search index from {} messages", count);
+        return count;
+    }
+
+    // the next ids of both tiers, so a batch's id range holds all of its messages
+    private List<MessageDto> nextBatch(long after) {
+        List<MessageDto> batch = new ArrayList<>(messageRepository.findAllAfter(after, PageRequest.of(0, batchSize)));
+        batch.addAll(archivedMessageRepository.findAllAfter(after, PageRequest.of(0, batchSize)));
+        batch.sort(Comparator.comparing(MessageDto::getId));
+        return batch.size() > batchSize ? batch.subList(0, batchSize) : batch;
+    }
+}
@@ -0,0 +1,245 @@
+package com.example.ChatApp.service;
+
+import com.example.ChatApp.dto.MessageDto;
+import com.example.ChatApp.util.MessageTokenizer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feeds stored messages into the {@code message_terms} index off the send path. Senders
+ * only offer the message to a bounded queue; a single indexer thread writes the postings of
+ * up to {@code batch-size} messages per JDBC batch. When the queue is full the message is
+ * left out of the index and counted in {@code chat.search.dropped}; a rebuild picks it up.
+ * <p>
+ * Postings and the {@code search_term_counts} document frequencies they add to are written
+ * in one transaction, with the counters updated in key order so concurrent writers lock them
+ * alike.
+ */
+@Slf4j
+@Component
+public class SearchIndexer {
+
+    private static final String INSERT_SQL =
+            "insert into message_terms (term, scope_key, message_id, hits) values (?, ?, ?, ?)";
+    private static final String DELETE_RANGE_SQL =
+            "delete from message_terms where message_id between ? and ?";
+    private static final String COUNT_RANGE_SQL =
+            "select term, scope_key, count(*) from message_terms where message_id between ? and ? group by term, scope_key";
+    private static final String ADD_COUNT_SQL =
+            "update search_term_counts set documents = greatest(documents + ?, 0) where term = ? and scope_key = ?";
+    private static final String INSERT_COUNT_SQL =
+            "insert into search_term_counts (term, scope_key, documents) values (?, ?, ?)";
+    private static final String CLEAR_COUNTS_SQL = "delete from search_term_counts";
+    private static final String RECOUNT_SQL =
+            "insert into search_term_counts (term, scope_key, documents) select term, scope_key, count(*) from message_terms group by term, scope_key";
+    private static final Comparator<TermInScope> KEY_ORDER =
+            Comparator.comparing(TermInScope::term).thenComparing(TermInScope::scopeKey);
+    private static final long RETRY_DELAY_MS = 1000;
+    private static final long SHUTDOWN_TIMEOUT_MS = 10_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<MessageDto> queue;
+    private final int batchSize;
+    private final long lingerMs;
+    private final Counter indexed;
+    private final Counter dropped;
+
+    private volatile boolean running = true;
+    private Thread indexer;
+
+    public SearchIndexer(
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${chat.search.indexer.batch-size:500}") int batchSize,
+            @Value("${chat.search.indexer.linger-ms:100}") long lingerMs,
+            @Value("${chat.search.indexer.queue-capacity:10000}") int queueCapacity
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.lingerMs = lingerMs;
+        this.indexed = meterRegistry.counter("chat.search.indexed");
+        this.dropped = meterRegistry.counter("chat.search.dropped");
+        meterRegistry.gauge("chat.search.queued", queue, BlockingQueue::size);
+    }
+
+    @PostConstruct
+    public void start() {
+        indexer = new Thread(this::runIndexer, "search-indexer");
+        indexer.setDaemon(true);
+        indexer.start();
+    }
+
+    /** Queues a stored message for indexing; never blocks. */
+    public void enqueue(MessageDto message) {
+        if (!running || !queue.offer(message)) {
+            dropped.increment();
+            log.debug("Search index queue full, message {} is not indexed", message.getId());
+        }
+    }
+
+    /**
+     * Replaces the postings of every message id from the first to the last of the batch
+     * (ordered by id) with those of the given messages, in one transaction.
+     */
+    public void reindex(List<MessageDto> batch) {
+        long from = batch.get(0).getId();
+        long to = batch.get(batch.size() - 1).getId();
+        List<Object[]> rows = postings(batch);
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<TermInScope, Long> deltas = documentCounts(rows);
+            jdbcTemplate.query(COUNT_RANGE_SQL, rs -> {
+                deltas.merge(new TermInScope(rs.getString(1), rs.getString(2)), -rs.getLong(3), Long::sum);
+            }, from, to);
+            jdbcTemplate.update(DELETE_RANGE_SQL, from, to);
+            jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+            addCounts(deltas);
+        });
+        indexed.increment(batch.size());
+    }
+
+    /**
+     * Recomputes every document frequency from the postings, for a database whose postings
+     * predate the counters. Exact when no node indexes meanwhile; reindexing afterwards only
+     * adjusts the counts by what it replaces.
+     */
+    public void recount() {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update(CLEAR_COUNTS_SQL);
+            jdbcTemplate.update(RECOUNT_SQL);
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        indexer.join(SHUTDOWN_TIMEOUT_MS);
+        if (indexer.isAlive()) {
+            log.warn("Search indexer did not drain within {} ms, {} messages not indexed", SHUTDOWN_TIMEOUT_MS, queue.size());
+        }
+    }
+
+    private void runIndexer() {
+        List<MessageDto> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                MessageDto first = queue.poll(lingerMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                // nothing interrupts this thread on purpose; keep draining
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<MessageDto> batch) throws InterruptedException {
+        List<Object[]> rows = postings(batch);
+        while (true) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+                    addCounts(documentCounts(rows));
+                });
+                indexed.increment(batch.size());
+                return;
+            } catch (DuplicateKeyException e) {
+                // a rebuild indexed some of these already; count only what is new
+                transactionTemplate.executeWithoutResult(status ->
+                        addCounts(documentCounts(insertIndividually(rows))));
+                indexed.increment(batch.size());
+                return;
+            } catch (DataAccessException e) {
+                if (!running) {
+                    log.error("Indexing {} messages failed during shutdown, a rebuild adds them", batch.size(), e);
+                    return;
+                }
+                log.error("Indexing {} messages failed, retrying in {} ms", batch.size(), RETRY_DELAY_MS, e);
+                Thread.sleep(RETRY_DELAY_MS);
+            }
+        }
+    }
+
+    private List<Object[]> insertIndividually(List<Object[]> rows) {
+        List<Object[]> inserted = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            try {
+                jdbcTemplate.update(INSERT_SQL, row);
+                inserted.add(row);
+            } catch (DuplicateKeyException e) {
+                // already indexed
+            }
+        }
+        return inserted;
+    }
+
+    private void addCounts(Map<TermInScope, Long> deltas) {
+        deltas.values().removeIf(delta -> delta == 0);
+        List<Map.Entry<TermInScope, Long>> entries = new ArrayList<>(deltas.entrySet());
+        int[] updated = jdbcTemplate.batchUpdate(ADD_COUNT_SQL, entries.stream()
+                .map(entry -> new Object[]{entry.getValue(), entry.getKey().term(), entry.getKey().scopeKey()})
+                .toList());
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] != 0) {
+                continue;
+            }
+            TermInScope key = entries.get(i).getKey();
+            long delta = entries.get(i).getValue();
+            try {
+                jdbcTemplate.update(INSERT_COUNT_SQL, key.term(), key.scopeKey(), Math.max(delta, 0));
+            } catch (DuplicateKeyException e) {
+                // another writer created it first
+                jdbcTemplate.update(ADD_COUNT_SQL, delta, key.term(), key.scopeKey());
+            }
+        }
+    }
+
+    // each posting row is one message containing the term
+    private static Map<TermInScope, Long> documentCounts(List<Object[]> rows) {
+        Map<TermInScope, Long> counts = new TreeMap<>(KEY_ORDER);
+        for (Object[] row : rows) {
+            counts.merge(new TermInScope((String) row[0], (String) row[1]), 1L, Long::sum);
+        }
+        return counts;
+    }
+
+    private static List<Object[]> postings(List<MessageDto> messages) {
+        List<Object[]> rows = new ArrayList<>();
+        for (MessageDto message : messages) {
+            String scopeKey = InboxService.conversationKey(message);
+            for (Map.Entry<String, Integer> term : MessageTokenizer.terms(message.getContent()).entrySet()) {
+                rows.add(new Object[]{term.getKey(), scopeKey, message.getId(), term.getValue()});
+            }
+        }
+        return rows;
+    }
+
+    private record TermInScope(String term, String scopeKey) {
+    }
+}
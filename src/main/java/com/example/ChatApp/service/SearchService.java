@@ -0,0 +1,194 @@
+package com.example.ChatApp.service;
+
+import com.example.ChatApp.dto.MessageDto;
+import com.example.ChatApp.dto.SearchPageDto;
+import com.example.ChatApp.entity.Message;
+import com.example.ChatApp.repository.ArchivedMessageRepository;
+import com.example.ChatApp.repository.MessageRepository;
+import com.example.ChatApp.util.MessageTokenizer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Full-text search within one room or one private conversation, over the postings written by
+ * {@link SearchIndexer}. A message matches when it contains every query term. The term with
+ * the fewest documents in the scope drives the query: its postings are read newest first in
+ * chunks, and each chunk is probed for the other terms by primary key, so the cost follows
+ * the rarest term rather than the most common one. At most {@code max-candidates} postings
+ * of that term are read, which only limits a query whose every term is that common.
+ * <p>
+ * Messages are ranked by the sum over terms of {@code (1 + ln hits) * idf}, newest first on
+ * ties. The idf is {@code ln(1 + (n - df + 0.5) / (df + 0.5))}, with {@code df} from the
+ * scope's {@code search_term_counts} and {@code n} the scope's message count from its
+ * conversation summary.
+ */
+@Service
+public class SearchService {
+
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+    public static final int MAX_QUERY_TERMS = 8;
+
+    private static final int CHUNK_SIZE = 500;
+
+    private static final String DOCUMENTS_SQL =
+            "select documents from search_term_counts where term = ? and scope_key = ?";
+    private static final String SCOPE_SIZE_SQL =
+            "select message_count from conversation_summaries where conversation_key = ?";
+    private static final String POSTINGS_SQL =
+            "select message_id, hits from message_terms where term = ? and scope_key = ? and message_id < ? order by message_id desc limit ?";
+    private static final String PROBE_SQL =
+            "select message_id, hits from message_terms where term = ? and scope_key = ? and message_id in (%s)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MessageRepository messageRepository;
+    private final ArchivedMessageRepository archivedMessageRepository;
+    private final IdentityCache identityCache;
+    private final int maxCandidates;
+
+    public SearchService(
+            JdbcTemplate jdbcTemplate,
+            MessageRepository messageRepository,
+            ArchivedMessageRepository archivedMessageRepository,
+            IdentityCache identityCache,
+            @Value("${chat.search.max-candidates:10000}") int maxCandidates
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.messageRepository = messageRepository;
+        this.archivedMessageRepository = archivedMessageRepository;
+        this.identityCache = identityCache;
+        this.maxCandidates = maxCandidates;
+    }
+
+    /** Searches room {@code roomId} or the caller's conversation with {@code otherUserId}, exactly one of them. */
+    public SearchPageDto search(Long userId, String query, Long roomId, Long otherUserId, int offset, int limit) {
+        if ((roomId == null) == (otherUserId == null)) {
+            throw new RuntimeException("Search either a room or a conversation");
+        }
+        String scopeKey;
+        if (roomId != null) {
+            if (!identityCache.roomExists(roomId)) {
+                throw new RuntimeException("Room not found");
+            }
+            scopeKey = InboxService.roomKey(roomId);
+        } else {
+            if (identityCache.findUsername(otherUserId).isEmpty()) {
+                throw new RuntimeException("User not found");
+            }
+            scopeKey = Message.conversationKey(userId, otherUserId);
+        }
+
+        int pageSize = limit <= 0 ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+        int start = Math.max(offset, 0);
+        List<String> terms = MessageTokenizer.terms(query).keySet().stream().limit(MAX_QUERY_TERMS).toList();
+        if (terms.isEmpty()) {
+            return new SearchPageDto(List.of(), null);
+        }
+
+        Map<String, Long> documents = new HashMap<>();
+        for (String term : terms) {
+            documents.put(term, jdbcTemplate.query(DOCUMENTS_SQL, rs -> rs.next() ? rs.getLong(1) : 0L, term, scopeKey));
+        }
+        // the summary can miss messages from before it existed
+        long scopeSize = Math.max(jdbcTemplate.query(SCOPE_SIZE_SQL, rs -> rs.next() ? rs.getLong(1) : 0L, scopeKey),
+                documents.values().stream().mapToLong(Long::longValue).max().orElse(0));
+        List<String> byRarity = new ArrayList<>(terms);
+        byRarity.sort(Comparator.comparing(documents::get));
+        Map<String, Double> idf = new HashMap<>();
+        for (String term : terms) {
+            double df = documents.get(term);
+            idf.put(term, Math.log(1 + (scopeSize - df + 0.5) / (df + 0.5)));
+        }
+
+        Map<Long, Double> scores = matches(scopeKey, byRarity, idf);
+
+        List<Long> ranked = new ArrayList<>(scores.keySet());
+        ranked.sort(Comparator.<Long>comparingDouble(scores::get).reversed().thenComparing(Comparator.reverseOrder()));
+        if (start >= ranked.size()) {
+            return new SearchPageDto(List.of(), null);
+        }
+        int end = Math.min(start + pageSize, ranked.size());
+        List<Long> pageIds = ranked.subList(start, end);
+
+        // postings can run ahead of a write-behind insert; those messages show up once stored
+        Map<Long, MessageDto> byId = new HashMap<>();
+        for (MessageDto message : messageRepository.findByIds(pageIds)) {
+            byId.put(message.getId(), message);
+        }
+        if (byId.size() < pageIds.size()) {
+            // postings stay when a message moves to the archive
+            List<Long> missing = pageIds.stream().filter(id -> !byId.containsKey(id)).toList();
+            for (MessageDto message : archivedMessageRepository.findByIds(missing)) {
+                byId.put(message.getId(), message);
+            }
+        }
+        List<MessageDto> messages = new ArrayList<>(pageIds.size());
+        for (Long id : pageIds) {
+            MessageDto message = byId.get(id);
+            if (message != null) {
+                messages.add(message);
+            }
+        }
+        return new SearchPageDto(messages, end < ranked.size() ? end : null);
+    }
+
+    // intersects the postings of all terms, rarest first, and scores the messages in all of them
+    private Map<Long, Double> matches(String scopeKey, List<String> byRarity, Map<String, Double> idf) {
+        String driver = byRarity.get(0);
+        Map<Long, Double> scores = new HashMap<>();
+        long before = Long.MAX_VALUE;
+        int read = 0;
+        while (read < maxCandidates) {
+            List<long[]> chunk = jdbcTemplate.query(POSTINGS_SQL, (rs, row) -> new long[]{rs.getLong(1), rs.getInt(2)},
+                    driver, scopeKey, before, Math.min(CHUNK_SIZE, maxCandidates - read));
+            if (chunk.isEmpty()) {
+                break;
+            }
+            Map<Long, Double> candidates = new HashMap<>();
+            for (long[] posting : chunk) {
+                candidates.put(posting[0], score(posting[1], idf.get(driver)));
+            }
+            for (String term : byRarity.subList(1, byRarity.size())) {
+                if (candidates.isEmpty()) {
+                    break;
+                }
+                candidates = probe(scopeKey, term, candidates, idf.get(term));
+            }
+            scores.putAll(candidates);
+            read += chunk.size();
+            before = chunk.get(chunk.size() - 1)[0];
+            if (chunk.size() < CHUNK_SIZE) {
+                break;
+            }
+        }
+        return scores;
+    }
+
+    // the candidates that also contain the term, with its score added
+    private Map<Long, Double> probe(String scopeKey, String term, Map<Long, Double> candidates, double idf) {
+        List<Object> args = new ArrayList<>(candidates.size() + 2);
+        args.add(term);
+        args.add(scopeKey);
+        args.addAll(candidates.keySet());
+        String sql = PROBE_SQL.formatted(String.join(",", Collections.nCopies(candidates.size(), "?")));
+        Map<Long, Double> matched = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            long messageId = rs.getLong(1);
+            matched.put(messageId, candidates.get(messageId) + score(rs.getInt(2), idf));
+        }, args.toArray());
+        return matched;
+    }
+
+    private static double score(long hits, double idf) {
+        return (1 + Math.log(hits)) * idf;
+    }
+}
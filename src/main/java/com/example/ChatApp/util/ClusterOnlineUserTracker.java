@@ -0,0 +1,265 @@
+package com.example.ChatApp.util;
+
+import com.example.ChatApp.config.WebSocketProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Online set shared by all nodes. Every node heartbeats the users it has sessions for into
+ * the {@link PresenceStore}, reads the other nodes' entries back, and treats a user as
+ * online while any live node lists them. A node whose beat has not advanced for
+ * {@code expiry-ms}, measured on this node's clock so skew does not matter, is dead and its
+ * users drop out.
+ * <p>
+ * Only the live node with the lowest {@code chat.node-id} reports transitions, so relayed
+ * diffs are not duplicated: its own sessions immediately, everybody else's once their entry
+ * changed, which takes up to two heartbeats. The other nodes keep the same view to serve
+ * snapshots and to take over when the leader expires. The leader's diffs reach clients of
+ * every node only through the relay broker, so this mode refuses to start without it.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "chat.presence.mode", havingValue = "cluster")
+public class ClusterOnlineUserTracker implements OnlineUserTracker {
+
+    private final PresenceStore store;
+    private final int nodeId;
+    private final long expiryNanos;
+    private final LongSupplier clock;
+
+    // guarded by this; online is written under the lock and read without it
+    private final LongHashSet local = new LongHashSet();
+    private final ConcurrentLongSet online = new ConcurrentLongSet();
+    private final Map<Integer, Peer> peers = new HashMap<>();
+    // random start, so a restarted node does not reuse the version of its previous entry
+    private long version = ThreadLocalRandom.current().nextLong();
+    private long writtenVersion = -1;
+    private long beat;
+
+    private volatile LongConsumer remoteTransitions = userId -> {
+    };
+
+    @Autowired
+    public ClusterOnlineUserTracker(
+            PresenceStore store,
+            @Value("${chat.node-id:0}") int nodeId,
+            @Value("${chat.presence.cluster.expiry-ms:5000}") long expiryMs,
+            WebSocketProperties webSocketProperties
+    ) {
+        this(store, nodeId, expiryMs, System::nanoTime);
+        if (webSocketProperties.getBroker().getMode() != WebSocketProperties.BrokerMode.RELAY) {
+            throw new IllegalStateException("chat.presence.mode=cluster needs the relay broker: only the leader publishes presence diffs");
+        }
+    }
+
+    ClusterOnlineUserTracker(PresenceStore store, int nodeId, long expiryMs, LongSupplier clock) {
+        this.store = store;
+        this.nodeId = nodeId;
+        this.expiryNanos = TimeUnit.MILLISECONDS.toNanos(expiryMs);
+        this.clock = clock;
+    }
+
+    @Override
+    public synchronized boolean userConnected(long userId) {
+        if (!local.add(userId)) {
+            return false;
+        }
+        version++;
+        return online.add(userId) && isLeader();
+    }
+
+    @Override
+    public synchronized boolean userDisconnected(long userId) {
+        if (!local.remove(userId)) {
+            return false;
+        }
+        version++;
+        if (onAnyPeer(userId)) {
+            return false;
+        }
+        return online.remove(userId) && isLeader();
+    }
+
+    @Override
+    public boolean isOnline(long userId) {
+        return online.contains(userId);
+    }
+
+    @Override
+    public LongSetSnapshot getOnlineUsers() {
+        return online.snapshot();
+    }
+
+    @Override
+    public void onRemoteTransition(LongConsumer listener) {
+        this.remoteTransitions = listener;
+    }
+
+    @Scheduled(fixedDelayString = "${chat.presence.cluster.heartbeat-ms:1000}")
+    public void heartbeat() {
+        publishOwnEntry();
+
+        // peers is only modified by this thread, so it can be read here without the lock
+        List<NodeHeartbeat> heartbeats = store.heartbeats();
+        Map<Integer, long[]> changedUsers = new HashMap<>();
+        for (NodeHeartbeat heartbeat : heartbeats) {
+            Peer peer = peers.get(heartbeat.nodeId());
+            boolean stillDead = peer != null && peer.dead && peer.beat == heartbeat.beat();
+            if (heartbeat.nodeId() != nodeId && !stillDead && (peer == null || peer.version != heartbeat.version())) {
+                changedUsers.put(heartbeat.nodeId(), store.users(heartbeat.nodeId()));
+            }
+        }
+
+        LongHashSet transitions = new LongHashSet();
+        List<Integer> expired = new ArrayList<>();
+        boolean leader;
+        synchronized (this) {
+            merge(heartbeats, changedUsers, transitions, expired);
+            leader = isLeader();
+        }
+
+        if (leader) {
+            transitions.forEach(remoteTransitions);
+            expired.forEach(store::remove);
+        }
+    }
+
+    @PreDestroy
+    public void leave() {
+        try {
+            store.remove(nodeId);
+        } catch (RuntimeException e) {
+            log.warn("Could not remove presence entry of node {}, it expires instead: {}", nodeId, e.getMessage());
+        }
+    }
+
+    private void publishOwnEntry() {
+        long currentBeat;
+        long currentVersion;
+        synchronized (this) {
+            currentBeat = ++beat;
+            currentVersion = version;
+        }
+        if (currentVersion == writtenVersion && store.heartbeat(nodeId, currentBeat, currentVersion)) {
+            return;
+        }
+
+        long[] users;
+        synchronized (this) {
+            currentVersion = version;
+            users = local.toArray();
+        }
+        store.write(nodeId, currentBeat, currentVersion, users);
+        writtenVersion = currentVersion;
+    }
+
+    private void merge(List<NodeHeartbeat> heartbeats, Map<Integer, long[]> changedUsers,
+                       LongHashSet transitions, List<Integer> expired) {
+        long now = clock.getAsLong();
+        Set<Integer> listed = new HashSet<>();
+        LongHashSet touched = new LongHashSet();
+
+        for (NodeHeartbeat heartbeat : heartbeats) {
+            if (heartbeat.nodeId() == nodeId) {
+                continue;
+            }
+            listed.add(heartbeat.nodeId());
+            Peer peer = peers.computeIfAbsent(heartbeat.nodeId(), id -> new Peer(now));
+            if (peer.beat != heartbeat.beat()) {
+                peer.beat = heartbeat.beat();
+                peer.lastProgress = now;
+                peer.dead = false;
+            }
+            long[] users = changedUsers.get(heartbeat.nodeId());
+            if (users != null) {
+                LongHashSet previous = peer.users;
+                LongHashSet current = new LongHashSet(users.length);
+                for (long userId : users) {
+                    current.add(userId);
+                    if (!previous.contains(userId)) {
+                        touched.add(userId);
+                    }
+                }
+                previous.forEach(userId -> {
+                    if (!current.contains(userId)) {
+                        touched.add(userId);
+                    }
+                });
+                peer.users = current;
+                peer.version = heartbeat.version();
+            }
+        }
+
+        for (Iterator<Map.Entry<Integer, Peer>> it = peers.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Integer, Peer> entry = it.next();
+            Peer peer = entry.getValue();
+            if (!listed.contains(entry.getKey())) {
+                peer.users.forEach(touched::add);
+                it.remove();
+            } else if (!peer.dead && now - peer.lastProgress > expiryNanos) {
+                // kept as a tombstone until the entry is removed, so its stale users are not read back
+                log.info("Presence node {} stopped heartbeating, dropping its {} users", entry.getKey(), peer.users.size());
+                peer.users.forEach(touched::add);
+                peer.dead = true;
+                peer.users = new LongHashSet();
+                peer.version = Long.MIN_VALUE;
+                expired.add(entry.getKey());
+            }
+        }
+
+        touched.forEach(userId -> {
+            boolean isOnline = local.contains(userId) || onAnyPeer(userId);
+            if (isOnline ? online.add(userId) : online.remove(userId)) {
+                transitions.add(userId);
+            }
+        });
+    }
+
+    private boolean onAnyPeer(long userId) {
+        for (Peer peer : peers.values()) {
+            if (peer.users.contains(userId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isLeader() {
+        for (Map.Entry<Integer, Peer> entry : peers.entrySet()) {
+            if (entry.getKey() < nodeId && !entry.getValue().dead) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Peer {
+
+        long beat = -1;
+        long version = Long.MIN_VALUE;
+        long lastProgress;
+        boolean dead;
+        LongHashSet users = new LongHashSet();
+
+        Peer(long now) {
+            this.lastProgress = now;
+        }
+    }
+}
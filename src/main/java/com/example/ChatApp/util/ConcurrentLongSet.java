@@ -0,0 +1,102 @@
+package com.example.ChatApp.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe set of primitive longs: {@link LongHashSet} stripes, each guarded by its own
+ * monitor. {@link #snapshot()} is rebuilt only after the set changed.
+ */
+public final class ConcurrentLongSet {
+
+    private final LongHashSet[] stripes;
+    private final int stripeShift;
+    private final AtomicLong modifications = new AtomicLong();
+    private volatile Snapshot snapshot = new Snapshot(0, LongSetSnapshot.EMPTY);
+
+    public ConcurrentLongSet() {
+        this(16);
+    }
+
+    public ConcurrentLongSet(int stripeCount) {
+        stripes = new LongHashSet[Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1];
+        stripeShift = Long.SIZE - Integer.numberOfTrailingZeros(stripes.length);
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new LongHashSet();
+        }
+    }
+
+    public boolean add(long key) {
+        LongHashSet stripe = stripeOf(key);
+        boolean added;
+        synchronized (stripe) {
+            added = stripe.add(key);
+        }
+        if (added) {
+            modifications.incrementAndGet();
+        }
+        return added;
+    }
+
+    public boolean remove(long key) {
+        LongHashSet stripe = stripeOf(key);
+        boolean removed;
+        synchronized (stripe) {
+            removed = stripe.remove(key);
+        }
+        if (removed) {
+            modifications.incrementAndGet();
+        }
+        return removed;
+    }
+
+    public boolean contains(long key) {
+        LongHashSet stripe = stripeOf(key);
+        synchronized (stripe) {
+            return stripe.contains(key);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (LongHashSet stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    /** Stripes are copied one after another, as a concurrent map iterates its bins. */
+    public LongSetSnapshot snapshot() {
+        long version = modifications.get();
+        Snapshot cached = snapshot;
+        if (cached.version() == version) {
+            return cached.ids();
+        }
+        long[][] parts = new long[stripes.length][];
+        int total = 0;
+        for (int i = 0; i < stripes.length; i++) {
+            synchronized (stripes[i]) {
+                parts[i] = stripes[i].toArray();
+            }
+            total += parts[i].length;
+        }
+        long[] ids = new long[total];
+        int offset = 0;
+        for (long[] part : parts) {
+            System.arraycopy(part, 0, ids, offset, part.length);
+            offset += part.length;
+        }
+        LongSetSnapshot built = LongSetSnapshot.of(ids);
+        snapshot = new Snapshot(version, built);
+        return built;
+    }
+
+    private LongHashSet stripeOf(long key) {
+        // time-ordered ids share their low bits, so the stripe comes from the mixed high bits
+        return stripes[(int) ((key * 0x9E3779B97F4A7C15L) >>> stripeShift)];
+    }
+
+    private record Snapshot(long version, LongSetSnapshot ids) {
+    }
+}
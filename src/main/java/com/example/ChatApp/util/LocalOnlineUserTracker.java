@@ -0,0 +1,32 @@
+package com.example.ChatApp.util;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/** Online set of a single node; sessions on other nodes are not seen. */
+@Component
+@ConditionalOnProperty(name = "chat.presence.mode", havingValue = "local", matchIfMissing = true)
+public class LocalOnlineUserTracker implements OnlineUserTracker {
+
+    private final ConcurrentLongSet onlineUsers = new ConcurrentLongSet();
+
+    @Override
+    public boolean userConnected(long userId) {
+        return onlineUsers.add(userId);
+    }
+
+    @Override
+    public boolean userDisconnected(long userId) {
+        return onlineUsers.remove(userId);
+    }
+
+    @Override
+    public boolean isOnline(long userId) {
+        return onlineUsers.contains(userId);
+    }
+
+    @Override
+    public LongSetSnapshot getOnlineUsers() {
+        return onlineUsers.snapshot();
+    }
+}
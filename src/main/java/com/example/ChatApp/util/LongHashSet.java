@@ -0,0 +1,141 @@
+package com.example.ChatApp.util;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Set of primitive longs, open addressing with linear probing: 8 bytes a slot instead of a
+ * boxed {@code Long} plus a map node per element. Not thread-safe, see {@link ConcurrentLongSet}.
+ */
+public final class LongHashSet {
+
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] slots; // 0 marks a free slot, the key 0 itself is kept in hasZero
+    private int mask;
+    private int size;
+    private int resizeAt;
+    private boolean hasZero;
+
+    public LongHashSet() {
+        this(16);
+    }
+
+    public LongHashSet(int expectedSize) {
+        allocate(Math.max(4, Integer.highestOneBit((int) (Math.max(1, expectedSize) / LOAD_FACTOR)) << 1));
+    }
+
+    public boolean add(long key) {
+        if (key == 0) {
+            if (hasZero) {
+                return false;
+            }
+            hasZero = true;
+            size++;
+            return true;
+        }
+        int slot = slotOf(key);
+        while (slots[slot] != 0) {
+            if (slots[slot] == key) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = key;
+        if (++size > resizeAt) {
+            rehash(slots.length << 1);
+        }
+        return true;
+    }
+
+    public boolean remove(long key) {
+        if (key == 0) {
+            if (!hasZero) {
+                return false;
+            }
+            hasZero = false;
+            size--;
+            return true;
+        }
+        int slot = slotOf(key);
+        while (slots[slot] != key) {
+            if (slots[slot] == 0) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        // backward shift: pull later entries of the probe run into the gap, no tombstones
+        int gap = slot;
+        for (int i = (gap + 1) & mask; slots[i] != 0; i = (i + 1) & mask) {
+            if (((i - slotOf(slots[i])) & mask) >= ((i - gap) & mask)) {
+                slots[gap] = slots[i];
+                gap = i;
+            }
+        }
+        slots[gap] = 0;
+        size--;
+        return true;
+    }
+
+    public boolean contains(long key) {
+        if (key == 0) {
+            return hasZero;
+        }
+        for (int slot = slotOf(key); slots[slot] != 0; slot = (slot + 1) & mask) {
+            if (slots[slot] == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void forEach(LongConsumer action) {
+        if (hasZero) {
+            action.accept(0);
+        }
+        for (long key : slots) {
+            if (key != 0) {
+                action.accept(key);
+            }
+        }
+    }
+
+    public long[] toArray() {
+        long[] keys = new long[size];
+        int[] next = {0};
+        forEach(key -> keys[next[0]++] = key);
+        return keys;
+    }
+
+    private int slotOf(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void allocate(int capacity) {
+        slots = new long[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private void rehash(int capacity) {
+        long[] old = slots;
+        allocate(capacity);
+        for (long key : old) {
+            if (key != 0) {
+                int slot = slotOf(key);
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = key;
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.ChatApp.util;
+
+/**
+ * Thread-safe map from a long key to a positive count, for per-user session counts. Keys and
+ * counts live in parallel primitive arrays (12 bytes a slot) instead of a {@code Long}, an
+ * {@code AtomicInteger} and a map node per key; stripes are guarded by their own monitors.
+ * A key whose count drops to zero is removed.
+ */
+public final class LongIntCounterMap {
+
+    private final Stripe[] stripes;
+    private final int stripeShift;
+
+    public LongIntCounterMap() {
+        this(16);
+    }
+
+    public LongIntCounterMap(int stripeCount) {
+        stripes = new Stripe[Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1];
+        stripeShift = Long.SIZE - Integer.numberOfTrailingZeros(stripes.length);
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /** Returns the count after adding one. */
+    public int increment(long key) {
+        Stripe stripe = stripeOf(key);
+        synchronized (stripe) {
+            return stripe.add(key, 1);
+        }
+    }
+
+    /** Returns the count after taking one away, or -1 if the key had no count. */
+    public int decrement(long key) {
+        Stripe stripe = stripeOf(key);
+        synchronized (stripe) {
+            return stripe.get(key) == 0 ? -1 : stripe.add(key, -1);
+        }
+    }
+
+    public int get(long key) {
+        Stripe stripe = stripeOf(key);
+        synchronized (stripe) {
+            return stripe.get(key);
+        }
+    }
+
+    /** Number of keys with a count. */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size;
+            }
+        }
+        return size;
+    }
+
+    private Stripe stripeOf(long key) {
+        return stripes[(int) ((key * 0x9E3779B97F4A7C15L) >>> stripeShift)];
+    }
+
+    /** Linear probing like {@link LongHashSet}, with the count of each key alongside it. */
+    private static final class Stripe {
+
+        private static final float LOAD_FACTOR = 0.6f;
+
+        private long[] keys = new long[16]; // 0 marks a free slot, the key 0 is kept in zeroCount
+        private int[] counts = new int[16];
+        private int mask = 15;
+        private int size;
+        private int zeroCount;
+
+        int get(long key) {
+            if (key == 0) {
+                return zeroCount;
+            }
+            for (int slot = slotOf(key); keys[slot] != 0; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return counts[slot];
+                }
+            }
+            return 0;
+        }
+
+        int add(long key, int delta) {
+            if (key == 0) {
+                int before = zeroCount;
+                zeroCount += delta;
+                size += (zeroCount > 0 ? 1 : 0) - (before > 0 ? 1 : 0);
+                return zeroCount;
+            }
+            int slot = slotOf(key);
+            while (keys[slot] != 0) {
+                if (keys[slot] == key) {
+                    int count = counts[slot] + delta;
+                    if (count > 0) {
+                        counts[slot] = count;
+                    } else {
+                        removeAt(slot);
+                    }
+                    return count;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (delta <= 0) {
+                return 0;
+            }
+            keys[slot] = key;
+            counts[slot] = delta;
+            if (++size > keys.length * LOAD_FACTOR) {
+                rehash(keys.length << 1);
+            }
+            return delta;
+        }
+
+        private void removeAt(int slot) {
+            int gap = slot;
+            for (int i = (gap + 1) & mask; keys[i] != 0; i = (i + 1) & mask) {
+                if (((i - slotOf(keys[i])) & mask) >= ((i - gap) & mask)) {
+                    keys[gap] = keys[i];
+                    counts[gap] = counts[i];
+                    gap = i;
+                }
+            }
+            keys[gap] = 0;
+            counts[gap] = 0;
+            size--;
+        }
+
+        private int slotOf(long key) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+
+        private void rehash(int capacity) {
+            long[] oldKeys = keys;
+            int[] oldCounts = counts;
+            keys = new long[capacity];
+            counts = new int[capacity];
+            mask = capacity - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int slot = slotOf(oldKeys[i]);
+                    while (keys[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    counts[slot] = oldCounts[i];
+                }
+            }
+        }
+    }
+}
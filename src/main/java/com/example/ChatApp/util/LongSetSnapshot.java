@@ -0,0 +1,71 @@
+package com.example.ChatApp.util;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable, id-ordered copy of a long set. A {@code Set<Long>} for callers that want one,
+ * with primitive lookups and index access for paging by id.
+ */
+public final class LongSetSnapshot extends AbstractSet<Long> {
+
+    public static final LongSetSnapshot EMPTY = new LongSetSnapshot(new long[0]);
+
+    private final long[] ids;
+
+    /** Takes ownership of {@code ids}, which are sorted in place. */
+    static LongSetSnapshot of(long[] ids) {
+        Arrays.sort(ids);
+        return new LongSetSnapshot(ids);
+    }
+
+    private LongSetSnapshot(long[] ids) {
+        this.ids = ids;
+    }
+
+    public boolean contains(long id) {
+        return Arrays.binarySearch(ids, id) >= 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Long id && contains(id.longValue());
+    }
+
+    /** Index of the first id greater than {@code id}, {@link #size()} if there is none. */
+    public int indexAfter(long id) {
+        int index = Arrays.binarySearch(ids, id);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    public long get(int index) {
+        return ids[index];
+    }
+
+    @Override
+    public int size() {
+        return ids.length;
+    }
+
+    @Override
+    public Iterator<Long> iterator() {
+        return new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < ids.length;
+            }
+
+            @Override
+            public Long next() {
+                if (next == ids.length) {
+                    throw new NoSuchElementException();
+                }
+                return ids[next++];
+            }
+        };
+    }
+}
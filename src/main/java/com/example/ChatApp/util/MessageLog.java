@@ -0,0 +1,420 @@
+package com.example.ChatApp.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of opaque records in memory-mapped segment files of {@code segmentBytes}
+ * each, named after the position of their first byte. A record is {@code [int length]
+ * [int crc32 of the payload][payload]}; a length of 0 ends the log and -1 continues it in
+ * the next segment. Positions are byte offsets over all segments and grow with every append.
+ * <p>
+ * Appends only copy into the mapping. One flusher thread forces everything appended since
+ * its last round with a single {@code msync} (group commit), hands the new records to the
+ * {@code onDurable} listener in log order and then releases the appenders waiting in
+ * {@link #awaitDurable}. Opening a log replays its records to the same listener; the first
+ * record that is cut short or fails its checksum ends the log, and it and everything after
+ * it is wiped. Segments are kept until {@link #deleteSegmentsBefore} removes them.
+ */
+@Slf4j
+public final class MessageLog implements Closeable {
+
+    private static final int HEADER_BYTES = 8;
+    private static final int ROLL_MARKER = -1;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("\\d{20}\\.log");
+
+    /** Receives a record's position and a read-only view of its payload. */
+    @FunctionalInterface
+    public interface RecordListener {
+        void accept(long position, ByteBuffer payload);
+    }
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final RecordListener onDurable;
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    // files of deleted segments the file system refused to remove while mapped; guarded by this
+    private final List<Path> undeletedFiles = new ArrayList<>();
+
+    // appenders and the flusher's hand-off; guarded by appendLock
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final Condition flushNeeded = appendLock.newCondition();
+    private Segment active;
+    private int writeOffset;
+    private long written;
+    private boolean closing;
+
+    private final ReentrantLock durableLock = new ReentrantLock();
+    private final Condition durableAdvanced = durableLock.newCondition();
+    private volatile long durable;
+    private volatile RuntimeException failure;
+    private final Thread flusher;
+
+    private MessageLog(Path dir, int segmentBytes, RecordListener onDurable) throws IOException {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.onDurable = onDurable;
+        Files.createDirectories(dir);
+        recover();
+        this.flusher = new Thread(this::runFlusher, "message-log-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /** Opens or creates the log in {@code dir}, passing every intact record to {@code onDurable} first. */
+    public static MessageLog open(Path dir, int segmentBytes, RecordListener onDurable) throws IOException {
+        if (segmentBytes <= HEADER_BYTES) {
+            throw new IllegalArgumentException("Segments must be larger than " + HEADER_BYTES + " bytes");
+        }
+        return new MessageLog(dir, segmentBytes, onDurable);
+    }
+
+    /** Copies the record into the log and returns its position; it is not durable yet. */
+    public long append(byte[] payload) {
+        int length = HEADER_BYTES + payload.length;
+        if (payload.length == 0 || length > segmentBytes) {
+            throw new IllegalArgumentException("Record of " + payload.length + " bytes does not fit a segment");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        appendLock.lock();
+        try {
+            if (closing || failure != null) {
+                throw new IllegalStateException("Message log is closed", failure);
+            }
+            if (writeOffset + length > active.size) {
+                roll();
+            }
+            long position = active.base + writeOffset;
+            // the length goes last, so a record is never visible with a partial payload
+            active.buffer.put(writeOffset + HEADER_BYTES, payload);
+            active.buffer.putInt(writeOffset + 4, (int) crc.getValue());
+            active.buffer.putInt(writeOffset, payload.length);
+            writeOffset += length;
+            written = active.base + writeOffset;
+            flushNeeded.signal();
+            return position;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /** Blocks until the record at {@code position} is on disk and was passed to the listener. */
+    public void awaitDurable(long position) {
+        if (durable > position) {
+            return;
+        }
+        durableLock.lock();
+        try {
+            while (durable <= position) {
+                if (failure != null) {
+                    throw new IllegalStateException("Message log is unavailable", failure);
+                }
+                durableAdvanced.awaitUninterruptibly();
+            }
+        } finally {
+            durableLock.unlock();
+        }
+    }
+
+    /** Payload of the durable record at {@code position}. */
+    public ByteBuffer read(long position) {
+        Segment segment = segments.floorEntry(position).getValue();
+        int offset = (int) (position - segment.base);
+        return payload(segment, offset, segment.buffer.getInt(offset));
+    }
+
+    /**
+     * Passes up to {@code maxRecords} durable records from {@code position} on to the listener
+     * and returns the position to continue from.
+     */
+    public long scan(long position, int maxRecords, RecordListener listener) {
+        return scan(position, durable, maxRecords, listener);
+    }
+
+    public long firstPosition() {
+        return segments.firstKey();
+    }
+
+    /** Position of the first byte of the segment holding {@code position}. */
+    public long segmentStart(long position) {
+        return segments.floorKey(position);
+    }
+
+    /**
+     * Deletes the segments that end at or before {@code position}, except the one being
+     * written, and returns how many. Their records must no longer be read.
+     * <p>
+     * A segment stays mapped until its buffer is collected. POSIX file systems remove the
+     * file anyway; Windows refuses while it is mapped, so such files are retried on every
+     * call until the mapping is gone.
+     */
+    public synchronized int deleteSegmentsBefore(long position) {
+        long activeBase;
+        appendLock.lock();
+        try {
+            activeBase = active.base;
+        } finally {
+            appendLock.unlock();
+        }
+        int deleted = 0;
+        for (Segment segment : segments.headMap(Math.min(position, activeBase)).values()) {
+            if (segment.base + segment.size > position) {
+                break;
+            }
+            segments.remove(segment.base);
+            try {
+                segment.channel.close(); // the mapping stays valid until it is collected
+            } catch (IOException e) {
+                log.warn("Could not close message log segment {}: {}", segment.base, e.getMessage());
+            }
+            undeletedFiles.add(segmentPath(segment.base));
+            deleted++;
+        }
+        undeletedFiles.removeIf(this::deleteFile);
+        return deleted;
+    }
+
+    private boolean deleteFile(Path file) {
+        try {
+            Files.deleteIfExists(file);
+            return true;
+        } catch (IOException e) {
+            log.debug("Message log segment {} not deleted yet: {}", file.getFileName(), e.getMessage());
+            return false;
+        }
+    }
+
+    /** End of the last durable record; records before it survive a crash. */
+    public long durablePosition() {
+        return durable;
+    }
+
+    /** Stops accepting appends and returns once everything appended is durable. */
+    @Override
+    public void close() {
+        appendLock.lock();
+        try {
+            if (closing) {
+                return;
+            }
+            closing = true;
+            flushNeeded.signal();
+        } finally {
+            appendLock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Segment segment : segments.values()) {
+            try {
+                segment.channel.close();
+            } catch (IOException e) {
+                log.warn("Could not close message log segment {}: {}", segment.base, e.getMessage());
+            }
+        }
+    }
+
+    private void runFlusher() {
+        while (true) {
+            long from = durable;
+            long to;
+            appendLock.lock();
+            try {
+                while (written == from && !closing) {
+                    flushNeeded.awaitUninterruptibly();
+                }
+                to = written;
+            } finally {
+                appendLock.unlock();
+            }
+            if (to == from) {
+                return; // closing and drained
+            }
+
+            try {
+                force(from, to);
+                scan(from, to, Integer.MAX_VALUE, onDurable);
+            } catch (RuntimeException e) {
+                log.error("Message log flush failed, no further records are accepted", e);
+                failure = e;
+            }
+            durableLock.lock();
+            try {
+                if (failure == null) {
+                    durable = to;
+                }
+                durableAdvanced.signalAll();
+            } finally {
+                durableLock.unlock();
+            }
+            if (failure != null) {
+                return;
+            }
+        }
+    }
+
+    private void force(long from, long to) {
+        for (Segment segment : segments.subMap(segments.floorKey(from), true, to, false).values()) {
+            int start = (int) Math.max(from - segment.base, 0);
+            int end = (int) Math.min(to - segment.base, segment.size);
+            if (end > start) {
+                segment.buffer.force(start, end - start);
+            }
+        }
+    }
+
+    private long scan(long position, long end, int maxRecords, RecordListener listener) {
+        int count = 0;
+        while (position < end && count < maxRecords) {
+            Segment segment = segments.floorEntry(position).getValue();
+            int offset = (int) (position - segment.base);
+            int length = offset + HEADER_BYTES <= segment.size ? segment.buffer.getInt(offset) : ROLL_MARKER;
+            if (length == ROLL_MARKER) {
+                position = segment.base + segment.size;
+                continue;
+            }
+            listener.accept(position, payload(segment, offset, length));
+            position += HEADER_BYTES + length;
+            count++;
+        }
+        return position;
+    }
+
+    private static ByteBuffer payload(Segment segment, int offset, int length) {
+        return segment.buffer.slice(offset + HEADER_BYTES, length).asReadOnlyBuffer();
+    }
+
+    private void recover() throws IOException {
+        List<Long> bases = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> SEGMENT_NAME.matcher(name).matches())
+                    .forEach(name -> bases.add(Long.parseLong(name.substring(0, 20))));
+        }
+        bases.sort(null);
+        for (long base : bases) {
+            // an empty file was being created when the process stopped
+            long size = Files.size(segmentPath(base));
+            segments.put(base, Segment.open(segmentPath(base), base, size > 0 ? (int) size : segmentBytes));
+        }
+        if (segments.isEmpty()) {
+            active = createSegment(0);
+            return;
+        }
+
+        CRC32 crc = new CRC32();
+        for (Segment segment : segments.values()) {
+            int offset = 0;
+            while (true) {
+                if (offset + HEADER_BYTES > segment.size) {
+                    break; // full, continues in the next segment
+                }
+                int length = segment.buffer.getInt(offset);
+                if (length == ROLL_MARKER) {
+                    break;
+                }
+                boolean intact = length > 0 && length <= segment.size - offset - HEADER_BYTES;
+                if (intact) {
+                    crc.reset();
+                    crc.update(payload(segment, offset, length));
+                    intact = (int) crc.getValue() == segment.buffer.getInt(offset + 4);
+                }
+                if (!intact) {
+                    endAt(segment, offset, length != 0);
+                    return;
+                }
+                onDurable.accept(segment.base + offset, payload(segment, offset, length));
+                offset += HEADER_BYTES + length;
+            }
+            active = segment;
+            writeOffset = offset;
+        }
+        written = durable = active.base + writeOffset;
+    }
+
+    // makes the record at offset the end of the log: clears the rest of its segment and drops later ones
+    private void endAt(Segment segment, int offset, boolean damaged) throws IOException {
+        long position = segment.base + offset;
+        if (damaged) {
+            log.warn("Message log record at {} is torn or corrupt, truncating the log there", position);
+        }
+        int i = offset;
+        for (; i + Long.BYTES <= segment.size; i += Long.BYTES) {
+            if (segment.buffer.getLong(i) != 0) {
+                segment.buffer.putLong(i, 0);
+            }
+        }
+        for (; i < segment.size; i++) {
+            segment.buffer.put(i, (byte) 0);
+        }
+        segment.buffer.force();
+        for (Segment later : new ArrayList<>(segments.tailMap(segment.base, false).values())) {
+            log.warn("Deleting message log segment {} after the end of the log", later.base);
+            later.channel.close();
+            segments.remove(later.base);
+            Files.delete(segmentPath(later.base));
+        }
+        active = segment;
+        writeOffset = offset;
+        written = durable = position;
+    }
+
+    private void roll() {
+        if (writeOffset + 4 <= active.size) {
+            active.buffer.putInt(writeOffset, ROLL_MARKER);
+        }
+        try {
+            active = createSegment(active.base + active.size);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create message log segment", e);
+        }
+        writeOffset = 0;
+    }
+
+    private Segment createSegment(long base) throws IOException {
+        Segment segment = Segment.open(segmentPath(base), base, segmentBytes);
+        segments.put(base, segment);
+        // make the new file's directory entry durable too; not every platform can sync a directory
+        try (FileChannel directory = FileChannel.open(dir, StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException e) {
+            log.debug("Could not sync message log directory: {}", e.getMessage());
+        }
+        return segment;
+    }
+
+    private Path segmentPath(long base) {
+        return dir.resolve(String.format("%020d.log", base));
+    }
+
+    private record Segment(long base, int size, FileChannel channel, MappedByteBuffer buffer) {
+
+        // mapping past the end of a new file extends it sparsely
+        static Segment open(Path path, long base, int size) throws IOException {
+            FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return new Segment(base, size, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+    }
+}
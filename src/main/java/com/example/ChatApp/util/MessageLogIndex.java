@@ -0,0 +1,111 @@
+package com.example.ChatApp.util;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Positions of {@link MessageLog} records by key (a room, a user's private messages, a
+ * conversation), as two parallel primitive arrays of message id and log position per key,
+ * ordered by id: 16 bytes per entry plus growth slack, searched by binary search.
+ */
+public final class MessageLogIndex {
+
+    private static final long[] NONE = new long[0];
+
+    private final Map<String, Postings> postings = new ConcurrentHashMap<>();
+
+    public void add(String key, long id, long position) {
+        // inside compute, so a concurrent removeBefore cannot drop the key in between
+        postings.compute(key, (k, entries) -> {
+            Postings added = entries != null ? entries : new Postings();
+            added.add(id, position);
+            return added;
+        });
+    }
+
+    /** Drops every entry whose record is before {@code position}, and keys left without any. */
+    public void removeBefore(long position) {
+        for (String key : postings.keySet()) {
+            postings.computeIfPresent(key, (k, entries) -> entries.removeBefore(position) > 0 ? entries : null);
+        }
+    }
+
+    /** Positions of the newest {@code limit} entries with an id below {@code before}, or the newest overall when it is null, oldest first. */
+    public long[] before(String key, Long before, int limit) {
+        Postings entries = postings.get(key);
+        return entries != null ? entries.before(before, limit) : NONE;
+    }
+
+    /** Positions of the oldest {@code limit} entries with an id above {@code after}, oldest first. */
+    public long[] after(String key, long after, int limit) {
+        Postings entries = postings.get(key);
+        return entries != null ? entries.after(after, limit) : NONE;
+    }
+
+    public long entryCount() {
+        long count = 0;
+        for (Postings entries : postings.values()) {
+            count += entries.size();
+        }
+        return count;
+    }
+
+    private static final class Postings {
+
+        private long[] ids = new long[8];
+        private long[] positions = new long[8];
+        private int size;
+
+        // ids arrive in increasing order; the shift only covers a clock that stepped back
+        synchronized void add(long id, long position) {
+            if (size == ids.length) {
+                int capacity = size + (size >> 1);
+                ids = Arrays.copyOf(ids, capacity);
+                positions = Arrays.copyOf(positions, capacity);
+            }
+            int at = size;
+            while (at > 0 && ids[at - 1] > id) {
+                at--;
+            }
+            System.arraycopy(ids, at, ids, at + 1, size - at);
+            System.arraycopy(positions, at, positions, at + 1, size - at);
+            ids[at] = id;
+            positions[at] = position;
+            size++;
+        }
+
+        synchronized long[] before(Long before, int limit) {
+            int end = before != null ? firstAtOrAbove(before) : size;
+            return Arrays.copyOfRange(positions, Math.max(0, end - limit), end);
+        }
+
+        synchronized long[] after(long after, int limit) {
+            int start = after == Long.MAX_VALUE ? size : firstAtOrAbove(after + 1);
+            return Arrays.copyOfRange(positions, start, (int) Math.min(size, (long) start + limit));
+        }
+
+        // returns the entries left
+        synchronized int removeBefore(long position) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (positions[i] >= position) {
+                    ids[kept] = ids[i];
+                    positions[kept] = positions[i];
+                    kept++;
+                }
+            }
+            size = kept;
+            return kept;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        private int firstAtOrAbove(long id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            return index >= 0 ? index : -index - 1;
+        }
+    }
+}
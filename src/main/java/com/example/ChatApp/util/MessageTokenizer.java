@@ -0,0 +1,48 @@
+package com.example.ChatApp.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Splits text into search terms: runs of letters and digits, lower-cased, at least
+ * {@value #MIN_TERM_LENGTH} characters, cut to {@value #MAX_TERM_LENGTH}. Messages and
+ * queries go through the same rules, so a cut term still matches.
+ */
+public final class MessageTokenizer {
+
+    public static final int MIN_TERM_LENGTH = 2;
+    public static final int MAX_TERM_LENGTH = 32;
+
+    private MessageTokenizer() {
+    }
+
+    /** Distinct terms of the text in order of first occurrence, with how often each occurs. */
+    public static Map<String, Integer> terms(String text) {
+        Map<String, Integer> terms = new LinkedHashMap<>();
+        if (text == null) {
+            return terms;
+        }
+        StringBuilder term = new StringBuilder(MAX_TERM_LENGTH);
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (Character.isLetterOrDigit(codePoint)) {
+                // the limit is in chars, the column's unit on every database
+                if (term.length() + Character.charCount(codePoint) <= MAX_TERM_LENGTH) {
+                    term.appendCodePoint(Character.toLowerCase(codePoint));
+                }
+                continue;
+            }
+            add(terms, term);
+            term.setLength(0);
+        }
+        add(terms, term);
+        return terms;
+    }
+
+    private static void add(Map<String, Integer> terms, StringBuilder term) {
+        if (term.length() >= MIN_TERM_LENGTH) {
+            terms.merge(term.toString(), 1, Integer::sum);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.ChatApp.util;
+
+/**
+ * Header of one node's entry in the {@link PresenceStore}: {@code beat} advances on every
+ * heartbeat, {@code version} whenever the node's user set changed.
+ */
+public record NodeHeartbeat(int nodeId, long beat, long version) {
+}
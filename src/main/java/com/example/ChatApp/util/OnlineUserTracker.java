@@ -1,24 +1,27 @@
 package com.example.ChatApp.util;
 
-import org.springframework.stereotype.Component;
+import java.util.function.LongConsumer;
 
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+/**
+ * Who is online. {@code WebSocketPresenceListener} reports a user's first and last STOMP
+ * session on this node; the tracker decides whether that changed the user's state.
+ * {@code chat.presence.mode} picks {@link LocalOnlineUserTracker} (one node) or
+ * {@link ClusterOnlineUserTracker} (state shared by every node).
+ */
+public interface OnlineUserTracker {
 
-@Component
-public class OnlineUserTracker {
+    /** The user's first session on this node opened; true if this node should publish them online. */
+    boolean userConnected(long userId);
 
-    private final Set<Long> onlineUsers = ConcurrentHashMap.newKeySet();
+    /** The user's last session on this node closed; true if this node should publish them offline. */
+    boolean userDisconnected(long userId);
 
-    public void userConnected(Long userId) {
-        onlineUsers.add(userId);
-    }
+    boolean isOnline(long userId);
 
-    public void userDisconnected(Long userId) {
-        onlineUsers.remove(userId);
-    }
+    /** Immutable copy ordered by id, taken again only after the set changed. */
+    LongSetSnapshot getOnlineUsers();
 
-    public Set<Long> getOnlineUsers() {
-        return onlineUsers;
+    /** Called with users whose state changed for reasons other than the calls above, e.g. on another node. */
+    default void onRemoteTransition(LongConsumer listener) {
     }
 }
@@ -0,0 +1,24 @@
+package com.example.ChatApp.util;
+
+import java.util.List;
+
+/**
+ * Shared table of which users each node has sessions for, one entry per node. Used by
+ * {@link ClusterOnlineUserTracker}; user sets are only rewritten when they changed, every
+ * other heartbeat touches the header alone.
+ */
+public interface PresenceStore {
+
+    /** Advances the beat of an unchanged entry; false if the entry is gone or holds another version. */
+    boolean heartbeat(int nodeId, long beat, long version);
+
+    /** Replaces the node's entry. */
+    void write(int nodeId, long beat, long version, long[] users);
+
+    List<NodeHeartbeat> heartbeats();
+
+    /** Users of the node's entry, empty if it is gone. */
+    long[] users(int nodeId);
+
+    void remove(int nodeId);
+}
@@ -0,0 +1,70 @@
+package com.example.ChatApp.util;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+
+/**
+ * Snowflake-style ids: 41 bits of milliseconds since 2025-01-01, 5 bits of node id and
+ * 7 bits of per-millisecond sequence. The whole id fits in 53 bits so browsers can hold
+ * it in a plain JavaScript number without losing precision.
+ * <p>
+ * Entity ids come from the same instance through
+ * {@link com.example.ChatApp.entity.TimeOrderedIdentifierGenerator}.
+ */
+@Component
+public class TimeOrderedIdGenerator {
+
+    private static final long EPOCH_MS = 1735689600000L; // 2025-01-01T00:00:00Z
+    /** Time of id 0; rows from before it kept their auto-increment ids. */
+    public static final Instant EPOCH = Instant.ofEpochMilli(EPOCH_MS);
+    private static final int NODE_BITS = 5;
+    private static final int SEQUENCE_BITS = 7;
+    private static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final long nodeId;
+    private long lastMillis = -1L;
+    private long sequence;
+
+    public TimeOrderedIdGenerator(@Value("${chat.node-id:0}") long nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("chat.node-id must be between 0 and " + MAX_NODE_ID);
+        }
+        this.nodeId = nodeId;
+    }
+
+    /** The lowest id issued at or after {@code time}; ids below it were issued before. */
+    public static long firstIdAt(Instant time) {
+        return Math.max(time.toEpochMilli() - EPOCH_MS, 0) << (NODE_BITS + SEQUENCE_BITS);
+    }
+
+    public synchronized long nextId() {
+        // if the clock steps backwards keep issuing from the last tick instead of repeating ids
+        long now = Math.max(System.currentTimeMillis(), lastMillis);
+
+        if (now == lastMillis) {
+            sequence = (sequence + 1) & SEQUENCE_MASK;
+            if (sequence == 0) {
+                now = waitForNextMillis(lastMillis);
+            }
+        } else {
+            sequence = 0;
+        }
+
+        lastMillis = now;
+        return ((now - EPOCH_MS) << (NODE_BITS + SEQUENCE_BITS))
+                | (nodeId << SEQUENCE_BITS)
+                | sequence;
+    }
+
+    private long waitForNextMillis(long current) {
+        long now = System.currentTimeMillis();
+        while (now <= current) {
+            Thread.onSpinWait();
+            now = System.currentTimeMillis();
+        }
+        return now;
+    }
+}
@@ -0,0 +1,17 @@
+-- Moving an existing MySQL database from AUTO_INCREMENT ids to time-ordered ids.
+--
+-- No data migration is needed: existing rows keep their small auto-increment ids and
+-- every new id (milliseconds since 2025-01-01 shifted left by 12 bits) is far above
+-- them, so "order by id" still matches insert order across old and new rows.
+--
+-- Hibernate now supplies the id on insert, which MySQL accepts on AUTO_INCREMENT
+-- columns, so this script is optional. Run it once, with the app stopped, to drop
+-- the unused AUTO_INCREMENT attribute so the counter no longer jumps.
+
+SET FOREIGN_KEY_CHECKS = 0;
+
+ALTER TABLE messages MODIFY id BIGINT NOT NULL;
+ALTER TABLE users MODIFY id BIGINT NOT NULL;
+ALTER TABLE chat_rooms MODIFY id BIGINT NOT NULL;
+
+SET FOREIGN_KEY_CHECKS = 1;
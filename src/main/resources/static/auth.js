@@ -15,6 +15,16 @@ function logout() {
     window.location.href = '/index.html';
 }
 
+// Native WebSocket where available (large broadcasts are written from one shared
+// buffer); SockJS only as a fallback, since it re-frames every message per session
+function openChatSocket() {
+    if ('WebSocket' in window) {
+        const scheme = window.location.protocol === 'https:' ? 'wss://' : 'ws://';
+        return new WebSocket(scheme + window.location.host + '/ws/websocket');
+    }
+    return new SockJS('/ws');
+}
+
 function getAuth() {
     return {
         userId: Number(localStorage.getItem('userId')),
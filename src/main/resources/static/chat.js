@@ -5,6 +5,19 @@ let roomSubscriptions = {};
 let unreadByRoom = {};
 let roomQuery = '';
 let pendingOwnRoomMessages = [];
+let oldestLoadedMessageId = null;
+let hasOlderMessages = false;
+let loadingOlderMessages = false;
+let lastSeenByRoom = {};
+let seenMessageIds = new Set();
+let reconnectAttempts = 0;
+let reconnectTimer = null;
+let pendingReadRoomIds = new Set();
+let readMarkTimer = null;
+
+const HISTORY_PAGE_SIZE = 50;
+const SEEN_IDS_LIMIT = 5000;
+const READ_MARK_DELAY_MS = 1000;
 
 function getAuth() {
     return {
@@ -52,9 +65,25 @@ function consumePendingOwnRoomMessage(roomId, content) {
     return true;
 }
 
+// returns false for a message already received, e.g. live and again in a reconnect replay
+function noteSeen(msg) {
+    if (seenMessageIds.has(msg.id)) {
+        return false;
+    }
+    seenMessageIds.add(msg.id);
+    if (seenMessageIds.size > SEEN_IDS_LIMIT) {
+        seenMessageIds.delete(seenMessageIds.values().next().value);
+    }
+    const roomId = Number(msg.roomId);
+    if (!lastSeenByRoom[roomId] || msg.id > lastSeenByRoom[roomId]) {
+        lastSeenByRoom[roomId] = msg.id;
+    }
+    return true;
+}
+
 function handleRoomMessage(msg) {
     const roomId = Number(msg && msg.roomId);
-    if (!msg || !Number.isFinite(roomId)) {
+    if (!msg || !Number.isFinite(roomId) || !noteSeen(msg)) {
         return;
     }
 
@@ -67,6 +96,9 @@ function handleRoomMessage(msg) {
     const activeRoomVisible = roomId === Number(currentRoomId) && document.visibilityState === 'visible';
     if (activeRoomVisible) {
         showMessage(msg, true);
+        if (!isOwnMessage) {
+            scheduleRoomRead(roomId);
+        }
         return;
     }
 
@@ -95,9 +127,14 @@ function updateRoomSubscriptions() {
             return;
         }
 
+        // after a reconnect the server replays only what came after the last message seen
+        const headers = lastSeenByRoom[room.id] ? { 'resume-after': String(lastSeenByRoom[room.id]) } : {};
         roomSubscriptions[room.id] = stompClient.subscribe('/topic/room.' + room.id, function (message) {
             handleRoomMessage(JSON.parse(message.body));
-        });
+            if (message.headers['resume-truncated'] && room.id === currentRoomId) {
+                selectRoom(room.id, room.name); // too much was missed to replay, reload instead
+            }
+        }, headers);
     });
 }
 
@@ -146,6 +183,55 @@ function renderRooms() {
     });
 }
 
+// unread counts kept by the server, so they survive reloads and other devices
+async function loadUnread() {
+    const auth = getAuth();
+    try {
+        const resp = await fetch('/api/inbox?limit=200', {
+            headers: { Authorization: 'Bearer ' + auth.token }
+        });
+        if (!resp.ok) {
+            console.error('Failed to load inbox', resp.status);
+            return;
+        }
+        const inbox = await resp.json();
+        inbox.forEach(function (entry) {
+            if (entry.roomId !== null && entry.roomId !== currentRoomId) {
+                unreadByRoom[entry.roomId] = entry.unread;
+            }
+        });
+    } catch (e) {
+        console.error('Error loading inbox', e);
+    }
+}
+
+function markRoomRead(roomId) {
+    const auth = getAuth();
+    fetch('/api/inbox/room:' + roomId + '/read', {
+        method: 'POST',
+        headers: { Authorization: 'Bearer ' + auth.token }
+    }).catch(function (e) {
+        console.error('Error marking room read', e);
+    });
+}
+
+// a busy open room is marked read at most once a second, not once per live message
+function scheduleRoomRead(roomId) {
+    pendingReadRoomIds.add(roomId);
+    if (!readMarkTimer) {
+        readMarkTimer = setTimeout(flushRoomReads, READ_MARK_DELAY_MS);
+    }
+}
+
+function flushRoomReads() {
+    clearTimeout(readMarkTimer);
+    readMarkTimer = null;
+    pendingReadRoomIds.forEach(function (roomId) {
+        markRoomRead(roomId);
+    });
+    pendingReadRoomIds.clear();
+}
+
 async function loadRooms() {
     const auth = getAuth();
 
@@ -168,6 +254,7 @@ async function loadRooms() {
                 unreadByRoom[room.id] = 0;
             }
         });
+        await loadUnread();
 
         renderRooms();
         updateRoomSubscriptions();
@@ -182,8 +269,10 @@ async function loadRooms() {
 }
 
 async function selectRoom(roomId, roomName) {
+    flushRoomReads();
     currentRoomId = roomId;
     unreadByRoom[roomId] = 0;
+    markRoomRead(roomId);
 
     document.getElementById('currentRoomName').textContent = roomName;
     renderRooms();
@@ -192,24 +281,75 @@ async function selectRoom(roomId, roomName) {
     const messagesEl = document.getElementById('messages');
     messagesEl.innerHTML = '';
 
+    oldestLoadedMessageId = null;
+    hasOlderMessages = false;
+
+    const history = await fetchRoomHistory(roomId, null);
+    if (history && Number(roomId) === Number(currentRoomId)) {
+        history.forEach(function (message) {
+            noteSeen(message);
+            showMessage(message, false);
+        });
+        rememberHistoryPage(history);
+        scrollMessagesToBottom();
+    }
+}
+
+async function fetchRoomHistory(roomId, beforeId) {
     const auth = getAuth();
+    let url = '/api/rooms/' + roomId + '/messages?limit=' + HISTORY_PAGE_SIZE;
+    if (beforeId) {
+        url += '&before=' + beforeId;
+    }
+
     try {
-        const resp = await fetch('/api/rooms/' + roomId + '/messages', {
+        const resp = await fetch(url, {
             headers: { Authorization: 'Bearer ' + auth.token }
         });
 
         if (resp.ok) {
-            const history = await resp.json();
-            history.forEach(function (message) {
-                showMessage(message, false);
-            });
-            scrollMessagesToBottom();
-        } else {
-            console.error('Failed to load room history', resp.status);
+            return await resp.json();
         }
+        console.error('Failed to load room history', resp.status);
     } catch (e) {
         console.error('Error loading room history', e);
     }
+    return null;
+}
+
+function rememberHistoryPage(history) {
+    if (history.length > 0) {
+        oldestLoadedMessageId = history[0].id;
+    }
+    hasOlderMessages = history.length === HISTORY_PAGE_SIZE;
+}
+
+async function loadOlderMessages() {
+    if (!currentRoomId || !hasOlderMessages || loadingOlderMessages) {
+        return;
+    }
+
+    loadingOlderMessages = true;
+    const roomId = currentRoomId;
+    const messagesEl = document.getElementById('messages');
+
+    try {
+        const history = await fetchRoomHistory(roomId, oldestLoadedMessageId);
+        if (!history || Number(roomId) !== Number(currentRoomId)) {
+            return;
+        }
+
+        const previousHeight = messagesEl.scrollHeight;
+        const firstRow = messagesEl.firstChild;
+        history.forEach(function (message) {
+            noteSeen(message);
+            messagesEl.insertBefore(buildMessageRow(message, false), firstRow);
+        });
+        rememberHistoryPage(history);
+        messagesEl.scrollTop = messagesEl.scrollHeight - previousHeight;
+    } finally {
+        loadingOlderMessages = false;
+    }
 }
 
 function showMessage(msg, animate) {
@@ -217,12 +357,29 @@ function showMessage(msg, animate) {
         return;
     }
 
+    // replayed messages can arrive after newer live ones, so place rows by id; unsent own rows stay last
+    const messagesEl = document.getElementById('messages');
+    let next = null;
+    if (msg.id) {
+        let previous = messagesEl.lastElementChild;
+        while (previous && previous.dataset.id && Number(previous.dataset.id) > msg.id) {
+            next = previous;
+            previous = previous.previousElementSibling;
+        }
+    }
+    messagesEl.insertBefore(buildMessageRow(msg, animate), next);
+    scrollMessagesToBottom();
+}
+
+function buildMessageRow(msg, animate) {
     const auth = getAuth();
     const mine = Number(msg.senderId) === auth.userId;
-    const messagesEl = document.getElementById('messages');
 
     const row = document.createElement('div');
     row.className = mine ? 'message-row mine' : 'message-row';
+    if (msg.id) {
+        row.dataset.id = msg.id;
+    }
     if (animate === false) {
         row.classList.add('instant');
     }
@@ -246,9 +403,7 @@ function showMessage(msg, animate) {
 
     bubble.append(meta, content);
     row.appendChild(bubble);
-    messagesEl.appendChild(row);
-
-    scrollMessagesToBottom();
+    return row;
 }
 
 function sendMessage() {
@@ -278,7 +433,6 @@ function sendMessage() {
     const chatMessage = {
         roomId: currentRoomId,
         receiverId: null,
-        senderId: auth.userId,
         content: content
     };
 
@@ -299,7 +453,7 @@ function sendMessage() {
 }
 
 function connect() {
-    const socket = new SockJS('/ws');
+    const socket = openChatSocket();
     stompClient = Stomp.over(socket);
 
     const auth = getAuth();
@@ -307,14 +461,30 @@ function connect() {
     stompClient.connect(
         { Authorization: 'Bearer ' + auth.token },
         function () {
+            reconnectAttempts = 0;
             loadRooms();
         },
         function (error) {
             console.error('STOMP error: ', error);
+            scheduleReconnect();
         }
     );
 }
 
+// backoff with jitter, so a restart does not bring every client back at the same moment
+function scheduleReconnect() {
+    if (reconnectTimer) {
+        return;
+    }
+    roomSubscriptions = {};
+    const delay = Math.min(30000, 1000 * Math.pow(2, reconnectAttempts)) * (0.5 + Math.random() / 2);
+    reconnectAttempts++;
+    reconnectTimer = setTimeout(function () {
+        reconnectTimer = null;
+        connect();
+    }, delay);
+}
+
 window.addEventListener('load', function () {
     const auth = getAuth();
     if (!auth.token) {
@@ -331,6 +501,12 @@ window.addEventListener('load', function () {
         }
     });
 
+    document.getElementById('messages').addEventListener('scroll', function (event) {
+        if (event.target.scrollTop === 0) {
+            loadOlderMessages();
+        }
+    });
+
     document.getElementById('roomSearchInput').addEventListener('input', function (event) {
         roomQuery = event.target.value.trim().toLowerCase();
         renderRooms();
@@ -339,9 +515,13 @@ window.addEventListener('load', function () {
     document.addEventListener('visibilitychange', function () {
         if (document.visibilityState === 'visible' && currentRoomId) {
             unreadByRoom[currentRoomId] = 0;
+            markRoomRead(currentRoomId);
             renderRooms();
+        } else if (document.visibilityState === 'hidden') {
+            flushRoomReads();
         }
     });
+    window.addEventListener('pagehide', flushRoomReads);
 
     connect();
 });
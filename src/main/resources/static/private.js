@@ -1,9 +1,21 @@
 let stompClient = null;
 let users = [];
+let usersById = new Map();
+let presenceBuffer = null;
 let currentPeerId = null;
 let unreadByUser = {};
 let userQuery = '';
 let pendingOwnPrivateMessages = [];
+let lastSeenPrivateId = null;
+let seenMessageIds = new Set();
+let reconnectAttempts = 0;
+let reconnectTimer = null;
+let pendingReadPeerIds = new Set();
+let readMarkTimer = null;
+
+const SEEN_IDS_LIMIT = 5000;
+const PRESENCE_PAGE_SIZE = 100;
+const READ_MARK_DELAY_MS = 1000;
 
 function getAuth() {
     return {
@@ -114,44 +126,138 @@ function renderUserList() {
     });
 }
 
+// online users first, then by name; users who went offline stay listed
+function updateUser(id, username, online) {
+    const auth = getAuth();
+    if (id === auth.userId) {
+        return;
+    }
+    const known = usersById.get(id);
+    usersById.set(id, {
+        id: id,
+        username: username || (known ? known.username : 'User ' + id),
+        online: online
+    });
+    users = Array.from(usersById.values()).sort(function (a, b) {
+        if (a.online !== b.online) {
+            return a.online ? -1 : 1;
+        }
+        return a.username.localeCompare(b.username, undefined, { sensitivity: 'base' });
+    });
+}
+
+function handlePresence(delta) {
+    if (presenceBuffer) {
+        presenceBuffer.push(delta); // applied once the snapshot is in
+        return;
+    }
+    updateUser(Number(delta.id), delta.username, delta.online);
+    renderUserList();
+}
+
+// the online set, a page at a time; later changes arrive on /topic/presence
 async function loadUsers() {
     const auth = getAuth();
+    presenceBuffer = [];
 
     try {
-        const resp = await fetch('/api/users/presence', {
-            headers: { Authorization: 'Bearer ' + auth.token }
+        const online = [];
+        let after = null;
+        do {
+            let url = '/api/users/presence/online?limit=' + PRESENCE_PAGE_SIZE;
+            if (after !== null) {
+                url += '&after=' + after;
+            }
+            const resp = await fetch(url, {
+                headers: { Authorization: 'Bearer ' + auth.token }
+            });
+            if (!resp.ok) {
+                console.error('Failed to load users', resp.status);
+                return;
+            }
+            const page = await resp.json();
+            online.push.apply(online, page.users);
+            after = page.next;
+        } while (after !== null);
+
+        usersById.forEach(function (user) {
+            updateUser(user.id, user.username, false);
+        });
+        online.forEach(function (user) {
+            updateUser(user.id, user.username, true);
         });
+    } catch (e) {
+        console.error('Error loading users', e);
+    } finally {
+        const buffered = presenceBuffer;
+        presenceBuffer = null;
+        buffered.forEach(handlePresence);
+        renderUserList();
+    }
+
+    if (!currentPeerId && users.length > 0) {
+        selectUser(users[0].id, users[0].username);
+    }
+}
 
+// conversations with unread counts from the server, including peers who are offline
+async function loadInbox() {
+    const auth = getAuth();
+    try {
+        const resp = await fetch('/api/inbox?limit=200', {
+            headers: { Authorization: 'Bearer ' + auth.token }
+        });
         if (!resp.ok) {
-            console.error('Failed to load users', resp.status);
+            console.error('Failed to load inbox', resp.status);
             return;
         }
-
-        users = await resp.json();
-
-        const knownUserIds = new Set(users.map(function (user) { return user.id; }));
-        Object.keys(unreadByUser).forEach(function (userIdKey) {
-            if (!knownUserIds.has(Number(userIdKey))) {
-                delete unreadByUser[userIdKey];
+        const inbox = await resp.json();
+        inbox.forEach(function (entry) {
+            if (entry.otherUserId === null) {
+                return;
+            }
+            if (!usersById.has(entry.otherUserId)) {
+                updateUser(entry.otherUserId, entry.title, false);
+            }
+            if (entry.otherUserId !== currentPeerId) {
+                unreadByUser[entry.otherUserId] = entry.unread;
             }
         });
-
-        if (currentPeerId && !knownUserIds.has(currentPeerId)) {
-            currentPeerId = null;
-            document.getElementById('currentPeerName').textContent = 'Select a user';
-            document.getElementById('privateMessages').innerHTML = '';
-        }
-
         renderUserList();
-
-        if (!currentPeerId && users.length > 0) {
-            selectUser(users[0].id, users[0].username);
-        }
     } catch (e) {
-        console.error('Error loading users', e);
+        console.error('Error loading inbox', e);
+    }
+}
+
+function markConversationRead(otherUserId) {
+    const auth = getAuth();
+    const low = Math.min(auth.userId, otherUserId);
+    const high = Math.max(auth.userId, otherUserId);
+    fetch('/api/inbox/dm:' + low + ':' + high + '/read', {
+        method: 'POST',
+        headers: { Authorization: 'Bearer ' + auth.token }
+    }).catch(function (e) {
+        console.error('Error marking conversation read', e);
+    });
+}
+
+// a busy open conversation is marked read at most once a second, not once per live message
+function scheduleConversationRead(otherUserId) {
+    pendingReadPeerIds.add(otherUserId);
+    if (!readMarkTimer) {
+        readMarkTimer = setTimeout(flushConversationReads, READ_MARK_DELAY_MS);
     }
 }
 
+function flushConversationReads() {
+    clearTimeout(readMarkTimer);
+    readMarkTimer = null;
+    pendingReadPeerIds.forEach(function (otherUserId) {
+        markConversationRead(otherUserId);
+    });
+    pendingReadPeerIds.clear();
+}
+
 function selectUser(userId, username) {
     if (currentPeerId === userId) {
         unreadByUser[userId] = 0;
@@ -160,6 +266,7 @@ function selectUser(userId, username) {
         return;
     }
 
+    flushConversationReads();
     currentPeerId = userId;
     unreadByUser[userId] = 0;
 
@@ -169,7 +276,26 @@ function selectUser(userId, username) {
     closeSidebar();
 }
 
+// returns false for a message already received, e.g. live and again in a reconnect replay
+function noteSeen(message) {
+    if (seenMessageIds.has(message.id)) {
+        return false;
+    }
+    seenMessageIds.add(message.id);
+    if (seenMessageIds.size > SEEN_IDS_LIMIT) {
+        seenMessageIds.delete(seenMessageIds.values().next().value);
+    }
+    if (!lastSeenPrivateId || message.id > lastSeenPrivateId) {
+        lastSeenPrivateId = message.id;
+    }
+    return true;
+}
+
 function handlePrivateQueueMessage(message, authUserId) {
+    if (!noteSeen(message)) {
+        return;
+    }
+
     const senderId = Number(message.senderId);
     const receiverId = Number(message.receiverId);
     const isOwnMessage = senderId === authUserId;
@@ -180,6 +306,9 @@ function handlePrivateQueueMessage(message, authUserId) {
 
     if (isCurrentConversationMessage(message, authUserId) && document.visibilityState === 'visible') {
         showPrivateMessage(message, true);
+        if (!isOwnMessage) {
+            scheduleConversationRead(senderId);
+        }
         return;
     }
 
@@ -188,6 +317,9 @@ function handlePrivateQueueMessage(message, authUserId) {
     }
 
     const otherUserId = senderId;
+    if (otherUserId && !usersById.has(otherUserId)) {
+        updateUser(otherUserId, message.senderUsername, true);
+    }
     if (otherUserId) {
         unreadByUser[otherUserId] = (unreadByUser[otherUserId] || 0) + 1;
         renderUserList();
@@ -195,7 +327,7 @@ function handlePrivateQueueMessage(message, authUserId) {
 }
 
 function connectPrivate() {
-    const socket = new SockJS('/ws');
+    const socket = openChatSocket();
     stompClient = Stomp.over(socket);
 
     const auth = getAuth();
@@ -203,19 +335,43 @@ function connectPrivate() {
     stompClient.connect(
         { Authorization: 'Bearer ' + auth.token },
         function () {
+            reconnectAttempts = 0;
+            stompClient.subscribe('/topic/presence', function (msg) {
+                JSON.parse(msg.body).forEach(handlePresence); // one diff per coalescing window
+            });
+            loadUsers();
             if (auth.userId) {
-                stompClient.subscribe('/queue/user.' + auth.userId, function (msg) {
+                // after a reconnect the server replays only what came after the last message seen
+                const headers = lastSeenPrivateId ? { 'resume-after': String(lastSeenPrivateId) } : {};
+                stompClient.subscribe('/user/queue/messages', function (msg) {
                     const body = JSON.parse(msg.body);
                     handlePrivateQueueMessage(body, auth.userId);
-                });
+                    if (msg.headers['resume-truncated']) {
+                        loadPrivateHistory(); // too much was missed to replay, reload instead
+                    }
+                }, headers);
             }
         },
         function (err) {
             console.error('STOMP error: ', err);
+            scheduleReconnect();
         }
     );
 }
 
+// backoff with jitter, so a restart does not bring every client back at the same moment
+function scheduleReconnect() {
+    if (reconnectTimer) {
+        return;
+    }
+    const delay = Math.min(30000, 1000 * Math.pow(2, reconnectAttempts)) * (0.5 + Math.random() / 2);
+    reconnectAttempts++;
+    reconnectTimer = setTimeout(function () {
+        reconnectTimer = null;
+        connectPrivate();
+    }, delay);
+}
+
 function showPrivateMessage(msg, animate) {
     const auth = getAuth();
     const mine = Number(msg.senderId) === auth.userId;
@@ -226,6 +382,9 @@ function showPrivateMessage(msg, animate) {
     if (animate === false) {
         row.classList.add('instant');
     }
+    if (msg.id) {
+        row.dataset.id = msg.id;
+    }
 
     const bubble = document.createElement('div');
     bubble.className = 'message-bubble';
@@ -247,7 +406,17 @@ function showPrivateMessage(msg, animate) {
 
     bubble.append(meta, content);
     row.appendChild(bubble);
-    box.appendChild(row);
+
+    // replayed messages can arrive after newer live ones, so place rows by id; unsent own rows stay last
+    let next = null;
+    if (msg.id) {
+        let previous = box.lastElementChild;
+        while (previous && previous.dataset.id && Number(previous.dataset.id) > msg.id) {
+            next = previous;
+            previous = previous.previousElementSibling;
+        }
+    }
+    box.insertBefore(row, next);
 
     scrollMessagesToBottom();
 }
@@ -259,6 +428,7 @@ async function loadPrivateHistory() {
 
     unreadByUser[currentPeerId] = 0;
     renderUserList();
+    markConversationRead(currentPeerId);
 
     const box = document.getElementById('privateMessages');
     box.innerHTML = '';
@@ -272,6 +442,7 @@ async function loadPrivateHistory() {
         if (resp.ok) {
             const history = await resp.json();
             history.forEach(function (message) {
+                noteSeen(message);
                 showPrivateMessage(message, false);
             });
             scrollMessagesToBottom();
@@ -305,7 +476,6 @@ function sendPrivateMessage() {
     const chatMessage = {
         roomId: null,
         receiverId: currentPeerId,
-        senderId: auth.userId,
         content: content
     };
 
@@ -349,11 +519,13 @@ window.addEventListener('load', function () {
     document.addEventListener('visibilitychange', function () {
         if (document.visibilityState === 'visible' && currentPeerId) {
             unreadByUser[currentPeerId] = 0;
+            markConversationRead(currentPeerId);
             renderUserList();
+        } else if (document.visibilityState === 'hidden') {
+            flushConversationReads();
         }
     });
+    window.addEventListener('pagehide', flushConversationReads);
 
     connectPrivate();
-    loadUsers();
-    setInterval(loadUsers, 5000);
 });
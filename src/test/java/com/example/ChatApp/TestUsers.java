@@ -0,0 +1,24 @@
+package com.example.ChatApp;
+
+import com.example.ChatApp.entity.User;
+import com.example.ChatApp.repository.UserRepository;
+
+/** Saves users with unique names, so tests sharing one database do not collide. */
+public final class TestUsers {
+
+    private TestUsers() {
+    }
+
+    public static User newUser(UserRepository userRepository, String prefix) {
+        String name = prefix + System.nanoTime();
+        User user = new User();
+        user.setUsername(name);
+        user.setEmail(name + "@example.com");
+        user.setPassword("x");
+        return userRepository.save(user);
+    }
+
+    public static Long newUserId(UserRepository userRepository, String prefix) {
+        return newUser(userRepository, prefix).getId();
+    }
+}
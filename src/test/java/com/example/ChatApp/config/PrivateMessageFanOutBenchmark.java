@@ -0,0 +1,176 @@
+package com.example.ChatApp.config;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.user.DefaultUserDestinationResolver;
+import org.springframework.messaging.simp.user.UserDestinationMessageHandler;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.messaging.DefaultSimpUserRegistry;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One private message delivered to its sender and receiver, with {@code users} connected
+ * users on the simple broker, each with one session. {@code queuePerUser} is the delivery
+ * before user destinations: every user subscribed to {@code /queue/user.{id}} and the message
+ * was published to the sender's and the receiver's queue. {@code userDestination} is the
+ * current path: sessions subscribe to {@code /user/queue/messages}, the message goes to
+ * {@code /user/{id}/queue/messages} and the user registry resolves it to that user's sessions.
+ * Pairs are drawn at random, so most destinations miss the broker's destination cache and
+ * the score shows how subscription matching grows with the number of connected users.
+ * <pre>
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) \
+ *     com.example.ChatApp.config.PrivateMessageFanOutBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrivateMessageFanOutBenchmark {
+
+    @Param({"100", "1000", "10000", "50000"})
+    int users;
+
+    private final LongAdder delivered = new LongAdder();
+    private final SplittableRandom random = new SplittableRandom(42);
+    private final byte[] body = "{\"id\":232035487969280,\"content\":\"hi\"}".getBytes(StandardCharsets.UTF_8);
+
+    private Broker queuePerUser;
+    private Broker userDestination;
+
+    @Setup
+    public void setUp() {
+        queuePerUser = new Broker();
+        userDestination = new Broker();
+        for (int user = 0; user < users; user++) {
+            queuePerUser.connect(user, "/queue/user." + user);
+            userDestination.connect(user, "/user/queue/messages");
+        }
+        // both paths must reach exactly the two sessions
+        long before = delivered.sum();
+        queuePerUser();
+        userDestination();
+        if (delivered.sum() - before != 4) {
+            throw new IllegalStateException("Expected 4 deliveries, got " + (delivered.sum() - before));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        queuePerUser.stop();
+        userDestination.stop();
+    }
+
+    @Benchmark
+    public void queuePerUser() {
+        int sender = random.nextInt(users);
+        int receiver = random.nextInt(users);
+        queuePerUser.template.send("/queue/user." + sender, message());
+        queuePerUser.template.send("/queue/user." + receiver, message());
+    }
+
+    @Benchmark
+    public void userDestination() {
+        int sender = random.nextInt(users);
+        int receiver = random.nextInt(users);
+        userDestination.template.send("/user/" + sender + "/queue/messages", message());
+        userDestination.template.send("/user/" + receiver + "/queue/messages", message());
+    }
+
+    private Message<byte[]> message() {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        return MessageBuilder.createMessage(body, accessor.getMessageHeaders());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PrivateMessageFanOutBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+    /** The simple broker and user destination handling as WebSocketConfig sets them up, without threads. */
+    private final class Broker {
+
+        final ExecutorSubscribableChannel clientInbound = new ExecutorSubscribableChannel();
+        final ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+        final MessageChannel clientOutbound = (message, timeout) -> {
+            if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) == SimpMessageType.MESSAGE) {
+                delivered.increment();
+            }
+            return true;
+        };
+        final DefaultSimpUserRegistry userRegistry = new DefaultSimpUserRegistry();
+        final SimpleBrokerMessageHandler broker;
+        final UserDestinationMessageHandler userDestinations;
+        final SimpMessagingTemplate template = new SimpMessagingTemplate(brokerChannel);
+
+        Broker() {
+            broker = new SimpleBrokerMessageHandler(clientInbound,
+                    new ExecutorSubscribableChannel() {
+                        @Override
+                        public boolean sendInternal(Message<?> message, long timeout) {
+                            return clientOutbound.send(message, timeout);
+                        }
+                    },
+                    brokerChannel, List.of("/topic", "/queue"));
+            userDestinations = new UserDestinationMessageHandler(clientInbound, brokerChannel,
+                    new DefaultUserDestinationResolver(userRegistry));
+            broker.start();
+            userDestinations.start();
+        }
+
+        void connect(int user, String destination) {
+            String sessionId = "s" + user;
+            Principal principal = () -> String.valueOf(user);
+
+            SimpMessageHeaderAccessor connect = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT);
+            connect.setSessionId(sessionId);
+            connect.setUser(principal);
+            Message<byte[]> connectMessage = MessageBuilder.createMessage(new byte[0], connect.getMessageHeaders());
+            clientInbound.send(connectMessage);
+            userRegistry.onApplicationEvent(new SessionConnectedEvent(this, connectMessage, principal));
+
+            SimpMessageHeaderAccessor subscribe = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+            subscribe.setSessionId(sessionId);
+            subscribe.setSubscriptionId("sub-0");
+            subscribe.setDestination(destination);
+            subscribe.setUser(principal);
+            clientInbound.send(MessageBuilder.createMessage(new byte[0], subscribe.getMessageHeaders()));
+        }
+
+        void stop() {
+            userDestinations.stop();
+            broker.stop();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.ChatApp.config;
+
+import com.example.ChatApp.dto.MessageDto;
+import com.example.ChatApp.entity.ChatRoom;
+import com.example.ChatApp.entity.User;
+import com.example.ChatApp.repository.UserRepository;
+import com.example.ChatApp.security.JwtUtil;
+import com.example.ChatApp.service.ChatService;
+import com.example.ChatApp.service.MessageBroadcaster;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.ChatApp.TestUsers.newUser;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "chat.websocket.resume.max-messages=5")
+@ActiveProfiles("render")
+class ResumeSubscriptionTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final WebSocketStompClient stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+
+    @BeforeEach
+    void setUp() {
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(objectMapper);
+        stompClient.setMessageConverter(converter);
+    }
+
+    @AfterEach
+    void tearDown() {
+        stompClient.stop();
+    }
+
+    @Test
+    void resumeReplaysOnlyTheMissedMessagesInOrderBeforeLiveOnes() throws Exception {
+        User alice = newUser(userRepository, "ra");
+        ChatRoom room = chatService.createPublicRoom("resume-" + System.nanoTime());
+        MessageDto seen = chatService.saveMessage(alice.getId(), room.getId(), null, "seen");
+        MessageDto first = chatService.saveMessage(alice.getId(), room.getId(), null, "missed 1");
+        MessageDto second = chatService.saveMessage(alice.getId(), room.getId(), null, "missed 2");
+
+        StompSession session = connect(alice);
+        BlockingQueue<Received> received = subscribe(session, "/topic/room." + room.getId(), seen.getId());
+        session.send("/app/chat.send", Map.of("roomId", room.getId(), "content", "live"));
+
+        List<Received> frames = take(received, 3);
+        assertThat(frames).extracting(frame -> frame.message().getId())
+                .startsWith(first.getId(), second.getId());
+        assertThat(frames.get(2).message().getContent()).isEqualTo("live");
+        assertThat(frames).allSatisfy(frame -> assertThat(frame.truncated()).isFalse());
+    }
+
+    @Test
+    void gapOverMaxMessagesReplaysTheOldestAndFlagsTheLast() throws Exception {
+        User bob = newUser(userRepository, "rb");
+        ChatRoom room = chatService.createPublicRoom("resume-" + System.nanoTime());
+        MessageDto seen = chatService.saveMessage(bob.getId(), room.getId(), null, "seen");
+        List<Long> missed = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            missed.add(chatService.saveMessage(bob.getId(), room.getId(), null, "missed " + i).getId());
+        }
+
+        StompSession session = connect(bob);
+        BlockingQueue<Received> received = subscribe(session, "/topic/room." + room.getId(), seen.getId());
+
+        List<Received> frames = take(received, 5);
+        assertThat(frames).extracting(frame -> frame.message().getId()).isEqualTo(missed.subList(0, 5));
+        assertThat(frames).extracting(Received::truncated).containsExactly(false, false, false, false, true);
+        assertThat(received.poll(500, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    private StompSession connect(User user) throws Exception {
+        StompHeaders connectHeaders = new StompHeaders();
+        connectHeaders.add("Authorization", "Bearer " + jwtUtil.generateToken(user));
+        return stompClient.connectAsync("ws://localhost:" + port + "/ws/websocket",
+                        new WebSocketHttpHeaders(), connectHeaders, new StompSessionHandlerAdapter() { })
+                .get(5, TimeUnit.SECONDS);
+    }
+
+    private BlockingQueue<Received> subscribe(StompSession session, String destination, Long resumeAfter) {
+        BlockingQueue<Received> received = new LinkedBlockingQueue<>();
+        StompHeaders headers = new StompHeaders();
+        headers.setDestination(destination);
+        headers.add(ResumeSubscriptionInterceptor.RESUME_HEADER, String.valueOf(resumeAfter));
+        session.subscribe(headers, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return MessageDto.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                received.add(new Received((MessageDto) payload,
+                        "true".equals(headers.getFirst(MessageBroadcaster.RESUME_TRUNCATED_HEADER))));
+            }
+        });
+        return received;
+    }
+
+
+    private static List<Received> take(BlockingQueue<Received> received, int count) throws InterruptedException {
+        List<Received> frames = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Received frame = received.poll(5, TimeUnit.SECONDS);
+            assertThat(frame).as("frame %d of %d", i + 1, count).isNotNull();
+            frames.add(frame);
+        }
+        return frames;
+    }
+
+    private record Received(MessageDto message, boolean truncated) {
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.ChatApp.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.TextMessage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of delivering one room broadcast to every subscriber, from STOMP encoding to
+ * the session write, as StompSubProtocolHandler does it per session. The stub session
+ * does not encode text to bytes the way the container does for each session, so this
+ * leaves out a cost both paths still pay. Compare
+ * {@code gc.alloc.rate.norm} (bytes/op) of the two paths across room sizes:
+ * <pre>
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) \
+ *     com.example.ChatApp.config.SharedPayloadFanOutBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SharedPayloadFanOutBenchmark {
+
+    @Param({"10", "100", "1000", "5000"})
+    int roomSize;
+
+    private byte[] body;
+    private Map<String, Object>[] plainHeaders;
+    private Map<String, Object>[] sharedHeaders;
+    private SlowConsumerSessionDecorator[] sessions;
+    private final StompEncoder stompEncoder = new StompEncoder();
+    private final SharedPayloadStompEncoder sharedEncoder = new SharedPayloadStompEncoder();
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        // a MessageDto near the 1000 character content limit
+        body = ("{\"id\":232035487969280,\"senderId\":232031882051584,\"senderUsername\":\"alice\","
+                + "\"receiverId\":null,\"roomId\":1,\"content\":\"" + "x".repeat(990) + "\","
+                + "\"timestamp\":\"2026-10-18T15:54:53.155123Z\"}").getBytes(StandardCharsets.UTF_8);
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        Counter dropped = registry.counter("dropped");
+        Counter disconnected = registry.counter("disconnected");
+        plainHeaders = new Map[roomSize];
+        sharedHeaders = new Map[roomSize];
+        sessions = new SlowConsumerSessionDecorator[roomSize];
+        for (int i = 0; i < roomSize; i++) {
+            StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.MESSAGE);
+            accessor.setDestination("/topic/room.1");
+            accessor.setSubscriptionId("sub-0");
+            accessor.setMessageId("session" + i + "-" + i);
+            accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+            plainHeaders[i] = new HashMap<>(accessor.getMessageHeaders());
+            sharedHeaders[i] = new HashMap<>(accessor.getMessageHeaders());
+            sessions[i] = new SlowConsumerSessionDecorator(new StubWebSocketSession("session" + i),
+                    10_000, Integer.MAX_VALUE, WebSocketProperties.SlowConsumerPolicy.DISCONNECT, dropped, disconnected);
+        }
+    }
+
+    @Benchmark
+    public void perSessionFrame() throws IOException {
+        for (int i = 0; i < roomSize; i++) {
+            byte[] frame = stompEncoder.encode(plainHeaders[i], body);
+            sessions[i].sendMessage(new TextMessage(frame));
+        }
+    }
+
+    @Benchmark
+    public void sharedPayload() throws IOException {
+        SharedPayload shared = new SharedPayload(body); // once per broadcast, as MessageBroadcaster does
+        for (int i = 0; i < roomSize; i++) {
+            sharedHeaders[i].put(SharedPayload.HEADER, shared);
+            byte[] head = sharedEncoder.encode(sharedHeaders[i], body);
+            sessions[i].sendMessage(new TextMessage(head));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SharedPayloadFanOutBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
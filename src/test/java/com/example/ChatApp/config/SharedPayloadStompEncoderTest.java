@@ -0,0 +1,123 @@
+package com.example.ChatApp.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.sockjs.transport.SockJsSession;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * What a client receives through the shared-payload path must be byte for byte
+ * the frame the standard encoder would have produced.
+ */
+class SharedPayloadStompEncoderTest {
+
+    private static final byte[] BODY = "{\"content\":\"héllo: wörld\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void websocketSessionGetsHeadersThenSharedBodyAsOneMessage() throws Exception {
+        RecordingSession session = new RecordingSession("ws");
+        SharedPayload shared = new SharedPayload(BODY);
+
+        deliver(session, headers(shared));
+
+        assertThat(session.sent).hasSize(2);
+        assertThat(session.sent.get(0).isLast()).isFalse();
+        assertThat(session.sent.get(1)).isSameAs(shared.tail());
+        assertThat(session.text()).isEqualTo(standardFrame());
+    }
+
+    @Test
+    void sockJsSessionGetsTheJoinedFrame() throws Exception {
+        RecordingSession session = new SockJsRecordingSession("sockjs");
+
+        deliver(session, headers(new SharedPayload(BODY)));
+
+        assertThat(session.sent).hasSize(1);
+        assertThat(session.text()).isEqualTo(standardFrame());
+    }
+
+    @Test
+    void framesWithoutSharedPayloadAreUnchanged() throws Exception {
+        RecordingSession session = new RecordingSession("ws");
+
+        deliver(session, headers(null));
+
+        assertThat(session.sent).hasSize(1);
+        assertThat(session.text()).isEqualTo(standardFrame());
+    }
+
+    // what StompSubProtocolHandler.sendToClient does with the encoder and the session
+    private void deliver(RecordingSession session, Map<String, Object> headers) throws Exception {
+        SlowConsumerSessionDecorator decorator = new SlowConsumerSessionDecorator(session, 10_000, 1024 * 1024,
+                WebSocketProperties.SlowConsumerPolicy.DISCONNECT,
+                meterRegistry.counter("dropped"), meterRegistry.counter("disconnected"));
+        decorator.sendMessage(new TextMessage(new SharedPayloadStompEncoder().encode(headers, BODY)));
+    }
+
+    private String standardFrame() {
+        return new String(new StompEncoder().encode(headers(null), BODY), StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, Object> headers(SharedPayload shared) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.MESSAGE);
+        accessor.setDestination("/topic/room.1");
+        accessor.setSubscriptionId("sub:0\n"); // needs escaping
+        accessor.setMessageId("m-1");
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        Map<String, Object> headers = new HashMap<>(accessor.getMessageHeaders());
+        if (shared != null) {
+            headers.put(SharedPayload.HEADER, shared);
+        }
+        return headers;
+    }
+
+    private static class RecordingSession extends StubWebSocketSession {
+        final List<TextMessage> sent = new ArrayList<>();
+
+        RecordingSession(String id) {
+            super(id);
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) {
+            sent.add((TextMessage) message);
+        }
+
+        String text() {
+            StringBuilder text = new StringBuilder();
+            sent.forEach(message -> text.append(message.getPayload()));
+            return text.toString();
+        }
+    }
+
+    private static class SockJsRecordingSession extends RecordingSession implements SockJsSession {
+
+        SockJsRecordingSession(String id) {
+            super(id);
+        }
+
+        @Override
+        public long getTimeSinceLastActive() {
+            return 0;
+        }
+
+        @Override
+        public void disableHeartbeat() {
+        }
+    }
+}
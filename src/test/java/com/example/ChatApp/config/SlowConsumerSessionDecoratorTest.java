@@ -0,0 +1,192 @@
+package com.example.ChatApp.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Broadcasts to a couple of thousand simulated sessions from a shared outbound pool,
+ * the way the simple broker does, while a few sessions take far longer to write
+ * than the publish interval.
+ */
+class SlowConsumerSessionDecoratorTest {
+
+    private static final int FAST_SESSIONS = 2000;
+    private static final int SLOW_SESSIONS = 5;
+    private static final int MESSAGES = 30;
+    private static final long PUBLISH_INTERVAL_MS = 10;
+    private static final long SLOW_WRITE_MS = 500;
+    private static final int PAYLOAD_BYTES = 100;
+    private static final int BUFFER_LIMIT = 5 * PAYLOAD_BYTES;
+    private static final int SEND_TIME_LIMIT_MS = 5_000;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final long[] publishedAt = new long[MESSAGES];
+    private ExecutorService outboundPool;
+
+    @BeforeEach
+    void startPool() {
+        outboundPool = Executors.newFixedThreadPool(16);
+    }
+
+    @AfterEach
+    void stopPool() {
+        outboundPool.shutdownNow();
+    }
+
+    @Test
+    void dropOldestKeepsFastReadersFastAndBoundsSlowReaders() throws Exception {
+        Harness harness = broadcast(WebSocketProperties.SlowConsumerPolicy.DROP_OLDEST);
+
+        harness.assertFastReadersUnaffected();
+        assertThat(harness.dropped.count()).isPositive();
+        assertThat(harness.disconnected.count()).isZero();
+        for (int i = 0; i < SLOW_SESSIONS; i++) {
+            FakeSession slow = harness.slow.get(i);
+            assertThat(slow.received).hasSizeLessThan(MESSAGES);
+            assertThat(slow.received).contains(MESSAGES - 1); // the newest message always survives
+            assertThat(harness.slowDecorators.get(i).getBufferSize()).isZero();
+            assertThat(slow.closeStatus).isNull();
+        }
+    }
+
+    @Test
+    void disconnectClosesOnlySlowReaders() throws Exception {
+        Harness harness = broadcast(WebSocketProperties.SlowConsumerPolicy.DISCONNECT);
+
+        harness.assertFastReadersUnaffected();
+        assertThat(harness.dropped.count()).isZero();
+        assertThat(harness.disconnected.count()).isEqualTo(SLOW_SESSIONS);
+        for (FakeSession slow : harness.slow) {
+            assertThat(slow.closeStatus).isEqualTo(CloseStatus.SESSION_NOT_RELIABLE);
+        }
+    }
+
+    private Harness broadcast(WebSocketProperties.SlowConsumerPolicy policy) throws Exception {
+        Harness harness = new Harness(policy);
+        for (int i = 0; i < FAST_SESSIONS; i++) {
+            harness.add(new FakeSession("fast-" + i, 0), false);
+        }
+        for (int i = 0; i < SLOW_SESSIONS; i++) {
+            harness.add(new FakeSession("slow-" + i, SLOW_WRITE_MS), true);
+        }
+
+        for (int m = 0; m < MESSAGES; m++) {
+            TextMessage message = payload(m);
+            publishedAt[m] = System.nanoTime();
+            for (SlowConsumerSessionDecorator session : harness.all) {
+                outboundPool.execute(() -> send(session, message));
+            }
+            Thread.sleep(PUBLISH_INTERVAL_MS);
+        }
+        outboundPool.shutdown();
+        assertThat(outboundPool.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+        return harness;
+    }
+
+    private static void send(SlowConsumerSessionDecorator session, TextMessage message) {
+        try {
+            try {
+                session.sendMessage(message);
+            } catch (SessionLimitExceededException ex) {
+                // what SubProtocolWebSocketHandler does with it
+                session.close(ex.getStatus());
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static TextMessage payload(int index) {
+        char[] padding = new char[PAYLOAD_BYTES];
+        Arrays.fill(padding, ' ');
+        String prefix = index + ":";
+        System.arraycopy(prefix.toCharArray(), 0, padding, 0, prefix.length());
+        return new TextMessage(new String(padding));
+    }
+
+    private class Harness {
+        final WebSocketProperties.SlowConsumerPolicy policy;
+        final Counter dropped;
+        final Counter disconnected;
+        final List<SlowConsumerSessionDecorator> all = new ArrayList<>();
+        final List<FakeSession> fast = new ArrayList<>();
+        final List<FakeSession> slow = new ArrayList<>();
+        final List<SlowConsumerSessionDecorator> slowDecorators = new ArrayList<>();
+
+        Harness(WebSocketProperties.SlowConsumerPolicy policy) {
+            this.policy = policy;
+            this.dropped = meterRegistry.counter("dropped", "policy", policy.name());
+            this.disconnected = meterRegistry.counter("disconnected", "policy", policy.name());
+        }
+
+        void add(FakeSession session, boolean isSlow) {
+            SlowConsumerSessionDecorator decorator = new SlowConsumerSessionDecorator(
+                    session, SEND_TIME_LIMIT_MS, BUFFER_LIMIT, policy, dropped, disconnected);
+            all.add(decorator);
+            if (isSlow) {
+                slow.add(session);
+                slowDecorators.add(decorator);
+            } else {
+                fast.add(session);
+            }
+        }
+
+        void assertFastReadersUnaffected() {
+            List<Long> latencies = new ArrayList<>();
+            for (FakeSession session : fast) {
+                assertThat(session.received).hasSize(MESSAGES);
+                assertThat(session.closeStatus).isNull();
+                latencies.addAll(session.latencyNanos);
+            }
+            latencies.sort(null);
+            long p99Ms = TimeUnit.NANOSECONDS.toMillis(latencies.get((int) (latencies.size() * 0.99)));
+            // a fast reader that had to wait behind even one slow write would be over this
+            assertThat(p99Ms).isLessThan(SLOW_WRITE_MS / 2);
+        }
+    }
+
+    private class FakeSession extends StubWebSocketSession {
+        final long writeMillis;
+        final List<Integer> received = new CopyOnWriteArrayList<>();
+        final List<Long> latencyNanos = new CopyOnWriteArrayList<>();
+
+        FakeSession(String id, long writeMillis) {
+            super(id);
+            this.writeMillis = writeMillis;
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) {
+            if (writeMillis > 0) {
+                try {
+                    Thread.sleep(writeMillis);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            String text = ((TextMessage) message).getPayload();
+            int index = Integer.parseInt(text.substring(0, text.indexOf(':')));
+            latencyNanos.add(System.nanoTime() - publishedAt[index]);
+            received.add(index);
+        }
+    }
+}
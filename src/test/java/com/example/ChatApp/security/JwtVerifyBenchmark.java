@@ -0,0 +1,87 @@
+package com.example.ChatApp.security;
+
+import com.example.ChatApp.entity.User;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tokens verified per second by one request's worth of JWT work. {@code perCallKeyAndParser}
+ * is what JwtUtil did before: {@code validateToken} and then {@code getUserIdFromToken}, each
+ * deriving the HMAC key and building a parser before parsing the token again.
+ * {@code cachedVerify} is {@link JwtUtil#verify}, one parse with the key and parser built once.
+ * <pre>
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) \
+ *     com.example.ChatApp.security.JwtVerifyBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Threads(4)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtVerifyBenchmark {
+
+    private static final String SECRET = "benchmark-secret-that-is-long-enough-for-hs256";
+
+    private JwtUtil jwtUtil;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = new JwtUtil(SECRET, 30 * 60 * 1000);
+        User user = new User();
+        user.setId(232031882051584L);
+        user.setUsername("alice");
+        token = jwtUtil.generateToken(user);
+    }
+
+    @Benchmark
+    public long perCallKeyAndParser() {
+        parseWithNewParser(token); // validateToken
+        return Long.parseLong(parseWithNewParser(token).getSubject()); // getUserIdFromToken
+    }
+
+    @Benchmark
+    public long cachedVerify() {
+        return Long.parseLong(jwtUtil.verify(token).orElseThrow().getSubject());
+    }
+
+    private static Claims parseWithNewParser(String token) {
+        Key key = Keys.hmacShaKeyFor(SECRET.getBytes());
+        return Jwts.parserBuilder()
+                .setSigningKey(key)
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtVerifyBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
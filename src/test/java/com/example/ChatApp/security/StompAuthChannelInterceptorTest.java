@@ -0,0 +1,46 @@
+package com.example.ChatApp.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.access.AccessDeniedException;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StompAuthChannelInterceptorTest {
+
+    private final StompAuthChannelInterceptor interceptor = new StompAuthChannelInterceptor(
+            new TokenPrincipalResolver(new JwtUtil("test-secret-that-is-long-enough-for-hs256", 60_000), 10));
+
+    @Test
+    void sendToABrokerDestinationIsRefused() {
+        String forged = "{\"senderId\":1,\"senderUsername\":\"admin\",\"roomId\":1,\"content\":\"hi\"}";
+
+        assertThatThrownBy(() -> interceptor.preSend(send("/topic/room.1", forged), null))
+                .isInstanceOf(AccessDeniedException.class);
+        assertThatThrownBy(() -> interceptor.preSend(send("/queue/private", forged), null))
+                .isInstanceOf(AccessDeniedException.class);
+        assertThatThrownBy(() -> interceptor.preSend(send("/user/bob/queue/private", forged), null))
+                .isInstanceOf(AccessDeniedException.class);
+    }
+
+    @Test
+    void sendToTheApplicationPassesThrough() {
+        Message<byte[]> message = send("/app/chat.send", "{\"roomId\":1,\"content\":\"hi\"}");
+
+        assertThat(interceptor.preSend(message, null)).isSameAs(message);
+    }
+
+    private static Message<byte[]> send(String destination, String body) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SEND);
+        accessor.setDestination(destination);
+        accessor.setSessionId("s1");
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(body.getBytes(StandardCharsets.UTF_8), accessor.getMessageHeaders());
+    }
+}
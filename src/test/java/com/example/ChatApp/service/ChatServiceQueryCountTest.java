@@ -0,0 +1,104 @@
+package com.example.ChatApp.service;
+
+import com.example.ChatApp.dto.MessageDto;
+import com.example.ChatApp.entity.User;
+import com.example.ChatApp.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// measures the database path, so room pages must not be answered from the in-memory tail
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "chat.cache.room-tail.enabled=false"
+})
+@ActiveProfiles("render")
+class ChatServiceQueryCountTest {
+
+    private static final long ROOM_ID = 1L;
+    private static final int SENDERS = 20;
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final List<User> senders = new ArrayList<>();
+
+    @BeforeEach
+    void seedHistory() {
+        String prefix = "qc" + System.nanoTime() + "_";
+        for (int i = 0; i < SENDERS; i++) {
+            User user = new User();
+            user.setUsername(prefix + i);
+            user.setEmail(prefix + i + "@example.com");
+            user.setPassword("x");
+            senders.add(userRepository.save(user));
+        }
+
+        // every message has a different sender, so a lazy sender lookup per row would show up
+        for (int i = 0; i < SENDERS; i++) {
+            chatService.saveMessage(senders.get(i).getId(), ROOM_ID, null, "room " + i);
+        }
+        for (int i = 1; i < SENDERS; i++) {
+            Long from = senders.get(i % 2 == 0 ? 0 : 1).getId();
+            Long to = senders.get(i % 2 == 0 ? 1 : 0).getId();
+            chatService.saveMessage(from, null, to, "dm " + i);
+        }
+    }
+
+    @Test
+    void roomHistoryIsReadWithoutPerMessageLookups() {
+        Statistics statistics = statistics();
+
+        List<MessageDto> page = chatService.getMessagesForRoomDto(ROOM_ID, null, null, 50);
+
+        assertThat(page).hasSizeGreaterThanOrEqualTo(SENDERS);
+        assertThat(page).allSatisfy(m -> assertThat(m.getSenderUsername()).isNotNull());
+        assertThat(statistics.getPrepareStatementCount()).isBetween(1L, 2L);
+    }
+
+    @Test
+    void olderRoomPageIsReadWithoutPerMessageLookups() {
+        List<MessageDto> latest = chatService.getMessagesForRoomDto(ROOM_ID, null, null, 5);
+        Statistics statistics = statistics();
+
+        List<MessageDto> older = chatService.getMessagesForRoomDto(ROOM_ID, latest.get(0).getId(), null, 10);
+
+        assertThat(older).hasSize(10);
+        assertThat(older.get(older.size() - 1).getId()).isLessThan(latest.get(0).getId());
+        assertThat(statistics.getPrepareStatementCount()).isBetween(1L, 2L);
+    }
+
+    @Test
+    void privateHistoryIsReadWithoutPerMessageLookups() {
+        Statistics statistics = statistics();
+
+        List<MessageDto> conversation = chatService.getPrivateMessagesDto(
+                senders.get(0).getId(), senders.get(1).getId());
+
+        assertThat(conversation).hasSize(SENDERS - 1);
+        assertThat(conversation).allSatisfy(m -> assertThat(m.getSenderUsername()).isNotNull());
+        assertThat(statistics.getPrepareStatementCount()).isBetween(1L, 2L);
+    }
+
+    private Statistics statistics() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        return statistics;
+    }
+}
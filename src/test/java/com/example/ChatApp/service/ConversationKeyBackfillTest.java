@@ -0,0 +1,103 @@
+package com.example.ChatApp.service;
+
+import com.example.ChatApp.dto.MessageDto;
+import com.example.ChatApp.entity.Message;
+import com.example.ChatApp.repository.MessageRepository;
+import com.example.ChatApp.repository.UserRepository;
+import com.example.ChatApp.util.TimeOrderedIdGenerator;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.example.ChatApp.TestUsers.newUserId;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "chat.persistence.conversation-backfill.batch-size=7")
+@ActiveProfiles("render")
+class ConversationKeyBackfillTest {
+
+    @Autowired
+    private ConversationKeyBackfill backfill;
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TimeOrderedIdGenerator idGenerator;
+
+    @Test
+    void legacyPrivateMessagesAreKeyedInBatches() {
+        Long alice = newUserId(userRepository, "ka");
+        Long bob = newUserId(userRepository, "kb");
+        Long carol = newUserId(userRepository, "kc");
+        // rows as they were written before conversation_key existed, in both directions
+        List<Long> legacy = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            legacy.add(insertUnkeyed(i % 2 == 0 ? alice : bob, i % 2 == 0 ? bob : alice, "old " + i));
+        }
+        insertUnkeyed(alice, carol, "to carol");
+        MessageDto keyed = chatService.saveMessage(bob, null, alice, "new");
+
+        backfill.run();
+
+        assertThat(backfill.isComplete()).isTrue();
+        assertThat(jdbcTemplate.queryForObject(
+                "select count(*) from messages where receiver_id is not null and conversation_key is null", Long.class))
+                .isZero();
+        List<Long> expected = new ArrayList<>(legacy);
+        expected.add(keyed.getId());
+        assertThat(messageRepository.findConversation(Message.conversationKey(bob, alice)))
+                .extracting(MessageDto::getId)
+                .containsExactlyElementsOf(expected);
+        assertThat(chatService.getPrivateMessagesDto(alice, bob))
+                .extracting(MessageDto::getId)
+                .containsExactlyElementsOf(expected);
+        assertThat(chatService.getPrivateMessagesDto(carol, alice))
+                .extracting(MessageDto::getContent)
+                .containsExactly("to carol");
+    }
+
+    @Test
+    void rowsFromNodesOnTheOldVersionAreKeyedByTheRecheck() throws InterruptedException {
+        Long alice = newUserId(userRepository, "kd");
+        Long bob = newUserId(userRepository, "ke");
+        backfill.run();
+        assertThat(backfill.isComplete()).isTrue();
+
+        // written by a node that does not set the key yet
+        Long late = insertUnkeyed(alice, bob, "from an old node");
+        backfill.recheck();
+        for (int attempt = 0; attempt < 250 && !backfill.isComplete(); attempt++) {
+            Thread.sleep(20);
+        }
+
+        assertThat(backfill.isComplete()).isTrue();
+        assertThat(messageRepository.findConversation(Message.conversationKey(alice, bob)))
+                .extracting(MessageDto::getId)
+                .containsExactly(late);
+    }
+
+    private Long insertUnkeyed(Long senderId, Long receiverId, String content) {
+        long id = idGenerator.nextId();
+        jdbcTemplate.update(
+                "insert into messages (id, sender_id, receiver_id, content, timestamp) values (?, ?, ?, ?, ?)",
+                id, senderId, receiverId, content, Timestamp.from(Instant.now()));
+        return id;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.ChatApp.service;
+
+import com.example.ChatApp.dto.InboxEntryDto;
+import com.example.ChatApp.dto.MessageDto;
+import com.example.ChatApp.entity.ChatRoom;
+import com.example.ChatApp.entity.Message;
+import com.example.ChatApp.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static com.example.ChatApp.TestUsers.newUserId;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@ActiveProfiles("render")
+class InboxServiceTest {
+
+    @Autowired
+    private InboxService inboxService;
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void privateConversationCountsUnreadForTheReceiver() {
+        Long alice = newUserId(userRepository, "ia");
+        Long bob = newUserId(userRepository, "ib");
+        chatService.saveMessage(alice, null, bob, "one");
+        chatService.saveMessage(alice, null, bob, "two");
+        MessageDto last = chatService.saveMessage(alice, null, bob, "three");
+        String key = Message.conversationKey(alice, bob);
+
+        InboxEntryDto bobs = only(inboxService.getInbox(bob, 0));
+        assertThat(bobs.conversationKey()).isEqualTo(key);
+        assertThat(bobs.otherUserId()).isEqualTo(alice);
+        assertThat(bobs.lastMessageId()).isEqualTo(last.getId());
+        assertThat(bobs.lastPreview()).isEqualTo("three");
+        assertThat(bobs.lastSenderId()).isEqualTo(alice);
+        assertThat(bobs.unread()).isEqualTo(3);
+        assertThat(only(inboxService.getInbox(alice, 0)).unread()).isZero();
+
+        inboxService.markRead(bob, key);
+        assertThat(only(inboxService.getInbox(bob, 0)).unread()).isZero();
+
+        // replying reads everything before the reply
+        chatService.saveMessage(alice, null, bob, "four");
+        chatService.saveMessage(bob, null, alice, "reply");
+        assertThat(only(inboxService.getInbox(bob, 0)).unread()).isZero();
+        assertThat(only(inboxService.getInbox(alice, 0)).unread()).isEqualTo(1);
+    }
+
+    @Test
+    void roomJoinsTheInboxOnceReadOrPostedIn() {
+        Long carol = newUserId(userRepository, "ic");
+        Long dave = newUserId(userRepository, "id");
+        ChatRoom room = chatService.createPublicRoom("inbox-" + System.nanoTime());
+        String key = InboxService.roomKey(room.getId());
+
+        chatService.saveMessage(carol, room.getId(), null, "hello room");
+        assertThat(inboxService.getInbox(dave, 0)).isEmpty();
+        inboxService.markRead(dave, key);
+        chatService.saveMessage(carol, room.getId(), null, "x".repeat(300));
+
+        InboxEntryDto daves = only(inboxService.getInbox(dave, 0));
+        assertThat(daves.roomId()).isEqualTo(room.getId());
+        assertThat(daves.title()).isEqualTo(room.getName());
+        assertThat(daves.lastPreview()).hasSize(100);
+        assertThat(daves.unread()).isEqualTo(1);
+        assertThat(only(inboxService.getInbox(carol, 0)).unread()).isZero();
+    }
+
+    @Test
+    void outsidersCannotMarkAConversationRead() {
+        Long erin = newUserId(userRepository, "ie");
+        assertThatThrownBy(() -> inboxService.markRead(erin, Message.conversationKey(erin + 1, erin + 2)))
+                .hasMessage("Conversation not found");
+        assertThatThrownBy(() -> inboxService.markRead(erin, "room:abc"))
+                .hasMessage("Conversation not found");
+    }
+
+    private static InboxEntryDto only(List<InboxEntryDto> inbox) {
+        assertThat(inbox).hasSize(1);
+        return inbox.get(0);
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.ChatApp.service;
+
+import com.example.ChatApp.config.WebSocketProperties;
+import com.example.ChatApp.dto.MessageDto;
+import com.example.ChatApp.entity.ChatRoom;
+import com.example.ChatApp.entity.Message;
+import com.example.ChatApp.repository.UserRepository;
+import com.example.ChatApp.util.MessageLog;
+import com.example.ChatApp.util.TimeOrderedIdGenerator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.example.ChatApp.TestUsers.newUserId;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {
+        "chat.persistence.store=log",
+        "chat.persistence.log.segment-bytes=4096",
+        "chat.persistence.log.replication.batch-size=7",
+        "chat.persistence.log.replication.interval-ms=10",
+        "chat.persistence.log.retention.grace-ms=200"
+})
+@ActiveProfiles("render")
+class LogMessageStoreTest {
+
+    private static Path logDir;
+
+    @DynamicPropertySource
+    static void logDir(DynamicPropertyRegistry registry) throws IOException {
+        logDir = Files.createTempDirectory("message-log");
+        registry.add("chat.persistence.log.dir", logDir::toString);
+    }
+
+    @Autowired
+    private MessageStore messageStore;
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private JpaMessageStore jpaMessageStore;
+
+    @Autowired
+    private TimeOrderedIdGenerator idGenerator;
+
+    @Autowired
+    private WebSocketProperties webSocketProperties;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MessageInserter messageInserter;
+
+    @Test
+    void roomHistoryJoinsTheDatabaseAndTheLog() throws IOException {
+        Long alice = newUserId(userRepository, "la");
+        ChatRoom room = chatService.createPublicRoom("log-" + System.nanoTime());
+        Instant old = Instant.now().minus(1, ChronoUnit.DAYS).truncatedTo(ChronoUnit.MILLIS);
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ids.add(insert(old.plusSeconds(i), alice, room.getId(), null, "stored " + i));
+        }
+        for (int i = 0; i < 40; i++) {
+            ids.add(chatService.saveMessage(alice, room.getId(), null, "logged " + i).getId());
+        }
+
+        assertThat(messageStore).isInstanceOf(LogMessageStore.class);
+        assertThat(walkBack(room.getId())).containsExactlyElementsOf(ids);
+        assertThat(ids(messageStore.roomPage(room.getId(), null, ids.get(2), 10)))
+                .containsExactlyElementsOf(ids.subList(3, 13));
+
+        // replicated rows are in both places and still read once
+        awaitReplicated(ids);
+        assertThat(walkBack(room.getId())).containsExactlyElementsOf(ids);
+        assertThat(ids(messageStore.roomPage(room.getId(), null, ids.get(2), 10)))
+                .containsExactlyElementsOf(ids.subList(3, 13));
+        assertThat(jdbcTemplate.queryForObject(
+                "select message_count from conversation_summaries where conversation_key = ?", Long.class,
+                InboxService.roomKey(room.getId()))).isEqualTo(40);
+
+        // a restart rebuilds the same index from the segments
+        LogMessageStore restarted = new LogMessageStore(jpaMessageStore, idGenerator, webSocketProperties,
+                new SimpleMeterRegistry(), logDir.toString(), 4096);
+        try {
+            assertThat(ids(restarted.roomPage(room.getId(), null, null, 100))).containsExactlyElementsOf(ids);
+        } finally {
+            restarted.close();
+        }
+    }
+
+    @Test
+    void privateHistoryAndCatchUpReadTheLog() {
+        Long alice = newUserId(userRepository, "lb");
+        Long bob = newUserId(userRepository, "lc");
+        Long carol = newUserId(userRepository, "ld");
+        Long stored = insert(Instant.now().minus(1, ChronoUnit.DAYS), bob, null, alice, "stored dm");
+        MessageDto first = chatService.saveMessage(alice, null, bob, "hi bob");
+        MessageDto toCarol = chatService.saveMessage(alice, null, carol, "hi carol");
+        MessageDto reply = chatService.saveMessage(bob, null, alice, "hi alice");
+
+        assertThat(ids(chatService.getPrivateMessagesDto(alice, bob)))
+                .containsExactly(stored, first.getId(), reply.getId());
+        assertThat(ids(chatService.getPrivateMessagesAfter(alice, stored, 10)))
+                .containsExactly(first.getId(), toCarol.getId(), reply.getId());
+        assertThat(ids(chatService.getPrivateMessagesAfter(bob, first.getId(), 10)))
+                .containsExactly(reply.getId());
+
+        awaitReplicated(List.of(first.getId(), toCarol.getId(), reply.getId()));
+        assertThat(ids(chatService.getPrivateMessagesDto(bob, alice)))
+                .containsExactly(stored, first.getId(), reply.getId());
+    }
+
+    @Test
+    void replicatedSegmentsAreDeletedAndTheirMessagesReadFromTheDatabase() throws IOException {
+        Long alice = newUserId(userRepository, "le");
+        ChatRoom room = chatService.createPublicRoom("log-" + System.nanoTime());
+        MessageLog log = ((LogMessageStore) messageStore).messageLog();
+        long start = log.durablePosition();
+        Path startSegment = logDir.resolve(String.format("%020d.log", log.segmentStart(start)));
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 80; i++) {
+            ids.add(chatService.saveMessage(alice, room.getId(), null, "retained " + i).getId());
+        }
+        awaitReplicated(ids);
+
+        for (int attempt = 0; attempt < 500 && log.firstPosition() <= start; attempt++) {
+            sleep();
+        }
+        assertThat(log.firstPosition()).as("segments behind replication deleted").isGreaterThan(start);
+        assertThat(startSegment).doesNotExist();
+
+        // the deleted messages come from the database, the rest still from the log
+        assertThat(walkBack(room.getId())).containsExactlyElementsOf(ids);
+        assertThat(ids(messageStore.roomPage(room.getId(), null, ids.get(0), 10)))
+                .containsExactlyElementsOf(ids.subList(1, 11));
+        assertThat(ids(messageStore.roomPage(room.getId(), null, ids.get(60), 30)))
+                .containsExactlyElementsOf(ids.subList(61, 80));
+    }
+
+    @Test
+    void contentTheDatabaseWouldRejectIsRefusedBeforeItIsLogged() {
+        Long alice = newUserId(userRepository, "lf");
+        ChatRoom room = chatService.createPublicRoom("log-" + System.nanoTime());
+        long end = ((LogMessageStore) messageStore).messageLog().durablePosition();
+
+        assertThatThrownBy(() -> chatService.saveMessage(alice, room.getId(), null, "x".repeat(Message.MAX_CONTENT_LENGTH + 1)))
+                .hasMessageContaining("longer than");
+        assertThatThrownBy(() -> chatService.saveMessage(alice, room.getId(), null, null))
+                .hasMessageContaining("required");
+        assertThat(((LogMessageStore) messageStore).messageLog().durablePosition()).isEqualTo(end);
+        assertThat(chatService.saveMessage(alice, room.getId(), null, "x".repeat(Message.MAX_CONTENT_LENGTH))).isNotNull();
+    }
+
+    @Test
+    void replicationInsertsStopAtTheFirstRejectedMessage() {
+        Long alice = newUserId(userRepository, "lg");
+        ChatRoom room = chatService.createPublicRoom("log-" + System.nanoTime());
+        List<MessageDto> batch = new ArrayList<>();
+        for (String content : List.of("before", "x".repeat(Message.MAX_CONTENT_LENGTH + 1), "after")) {
+            batch.add(new MessageDto(idGenerator.nextId(), alice, "lg", null, room.getId(), content,
+                    Instant.now().truncatedTo(ChronoUnit.MICROS)));
+        }
+
+        assertThat(messageInserter.insertUntilRejected(batch)).isEqualTo(1);
+        // already stored counts as stored, the rejected message still stops the rest
+        assertThat(messageInserter.insertUntilRejected(batch)).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("select count(*) from messages where room_id = ?", Long.class, room.getId()))
+                .isEqualTo(1);
+    }
+
+    // pages of 7 from the newest message back to the first
+    private List<Long> walkBack(Long roomId) {
+        List<Long> walked = new ArrayList<>();
+        Long before = null;
+        while (true) {
+            List<MessageDto> page = messageStore.roomPage(roomId, before, null, 7);
+            if (page.isEmpty()) {
+                return walked;
+            }
+            walked.addAll(0, ids(page));
+            before = page.get(0).getId();
+        }
+    }
+
+    private void awaitReplicated(List<Long> ids) {
+        for (int attempt = 0; attempt < 500; attempt++) {
+            boolean stored = ids.stream().allMatch(id ->
+                    jdbcTemplate.queryForObject("select count(*) from messages where id = ?", Long.class, id) > 0);
+            if (stored) {
+                return;
+            }
+            sleep();
+        }
+        throw new AssertionError("messages were not replicated");
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(20);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Long insert(Instant at, Long senderId, Long roomId, Long receiverId, String content) {
+        long id = TimeOrderedIdGenerator.firstIdAt(at) + 1;
+        jdbcTemplate.update(
+                "insert into messages (id, sender_id, room_id, receiver_id, content, timestamp, conversation_key) values (?, ?, ?, ?, ?, ?, ?)",
+                id, senderId, roomId, receiverId, content, Timestamp.from(at),
+                receiverId != null ? Message.conversationKey(senderId, receiverId) : null);
+        return id;
+    }
+
+    private static List<Long> ids(List<MessageDto> messages) {
+        return messages.stream().map(MessageDto::getId).toList();
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.ChatApp.service;
+
+import com.example.ChatApp.dto.MessageDto;
+import com.example.ChatApp.entity.ChatRoom;
+import com.example.ChatApp.entity.Message;
+import com.example.ChatApp.repository.ArchivedMessageRepository;
+import com.example.ChatApp.repository.MessageRepository;
+import com.example.ChatApp.repository.UserRepository;
+import com.example.ChatApp.util.TimeOrderedIdGenerator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.example.ChatApp.TestUsers.newUserId;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "chat.persistence.archive.enabled=true",
+        "chat.persistence.archive.hot-days=30",
+        "chat.persistence.archive.batch-size=7",
+        "chat.persistence.archive.interval-ms=3600000" // runs only when the test calls it
+})
+@ActiveProfiles("render")
+class MessageArchiverTest {
+
+    @Autowired
+    private MessageArchiver archiver;
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private ArchivedMessageRepository archivedMessageRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void historyReadsSpanBothTiers() {
+        Long alice = newUserId(userRepository, "aa");
+        Long bob = newUserId(userRepository, "ab");
+        ChatRoom room = chatService.createPublicRoom("archive-" + System.nanoTime());
+        Instant old = Instant.now().minus(60, ChronoUnit.DAYS).truncatedTo(ChronoUnit.MILLIS);
+        List<Long> roomIds = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            roomIds.add(insert(old.plusSeconds(i), alice, room.getId(), null, "old " + i));
+        }
+        Long oldDm = insert(old.minusSeconds(2), alice, null, bob, "old dm");
+        Long unkeyedDm = insert(old.minusSeconds(1), bob, null, alice, "not keyed yet");
+        jdbcTemplate.update("update messages set conversation_key = null where id = ?", unkeyedDm);
+        for (int i = 0; i < 3; i++) {
+            roomIds.add(chatService.saveMessage(alice, room.getId(), null, "new " + i).getId());
+        }
+        MessageDto newDm = chatService.saveMessage(bob, null, alice, "new dm");
+
+        assertThat(archiver.archive()).isEqualTo(21);
+        assertThat(archiver.archive()).isZero();
+        assertThat(count("messages", roomIds)).isEqualTo(3);
+        assertThat(count("messages_archive", roomIds)).isEqualTo(20);
+        // private messages wait in the hot table until the backfill keyed them
+        assertThat(count("messages", List.of(unkeyedDm))).isOne();
+        jdbcTemplate.update("update messages set conversation_key = ? where id = ?", Message.conversationKey(alice, bob), unkeyedDm);
+
+        // newest page: the hot tail, then the archive
+        List<MessageDto> latest = chatService.getMessagesForRoomDto(room.getId(), null, null, 10);
+        assertThat(latest).extracting(MessageDto::getId).containsExactlyElementsOf(roomIds.subList(13, 23));
+
+        // paging back continues in the archive
+        List<Long> walked = new ArrayList<>(ids(latest));
+        Long before = latest.get(0).getId();
+        while (true) {
+            List<MessageDto> page = chatService.getMessagesForRoomDto(room.getId(), before, null, 6);
+            if (page.isEmpty()) {
+                break;
+            }
+            walked.addAll(0, ids(page));
+            before = page.get(0).getId();
+        }
+        assertThat(walked).containsExactlyElementsOf(roomIds);
+
+        // a cursor in the archive reads forward into the hot table
+        assertThat(ids(chatService.getMessagesForRoomDto(room.getId(), null, roomIds.get(15), 50)))
+                .containsExactlyElementsOf(roomIds.subList(16, 23));
+
+        assertThat(ids(chatService.getPrivateMessagesDto(alice, bob)))
+                .containsExactly(oldDm, unkeyedDm, newDm.getId());
+    }
+
+    @Test
+    void cutoffBeforeTheIdEpochArchivesAutoIncrementRows() {
+        Long alice = newUserId(userRepository, "ac");
+        ChatRoom room = chatService.createPublicRoom("archive-" + System.nanoTime());
+        Instant cutoff = TimeOrderedIdGenerator.EPOCH.minus(30, ChronoUnit.DAYS);
+        int hotDays = (int) ChronoUnit.DAYS.between(cutoff, Instant.now());
+        MessageArchiver preMigration = new MessageArchiver(messageRepository, archivedMessageRepository,
+                transactionTemplate, new SimpleMeterRegistry(), hotDays, 3600000, 7, 100);
+        long legacyId = ThreadLocalRandom.current().nextLong(1, 1_000_000_000);
+        Long old = insert(legacyId, cutoff.minus(100, ChronoUnit.DAYS), alice, room.getId(), null, "2024");
+        Long recent = insert(legacyId + 1, cutoff.plus(10, ChronoUnit.DAYS), alice, room.getId(), null, "late 2024");
+
+        assertThat(preMigration.archive()).isPositive();
+        assertThat(count("messages_archive", List.of(old))).isOne();
+        assertThat(count("messages", List.of(recent))).isOne();
+    }
+
+    private Long insert(Instant at, Long senderId, Long roomId, Long receiverId, String content) {
+        return insert(TimeOrderedIdGenerator.firstIdAt(at) + 1, at, senderId, roomId, receiverId, content);
+    }
+
+    private Long insert(long id, Instant at, Long senderId, Long roomId, Long receiverId, String content) {
+        jdbcTemplate.update(
+                "insert into messages (id, sender_id, room_id, receiver_id, content, timestamp, conversation_key) values (?, ?, ?, ?, ?, ?, ?)",
+                id, senderId, roomId, receiverId, content, Timestamp.from(at),
+                receiverId != null ? Message.conversationKey(senderId, receiverId) : null);
+        return id;
+    }
+
+    private long count(String table, List<Long> ids) {
+        return ids.stream()
+                .filter(id -> jdbcTemplate.queryForObject("select count(*) from " + table + " where id = ?", Long.class, id) > 0)
+                .count();
+    }
+
+    private static List<Long> ids(List<MessageDto> messages) {
+        return messages.stream().map(MessageDto::getId).toList();
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.ChatApp.service;
+
+import com.example.ChatApp.dto.MessageDto;
+import com.example.ChatApp.repository.UserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.example.ChatApp.TestUsers.newUserId;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("render")
+class MessageExportServiceTest {
+
+    // more than one fetch of MessageRepository.EXPORT_FETCH_SIZE rows
+    private static final int MESSAGES = 1200;
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private MessageExportService messageExportService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void roomIsExportedAsOneJsonLinePerMessageOldestFirst() throws Exception {
+        Long senderId = newUserId(userRepository, "export");
+        Long roomId = chatService.createPublicRoom("export" + System.nanoTime()).getId();
+        List<Long> sent = new ArrayList<>();
+        for (int i = 0; i < MESSAGES; i++) {
+            sent.add(chatService.saveMessage(senderId, roomId, null, "line " + i + "\nwith a newline").getId());
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        messageExportService.writeRoom(roomId, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(lines).hasSize(MESSAGES);
+        assertThat(lines).allMatch(line -> line.startsWith("{\"id\":") && line.endsWith("}"));
+        List<Long> exported = new ArrayList<>();
+        for (String line : lines) {
+            exported.add(objectMapper.readValue(line, MessageDto.class).getId());
+        }
+        assertThat(exported).isEqualTo(sent);
+        assertThat(objectMapper.readValue(lines[0], MessageDto.class).getContent()).isEqualTo("line 0\nwith a newline");
+    }
+
+    @Test
+    void conversationHoldsBothDirectionsOnly() throws Exception {
+        Long alice = newUserId(userRepository, "ea");
+        Long bob = newUserId(userRepository, "eb");
+        Long carol = newUserId(userRepository, "ec");
+        chatService.saveMessage(alice, null, bob, "hi bob");
+        chatService.saveMessage(bob, null, alice, "hi alice");
+        chatService.saveMessage(alice, null, carol, "hi carol");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        messageExportService.writeConversation(alice, bob, out);
+
+        assertThat(out.toString(StandardCharsets.UTF_8).lines()
+                .map(line -> read(line).getContent()))
+                .containsExactly("hi bob", "hi alice");
+    }
+
+    private MessageDto read(String line) {
+        try {
+            return objectMapper.readValue(line, MessageDto.class);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.ChatApp.service;
+
+import com.example.ChatApp.util.TimeOrderedIdGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulk insert of {@value #MESSAGES} messages in one transaction, the JDBC calls Hibernate
+ * makes for each id strategy: with IDENTITY every row is its own statement that returns the
+ * generated key, so nothing can be batched; with {@code @TimeOrderedId} the id is known up
+ * front and rows go out in batches of {@value #BATCH_SIZE} ({@code hibernate.jdbc.batch_size}).
+ * Reports rows per millisecond. Runs against in-memory H2, which has no network round trip;
+ * the gap grows on MySQL, where each unbatched statement is one.
+ * <pre>
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) \
+ *     com.example.ChatApp.service.MessageIdBatchInsertBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageIdBatchInsertBenchmark {
+
+    private static final int MESSAGES = 2000;
+    private static final int BATCH_SIZE = 50;
+    private static final String COLUMNS = "(sender_id bigint not null, room_id bigint, receiver_id bigint, "
+            + "content varchar(1000) not null, timestamp timestamp(6) not null)";
+
+    private final TimeOrderedIdGenerator idGenerator = new TimeOrderedIdGenerator(0);
+    private Connection connection;
+
+    @Setup
+    public void open() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:id-benchmark;DB_CLOSE_DELAY=-1");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("create table identity_messages (id bigint auto_increment primary key, "
+                    + COLUMNS.substring(1));
+            statement.execute("create table assigned_messages (id bigint primary key, " + COLUMNS.substring(1));
+        }
+        connection.setAutoCommit(false);
+    }
+
+    @TearDown(Level.Iteration)
+    public void empty() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("truncate table identity_messages");
+            statement.execute("truncate table assigned_messages");
+        }
+        connection.commit();
+    }
+
+    @TearDown
+    public void close() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public long identityIds() throws SQLException {
+        long last = 0;
+        for (int i = 0; i < MESSAGES; i++) {
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "insert into identity_messages (sender_id, room_id, receiver_id, content, timestamp) values (?, ?, ?, ?, ?)",
+                    Statement.RETURN_GENERATED_KEYS)) {
+                bind(insert, 1, i);
+                insert.executeUpdate();
+                try (ResultSet keys = insert.getGeneratedKeys()) {
+                    keys.next();
+                    last = keys.getLong(1);
+                }
+            }
+        }
+        connection.commit();
+        return last;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public long timeOrderedIds() throws SQLException {
+        long last = 0;
+        try (PreparedStatement insert = connection.prepareStatement(
+                "insert into assigned_messages (id, sender_id, room_id, receiver_id, content, timestamp) values (?, ?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < MESSAGES; i++) {
+                last = idGenerator.nextId();
+                insert.setLong(1, last);
+                bind(insert, 2, i);
+                insert.addBatch();
+                if ((i + 1) % BATCH_SIZE == 0) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+        return last;
+    }
+
+    private static void bind(PreparedStatement insert, int first, int i) throws SQLException {
+        insert.setLong(first, 1);
+        insert.setLong(first + 1, 1);
+        insert.setObject(first + 2, null);
+        insert.setString(first + 3, "message " + i);
+        insert.setTimestamp(first + 4, Timestamp.from(Instant.now()));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(MessageIdBatchInsertBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.ChatApp.service;
+
+import com.example.ChatApp.ChatAppApplication;
+import com.example.ChatApp.dto.MessageDto;
+import com.example.ChatApp.entity.User;
+import com.example.ChatApp.repository.UserRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ChatService#saveMessage} into one room from 8 threads, with the JPA store against
+ * the message log: sends per millisecond, then the latency distribution of a send. Runs the
+ * whole application on the render profile, so the JPA path commits to in-memory H2 and
+ * never waits for a disk; against MySQL it is slower still, while the log path's cost is
+ * the local {@code msync}, shared by every send in a group commit.
+ * <pre>
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) \
+ *     com.example.ChatApp.service.MessageStoreBenchmark
+ * </pre>
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Threads(8)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageStoreBenchmark {
+
+    @Param({"jpa", "log"})
+    String store;
+
+    private ConfigurableApplicationContext context;
+    private ChatService chatService;
+    private Path logDir;
+    private Long senderId;
+    private Long roomId;
+
+    @Setup
+    public void start() throws IOException {
+        logDir = Files.createTempDirectory("message-log-benchmark");
+        context = new SpringApplicationBuilder(ChatAppApplication.class).run(
+                "--spring.profiles.active=render",
+                "--server.port=0",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN",
+                "--logging.level.org.hibernate.SQL=WARN",
+                "--chat.persistence.store=" + store,
+                "--chat.persistence.log.dir=" + logDir);
+        chatService = context.getBean(ChatService.class);
+
+        User user = new User();
+        user.setUsername("bench" + System.nanoTime());
+        user.setEmail(user.getUsername() + "@example.com");
+        user.setPassword("x");
+        senderId = context.getBean(UserRepository.class).save(user).getId();
+        roomId = chatService.createPublicRoom("bench-" + System.nanoTime()).getId();
+    }
+
+    @TearDown
+    public void stop() throws IOException {
+        context.close();
+        FileSystemUtils.deleteRecursively(logDir);
+    }
+
+    @Benchmark
+    public MessageDto send() {
+        return chatService.saveMessage(senderId, roomId, null, "a typical chat message of about sixty characters, give or take");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(MessageStoreBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
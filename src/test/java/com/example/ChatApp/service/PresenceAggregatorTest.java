@@ -0,0 +1,136 @@
+package com.example.ChatApp.service;
+
+import com.example.ChatApp.dto.UserPresenceDto;
+import com.example.ChatApp.util.LocalOnlineUserTracker;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The aggregator on its own: transitions go through a {@link LocalOnlineUserTracker} the way
+ * {@code PresenceService} reports them, {@code flush()} is called by hand in place of the
+ * {@code coalesce-ms} schedule, and published diffs are captured from the template's channel.
+ */
+class PresenceAggregatorTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<Message<?>> published = new ArrayList<>();
+    private final LocalOnlineUserTracker tracker = new LocalOnlineUserTracker();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void transitionsWaitForTheFlushAndGoOutAsOneDiff() throws IOException {
+        PresenceAggregator aggregator = aggregator(500);
+        connect(aggregator, 1L);
+        connect(aggregator, 2L);
+        disconnect(aggregator, 1L);
+        connect(aggregator, 3L);
+
+        assertThat(published).isEmpty();
+        aggregator.flush();
+
+        assertThat(published).hasSize(1);
+        assertThat(diff(0)).containsExactlyInAnyOrder(
+                new UserPresenceDto(2L, "user2", true),
+                new UserPresenceDto(3L, "user3", true));
+
+        // a transition after the flush starts the next window
+        disconnect(aggregator, 2L);
+        assertThat(published).hasSize(1);
+        aggregator.flush();
+        assertThat(published).hasSize(2);
+        assertThat(diff(1)).containsExactly(new UserPresenceDto(2L, "user2", false));
+
+        aggregator.flush();
+        assertThat(published).as("nothing pending, nothing sent").hasSize(2);
+    }
+
+    @Test
+    void evenTransitionCountIsDroppedAsAFlap() throws IOException {
+        PresenceAggregator aggregator = aggregator(500);
+        connect(aggregator, 4L);
+        aggregator.flush();
+        published.clear();
+
+        // reconnect: offline and back online within one window
+        disconnect(aggregator, 4L);
+        connect(aggregator, 4L);
+        // four transitions, still a flap
+        connect(aggregator, 5L);
+        disconnect(aggregator, 5L);
+        connect(aggregator, 5L);
+        disconnect(aggregator, 5L);
+        // three transitions, the last state is sent
+        connect(aggregator, 6L);
+        disconnect(aggregator, 6L);
+        connect(aggregator, 6L);
+        aggregator.flush();
+
+        assertThat(published).hasSize(1);
+        assertThat(diff(0)).containsExactly(new UserPresenceDto(6L, "user6", true));
+        assertThat(meterRegistry.counter("chat.presence.flaps.cancelled").count()).isEqualTo(2);
+        assertThat(meterRegistry.counter("chat.presence.transitions.received").count()).isEqualTo(10);
+    }
+
+    @Test
+    void largeWindowIsSplitIntoDiffsOfAtMostMaxBatch() throws IOException {
+        PresenceAggregator aggregator = aggregator(100);
+        for (long userId = 1; userId <= 250; userId++) {
+            connect(aggregator, userId);
+        }
+        aggregator.flush();
+
+        assertThat(published).hasSize(3);
+        Set<Long> users = new HashSet<>();
+        List<Integer> sizes = new ArrayList<>();
+        for (int i = 0; i < published.size(); i++) {
+            List<UserPresenceDto> diff = diff(i);
+            sizes.add(diff.size());
+            diff.forEach(change -> users.add(change.id()));
+        }
+        assertThat(sizes).containsExactly(100, 100, 50);
+        assertThat(users).hasSize(250);
+        assertThat(meterRegistry.counter("chat.presence.diffs.emitted").count()).isEqualTo(3);
+        assertThat(meterRegistry.counter("chat.presence.changes.emitted").count()).isEqualTo(250);
+    }
+
+    private PresenceAggregator aggregator(int maxBatch) {
+        SimpMessagingTemplate template = new SimpMessagingTemplate((message, timeout) -> {
+            assertThat(SimpMessageHeaderAccessor.getDestination(message.getHeaders()))
+                    .isEqualTo(PresenceService.PRESENCE_TOPIC);
+            published.add(message);
+            return true;
+        });
+        template.setMessageConverter(new MappingJackson2MessageConverter());
+        return new PresenceAggregator(template, tracker, meterRegistry, maxBatch);
+    }
+
+    private void connect(PresenceAggregator aggregator, long userId) {
+        if (tracker.userConnected(userId)) {
+            aggregator.record(userId, "user" + userId);
+        }
+    }
+
+    private void disconnect(PresenceAggregator aggregator, long userId) {
+        if (tracker.userDisconnected(userId)) {
+            aggregator.record(userId, "user" + userId);
+        }
+    }
+
+    private List<UserPresenceDto> diff(int index) throws IOException {
+        return objectMapper.readValue((byte[]) published.get(index).getPayload(), new TypeReference<>() { });
+    }
+}
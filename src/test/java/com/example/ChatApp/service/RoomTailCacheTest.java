@@ -0,0 +1,196 @@
+package com.example.ChatApp.service;
+
+import com.example.ChatApp.config.WebSocketProperties;
+import com.example.ChatApp.dto.MessageDto;
+import com.example.ChatApp.repository.MessageRepository;
+import com.example.ChatApp.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.example.ChatApp.TestUsers.newUserId;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "chat.cache.room-tail.messages-per-room=30"
+})
+@ActiveProfiles("render")
+class RoomTailCacheTest {
+
+    private static final int MESSAGES = 40;
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Long roomId;
+    private Long senderId;
+
+    @BeforeEach
+    void seedRoom() {
+        senderId = newUserId(userRepository, "tail");
+        roomId = chatService.createPublicRoom("tail" + System.nanoTime()).getId();
+
+        for (int i = 0; i < MESSAGES; i++) {
+            chatService.saveMessage(senderId, roomId, null, "m" + i);
+        }
+    }
+
+    @Test
+    void warmRoomIsServedWithoutQueries() {
+        List<MessageDto> latest = chatService.getMessagesForRoomDto(roomId, null, null, 10);
+        List<Long> expectedOlder = ids(fromDatabase(20)).subList(0, 10);
+        Statistics statistics = statistics();
+
+        List<MessageDto> again = chatService.getMessagesForRoomDto(roomId, null, null, 10);
+        List<MessageDto> older = chatService.getMessagesForRoomDto(roomId, latest.get(0).getId(), null, 10);
+        long readStatements = statistics.getPrepareStatementCount();
+        MessageDto sent = chatService.saveMessage(senderId, roomId, null, "new");
+        long sendStatements = statistics.getPrepareStatementCount();
+        List<MessageDto> catchUp = chatService.getMessagesForRoomDto(roomId, null, latest.get(5).getId(), 50);
+
+        assertThat(readStatements).isZero();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(sendStatements);
+        assertThat(ids(again)).isEqualTo(ids(latest));
+        assertThat(ids(older)).isEqualTo(expectedOlder);
+        assertThat(ids(catchUp)).containsExactlyElementsOf(
+                List.of(latest.get(6).getId(), latest.get(7).getId(), latest.get(8).getId(),
+                        latest.get(9).getId(), sent.getId()));
+    }
+
+    @Test
+    void pagesPastTheTailFallBackToTheDatabase() {
+        List<MessageDto> tail = chatService.getMessagesForRoomDto(roomId, null, null, 30);
+        Statistics statistics = statistics();
+
+        List<MessageDto> older = chatService.getMessagesForRoomDto(roomId, tail.get(0).getId(), null, 10);
+
+        assertThat(statistics.getPrepareStatementCount()).isPositive();
+        assertThat(ids(older)).isEqualTo(ids(fromDatabase(MESSAGES)).subList(0, 10));
+    }
+
+    @Test
+    void oneLargeRoomEvictsColdRoomsInOtherShards() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        // 200 bytes per message: 160 overhead plus 20 two-byte chars
+        RoomTailCache cache = new RoomTailCache(new EmptyStore(), Optional.empty(), new WebSocketProperties(),
+                registry, true, 50, 1000, 6000, 4);
+        long id = 1;
+        for (long room = 100; room < 120; room++) {
+            cache.append(message(id++, room));
+        }
+        for (int i = 0; i < 25; i++) {
+            cache.append(message(id++, 1L));
+        }
+
+        assertThat(registry.get("chat.cache.room.tail.bytes").gauge().value()).isLessThanOrEqualTo(6000);
+        assertThat(registry.get("chat.cache.room.tail.evictions").counter().count()).isGreaterThanOrEqualTo(15);
+        assertThat(cache.page(1L, null, null, 50)).hasValueSatisfying(page -> assertThat(page).hasSize(25));
+    }
+
+    @Test
+    void byteBudgetEvictsTheLeastRecentlyUsedRoomsOfTheWholeCache() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        RoomTailCache cache = new RoomTailCache(new EmptyStore(), Optional.empty(), new WebSocketProperties(),
+                registry, true, 50, 1000, 6000, 4);
+        long id = 1;
+        for (long room = 100; room < 120; room++) {
+            cache.append(message(id++, room));
+        }
+        // three rooms of one shard stay cold, the rest are used again; taking one room per shard would miss them
+        Map<Integer, List<Long>> byShard = new HashMap<>();
+        for (long room = 100; room < 120; room++) {
+            byShard.computeIfAbsent(shardOf(room, 4), shard -> new ArrayList<>()).add(room);
+        }
+        List<Long> cold = byShard.values().stream().filter(rooms -> rooms.size() >= 3).findFirst().orElseThrow()
+                .subList(0, 3);
+        for (long room = 100; room < 120; room++) {
+            if (!cold.contains(room)) {
+                cache.page(room, null, null, 50);
+            }
+        }
+        // 20 one-message rooms and 13 messages in room 1 are three messages over the budget
+        for (int i = 0; i < 13; i++) {
+            cache.append(message(id++, 1L));
+        }
+
+        assertThat(registry.get("chat.cache.room.tail.evictions").counter().count()).isEqualTo(3);
+        for (long room = 100; room < 120; room++) {
+            int expected = cold.contains(room) ? 0 : 1;
+            assertThat(cache.page(room, null, null, 50)).as("room %d", room)
+                    .hasValueSatisfying(page -> assertThat(page).hasSize(expected));
+        }
+    }
+
+    // RoomTailCache.shardFor
+    private static int shardOf(long roomId, int shards) {
+        return Math.floorMod(Long.hashCode(roomId * 0x9E3779B97F4A7C15L), shards);
+    }
+
+    private static MessageDto message(long id, Long roomId) {
+        return new MessageDto(id, 1L, null, null, roomId, "x".repeat(20), Instant.ofEpochMilli(id));
+    }
+
+    private List<MessageDto> fromDatabase(int newest) {
+        List<MessageDto> messages = new ArrayList<>(messageRepository.findLatestInRoom(roomId, PageRequest.of(0, newest)));
+        Collections.reverse(messages);
+        return messages;
+    }
+
+    private static List<Long> ids(List<MessageDto> messages) {
+        return messages.stream().map(MessageDto::getId).toList();
+    }
+
+    private Statistics statistics() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        return statistics;
+    }
+
+    private static final class EmptyStore implements MessageStore {
+
+        @Override
+        public MessageDto append(Long senderId, String senderUsername, Long roomId, Long receiverId, String content) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<MessageDto> roomPage(Long roomId, Long before, Long after, int limit) {
+            return List.of();
+        }
+
+        @Override
+        public List<MessageDto> conversation(Long userA, Long userB) {
+            return List.of();
+        }
+
+        @Override
+        public List<MessageDto> privateAfter(Long userId, Long after, int limit) {
+            return List.of();
+        }
+    }
+}
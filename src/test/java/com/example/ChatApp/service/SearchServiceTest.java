@@ -0,0 +1,181 @@
+package com.example.ChatApp.service;
+
+import com.example.ChatApp.dto.MessageDto;
+import com.example.ChatApp.dto.SearchPageDto;
+import com.example.ChatApp.entity.ChatRoom;
+import com.example.ChatApp.repository.UserRepository;
+import com.example.ChatApp.util.TimeOrderedIdGenerator;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static com.example.ChatApp.TestUsers.newUserId;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {
+        "chat.search.rebuild.batch-size=7",
+        "chat.search.max-candidates=30"
+})
+@ActiveProfiles("render")
+class SearchServiceTest {
+
+    @Autowired
+    private SearchService searchService;
+
+    @Autowired
+    private SearchIndexRebuild searchIndexRebuild;
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TimeOrderedIdGenerator idGenerator;
+
+    @Test
+    void matchesMessagesWithEveryTermWithinTheRoom() {
+        Long alice = newUserId(userRepository, "sa");
+        ChatRoom room = newRoom();
+        ChatRoom other = newRoom();
+        MessageDto twice = chatService.saveMessage(alice, room.getId(), null, "Deploy the release, deploy it tonight");
+        MessageDto once = chatService.saveMessage(alice, room.getId(), null, "deploy after the release notes");
+        chatService.saveMessage(alice, room.getId(), null, "release notes are up");
+        chatService.saveMessage(alice, other.getId(), null, "deploy the release in the other room");
+
+        List<MessageDto> found = await(() -> search(alice, "RELEASE deploy", room.getId(), null, 0, 0).messages(), 2);
+
+        assertThat(found).extracting(MessageDto::getId).containsExactly(twice.getId(), once.getId());
+    }
+
+    @Test
+    void rareTermFindsOldMessagesPastTheCandidateLimitOfCommonOnes() {
+        Long alice = newUserId(userRepository, "sg");
+        ChatRoom room = newRoom();
+        MessageDto needle = chatService.saveMessage(alice, room.getId(), null, "status update with the needle");
+        for (int i = 0; i < 40; i++) {
+            chatService.saveMessage(alice, room.getId(), null, "status update " + i);
+        }
+        await(() -> search(alice, "status", room.getId(), null, 0, 100).messages(), 30);
+
+        assertThat(search(alice, "update NEEDLE status", room.getId(), null, 0, 100).messages())
+                .extracting(MessageDto::getId).containsExactly(needle.getId());
+        // only the common term: the newest max-candidates of its postings
+        assertThat(search(alice, "status", room.getId(), null, 0, 100).messages())
+                .hasSize(30)
+                .extracting(MessageDto::getId).doesNotContain(needle.getId());
+    }
+
+    @Test
+    void documentFrequenciesFollowTheIndex() throws InterruptedException {
+        Long alice = newUserId(userRepository, "sh");
+        ChatRoom room = newRoom();
+        String scopeKey = InboxService.roomKey(room.getId());
+        for (int i = 0; i < 5; i++) {
+            chatService.saveMessage(alice, room.getId(), null, i % 2 == 0 ? "retro retro board" : "retro");
+        }
+        await(() -> search(alice, "retro", room.getId(), null, 0, 100).messages(), 5);
+
+        assertThat(documents("retro", scopeKey)).isEqualTo(5);
+        assertThat(documents("board", scopeKey)).isEqualTo(3);
+
+        searchIndexRebuild.rebuild();
+
+        assertThat(documents("retro", scopeKey)).isEqualTo(5);
+        assertThat(documents("board", scopeKey)).isEqualTo(3);
+    }
+
+    @Test
+    void pagesThroughResults() {
+        Long alice = newUserId(userRepository, "sb");
+        ChatRoom room = newRoom();
+        for (int i = 0; i < 25; i++) {
+            chatService.saveMessage(alice, room.getId(), null, "standup " + i);
+        }
+        await(() -> search(alice, "standup", room.getId(), null, 0, 100).messages(), 25);
+
+        SearchPageDto first = search(alice, "standup", room.getId(), null, 0, 10);
+        SearchPageDto last = search(alice, "standup", room.getId(), null, 20, 10);
+
+        assertThat(first.messages()).hasSize(10);
+        assertThat(first.nextOffset()).isEqualTo(10);
+        assertThat(first.messages().get(0).getContent()).isEqualTo("standup 24"); // equal scores, newest first
+        assertThat(last.messages()).hasSize(5);
+        assertThat(last.nextOffset()).isNull();
+    }
+
+    @Test
+    void conversationScopeOnlySeesThatConversation() {
+        Long alice = newUserId(userRepository, "sc");
+        Long bob = newUserId(userRepository, "sd");
+        Long carol = newUserId(userRepository, "se");
+        MessageDto toBob = chatService.saveMessage(alice, null, bob, "the secret password");
+        chatService.saveMessage(alice, null, carol, "another secret");
+
+        List<MessageDto> found = await(() -> search(bob, "secret", null, alice, 0, 0).messages(), 1);
+
+        assertThat(found).extracting(MessageDto::getId).containsExactly(toBob.getId());
+        assertThatThrownBy(() -> search(bob, "secret", null, null, 0, 0))
+                .hasMessage("Search either a room or a conversation");
+    }
+
+    @Test
+    void rebuildIndexesExistingMessages() throws InterruptedException {
+        Long alice = newUserId(userRepository, "sf");
+        ChatRoom room = newRoom();
+        for (int i = 0; i < 20; i++) {
+            // rows written without going through the indexer
+            jdbcTemplate.update("insert into messages (id, sender_id, room_id, content, timestamp) values (?, ?, ?, ?, ?)",
+                    idGenerator.nextId(), alice, room.getId(), "archived meeting " + i, Timestamp.from(Instant.now()));
+        }
+        assertThat(search(alice, "meeting", room.getId(), null, 0, 100).messages()).isEmpty();
+
+        assertThat(searchIndexRebuild.rebuild()).isGreaterThanOrEqualTo(20);
+
+        assertThat(search(alice, "meeting", room.getId(), null, 0, 100).messages()).hasSize(20);
+    }
+
+    private long documents(String term, String scopeKey) {
+        return jdbcTemplate.queryForObject("select documents from search_term_counts where term = ? and scope_key = ?",
+                Long.class, term, scopeKey);
+    }
+
+    private SearchPageDto search(Long userId, String query, Long roomId, Long otherUserId, int offset, int limit) {
+        return searchService.search(userId, query, roomId, otherUserId, offset, limit);
+    }
+
+    // indexing is asynchronous
+    private static List<MessageDto> await(Supplier<List<MessageDto>> search, int expected) {
+        long deadline = System.currentTimeMillis() + 5000;
+        List<MessageDto> found = search.get();
+        while (found.size() < expected && System.currentTimeMillis() < deadline) {
+            sleep();
+            found = search.get();
+        }
+        return found;
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(20);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private ChatRoom newRoom() {
+        return chatService.createPublicRoom("search-" + System.nanoTime());
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.ChatApp.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Several trackers in one JVM sharing an in-memory {@link PresenceStore}, driven by a fake
+ * clock one heartbeat interval at a time.
+ */
+class ClusterOnlineUserTrackerTest {
+
+    private static final long HEARTBEAT_MS = 1000;
+    private static final long EXPIRY_MS = 5000;
+
+    @Test
+    void nodesConvergeWithinTwoHeartbeats() {
+        Cluster cluster = new Cluster(3);
+        cluster.rounds(1);
+
+        Set<Long> expected = new HashSet<>();
+        for (long userId = 1; userId <= 3000; userId++) {
+            cluster.node((int) (userId % 3)).userConnected(userId);
+            expected.add(userId);
+        }
+        int rounds = cluster.roundsUntilConverged(expected);
+
+        assertThat(rounds).as("heartbeats of %d ms to converge", HEARTBEAT_MS).isLessThanOrEqualTo(2);
+        // every user is reported exactly once, by the leader
+        assertThat(cluster.reported).hasSize(expected.size());
+        assertThat(new HashSet<>(cluster.reported)).isEqualTo(expected);
+    }
+
+    @Test
+    void userStaysOnlineUntilTheLastNodeDropsThem() {
+        Cluster cluster = new Cluster(2);
+        cluster.rounds(1);
+
+        assertThat(cluster.node(1).userConnected(7L)).isFalse(); // node 1 does not publish
+        assertThat(cluster.node(0).userConnected(7L)).isTrue();
+        cluster.rounds(2);
+        assertThat(cluster.node(0).userDisconnected(7L)).isFalse(); // still on node 1
+        cluster.rounds(2);
+        assertThat(cluster.node(0).getOnlineUsers()).containsExactly(7L);
+
+        cluster.node(1).userDisconnected(7L);
+        assertThat(cluster.roundsUntilConverged(Set.of())).isLessThanOrEqualTo(2);
+        assertThat(cluster.reported).containsExactly(7L, 7L); // online, then offline
+    }
+
+    @Test
+    void usersOfADeadNodeExpire() {
+        Cluster cluster = new Cluster(3);
+        cluster.rounds(1);
+        for (long userId = 1; userId <= 300; userId++) {
+            cluster.node((int) (userId % 3)).userConnected(userId);
+        }
+        cluster.rounds(2);
+        cluster.reported.clear();
+
+        // node 0 is the leader; node 1 takes over publishing once it is gone
+        cluster.kill(0);
+        Set<Long> survivors = new HashSet<>();
+        for (long userId = 1; userId <= 300; userId++) {
+            if (userId % 3 != 0) {
+                survivors.add(userId);
+            }
+        }
+        int rounds = cluster.roundsUntilConverged(survivors);
+
+        assertThat(rounds * HEARTBEAT_MS).isLessThanOrEqualTo(EXPIRY_MS + HEARTBEAT_MS);
+        assertThat(cluster.reported).hasSize(100).allMatch(userId -> userId % 3 == 0);
+        assertThat(cluster.store.entries).doesNotContainKey(0);
+    }
+
+    @Test
+    void restartedNodeReplacesItsStaleEntry() {
+        Cluster cluster = new Cluster(2);
+        cluster.rounds(1);
+        cluster.node(1).userConnected(5L);
+        cluster.rounds(2);
+
+        cluster.restart(1);
+        cluster.node(1).userConnected(6L);
+
+        assertThat(cluster.roundsUntilConverged(Set.of(6L))).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    void replicatedEntryIsThePackedIds() {
+        int users = 100_000;
+        int nodes = 3;
+        Cluster cluster = new Cluster(nodes);
+        for (long userId = 1; userId <= users; userId++) {
+            cluster.node((int) (userId % nodes)).userConnected(userId);
+        }
+        cluster.rounds(2);
+
+        assertThat(cluster.node(2).getOnlineUsers()).hasSize(users);
+        long storedBytes = cluster.store.entries.values().stream().mapToLong(e -> e.users().length * 8L).sum();
+        assertThat(storedBytes / users).isEqualTo(8);
+    }
+
+    private static final class Cluster {
+
+        final InMemoryPresenceStore store = new InMemoryPresenceStore();
+        final AtomicLong clock = new AtomicLong();
+        final List<Long> reported = new ArrayList<>();
+        final List<ClusterOnlineUserTracker> nodes = new ArrayList<>();
+        final Set<Integer> dead = new HashSet<>();
+
+        Cluster(int size) {
+            for (int i = 0; i < size; i++) {
+                nodes.add(start(i));
+            }
+        }
+
+        ClusterOnlineUserTracker node(int nodeId) {
+            return nodes.get(nodeId);
+        }
+
+        void kill(int nodeId) {
+            dead.add(nodeId);
+        }
+
+        // a crash: no leave(), the new process starts without users
+        void restart(int nodeId) {
+            nodes.set(nodeId, start(nodeId));
+        }
+
+        void rounds(int count) {
+            for (int i = 0; i < count; i++) {
+                clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(HEARTBEAT_MS));
+                for (int nodeId = 0; nodeId < nodes.size(); nodeId++) {
+                    if (!dead.contains(nodeId)) {
+                        nodes.get(nodeId).heartbeat();
+                    }
+                }
+            }
+        }
+
+        int roundsUntilConverged(Set<Long> expected) {
+            for (int round = 1; round <= 20; round++) {
+                rounds(1);
+                boolean converged = true;
+                for (int nodeId = 0; nodeId < nodes.size(); nodeId++) {
+                    if (!dead.contains(nodeId) && !nodes.get(nodeId).getOnlineUsers().equals(expected)) {
+                        converged = false;
+                    }
+                }
+                if (converged) {
+                    return round;
+                }
+            }
+            throw new AssertionError("cluster did not converge");
+        }
+
+        private ClusterOnlineUserTracker start(int nodeId) {
+            // transitions the tracker returns are published by PresenceService, remote ones arrive here
+            ClusterOnlineUserTracker reporting = new ClusterOnlineUserTracker(store, nodeId, EXPIRY_MS, clock::get) {
+                @Override
+                public synchronized boolean userConnected(long userId) {
+                    return report(super.userConnected(userId), userId);
+                }
+
+                @Override
+                public synchronized boolean userDisconnected(long userId) {
+                    return report(super.userDisconnected(userId), userId);
+                }
+            };
+            reporting.onRemoteTransition(reported::add);
+            return reporting;
+        }
+
+        private boolean report(boolean changed, long userId) {
+            if (changed) {
+                reported.add(userId);
+            }
+            return changed;
+        }
+    }
+}
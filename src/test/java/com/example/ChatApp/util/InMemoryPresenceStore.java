@@ -0,0 +1,48 @@
+package com.example.ChatApp.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** The {@code presence_nodes} table as a map, for trackers of several nodes in one JVM. */
+final class InMemoryPresenceStore implements PresenceStore {
+
+    final Map<Integer, Entry> entries = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean heartbeat(int nodeId, long beat, long version) {
+        Entry entry = entries.get(nodeId);
+        if (entry == null || entry.version != version) {
+            return false;
+        }
+        entries.put(nodeId, new Entry(beat, version, entry.users));
+        return true;
+    }
+
+    @Override
+    public void write(int nodeId, long beat, long version, long[] users) {
+        entries.put(nodeId, new Entry(beat, version, users.clone()));
+    }
+
+    @Override
+    public List<NodeHeartbeat> heartbeats() {
+        List<NodeHeartbeat> heartbeats = new ArrayList<>();
+        entries.forEach((nodeId, entry) -> heartbeats.add(new NodeHeartbeat(nodeId, entry.beat, entry.version)));
+        return heartbeats;
+    }
+
+    @Override
+    public long[] users(int nodeId) {
+        Entry entry = entries.get(nodeId);
+        return entry != null ? entry.users.clone() : new long[0];
+    }
+
+    @Override
+    public void remove(int nodeId) {
+        entries.remove(nodeId);
+    }
+
+    record Entry(long beat, long version, long[] users) {
+    }
+}
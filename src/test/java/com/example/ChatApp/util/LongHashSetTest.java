@@ -0,0 +1,54 @@
+package com.example.ChatApp.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LongHashSetTest {
+
+    @Test
+    void matchesHashSetUnderRandomAddsAndRemoves() {
+        Random random = new Random(42);
+        LongHashSet set = new LongHashSet();
+        Set<Long> expected = new HashSet<>();
+
+        for (int i = 0; i < 200_000; i++) {
+            // a narrow key range keeps probe runs long and removals frequent; 0 is a key too
+            long key = random.nextInt(5_000) - 100;
+            if (random.nextBoolean()) {
+                assertThat(set.add(key)).isEqualTo(expected.add(key));
+            } else {
+                assertThat(set.remove(key)).isEqualTo(expected.remove(key));
+            }
+        }
+
+        assertThat(set.size()).isEqualTo(expected.size());
+        for (long key = -100; key < 4_900; key++) {
+            assertThat(set.contains(key)).as("key %d", key).isEqualTo(expected.contains(key));
+        }
+        assertThat(set.toArray()).containsExactlyInAnyOrder(expected.stream().mapToLong(Long::longValue).toArray());
+    }
+
+    @Test
+    void snapshotsAreOrderedAndOnlyRebuiltAfterAChange() {
+        ConcurrentLongSet set = new ConcurrentLongSet(4);
+        set.add(30);
+        set.add(10);
+        set.add(20);
+
+        LongSetSnapshot first = set.snapshot();
+        assertThat(set.snapshot()).isSameAs(first);
+        assertThat(first).containsExactly(10L, 20L, 30L);
+        assertThat(first.indexAfter(10)).isEqualTo(1);
+        assertThat(first.indexAfter(15)).isEqualTo(1);
+        assertThat(first.indexAfter(30)).isEqualTo(3);
+
+        set.remove(20);
+        assertThat(set.snapshot()).containsExactly(10L, 30L);
+        assertThat(first).containsExactly(10L, 20L, 30L);
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.ChatApp.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LongIntCounterMapTest {
+
+    @Test
+    void matchesBoxedCountsUnderRandomChurn() {
+        Random random = new Random(7);
+        LongIntCounterMap counts = new LongIntCounterMap(4);
+        Map<Long, Integer> expected = new HashMap<>();
+
+        for (int i = 0; i < 200_000; i++) {
+            long key = random.nextInt(3_000);
+            if (random.nextInt(3) > 0) {
+                assertThat(counts.increment(key)).isEqualTo(expected.merge(key, 1, Integer::sum));
+            } else {
+                Integer before = expected.get(key);
+                int remaining = counts.decrement(key);
+                if (before == null) {
+                    assertThat(remaining).isEqualTo(-1);
+                } else {
+                    assertThat(remaining).isEqualTo(before - 1);
+                    expected.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null);
+                }
+            }
+        }
+
+        assertThat(counts.size()).isEqualTo(expected.size());
+        for (long key = 0; key < 3_000; key++) {
+            assertThat(counts.get(key)).as("key %d", key).isEqualTo(expected.getOrDefault(key, 0));
+        }
+    }
+
+    @Test
+    void countsOfTheSameKeyFromManyThreadsAddUp() throws InterruptedException {
+        LongIntCounterMap counts = new LongIntCounterMap();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    counts.increment(i % 100);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(counts.size()).isEqualTo(100);
+        assertThat(counts.get(0)).isEqualTo(800);
+        assertThat(counts.get(99)).isEqualTo(800);
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.ChatApp.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Crash recovery of {@link MessageLog}. Reopening a directory that another instance still has
+ * open stands in for a restart after the process died; damage is written into the segment
+ * files the way a torn write or a bad sector would leave them.
+ */
+class MessageLogTest {
+
+    private static final int SEGMENT_BYTES = 256;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void concurrentAppendsSurviveAReopenInOrder() throws Exception {
+        Recorded written = new Recorded();
+        MessageLog log = MessageLog.open(dir, 64 * 1024, written);
+        ExecutorService senders = Executors.newFixedThreadPool(8);
+        List<Future<?>> sends = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            String text = "message " + i;
+            sends.add(senders.submit(() -> log.awaitDurable(log.append(bytes(text)))));
+        }
+        for (Future<?> send : sends) {
+            send.get();
+        }
+        senders.shutdown();
+        log.close();
+
+        Recorded recovered = new Recorded();
+        MessageLog.open(dir, 64 * 1024, recovered).close();
+
+        assertThat(written.texts).hasSize(400).doesNotHaveDuplicates();
+        assertThat(recovered.texts).containsExactlyElementsOf(written.texts);
+        assertThat(recovered.positions).isSorted();
+    }
+
+    @Test
+    void recordsContinueAcrossSegments() throws IOException {
+        MessageLog log = MessageLog.open(dir, SEGMENT_BYTES, (position, payload) -> {
+        });
+        List<String> texts = appendAll(log, 50);
+        log.close();
+
+        Recorded recovered = new Recorded();
+        MessageLog reopened = MessageLog.open(dir, SEGMENT_BYTES, recovered);
+        List<String> replayed = List.copyOf(recovered.texts);
+        long last = recovered.positions.get(recovered.positions.size() - 1);
+        long next = reopened.append(bytes("after reopen"));
+        reopened.awaitDurable(next);
+
+        assertThat(segmentFiles()).hasSizeGreaterThan(3);
+        assertThat(replayed).containsExactlyElementsOf(texts);
+        assertThat(next).isGreaterThan(last);
+        assertThat(text(reopened.read(next))).isEqualTo("after reopen");
+        reopened.close();
+    }
+
+    @Test
+    void wholeSegmentsBeforeAPositionAreDeletedButNeverTheActiveOne() throws IOException {
+        Recorded written = new Recorded();
+        MessageLog log = MessageLog.open(dir, SEGMENT_BYTES, written);
+        List<String> texts = appendAll(log, 50);
+        int segments = segmentFiles().size();
+        long middle = written.positions.get(25);
+        long last = written.positions.get(49);
+
+        // the segment holding the position stays
+        assertThat(log.deleteSegmentsBefore(middle)).isEqualTo(segments - segmentFiles().size());
+        assertThat(log.firstPosition()).isEqualTo(log.segmentStart(middle));
+        assertThat(text(log.read(middle))).isEqualTo(texts.get(25));
+
+        log.deleteSegmentsBefore(Long.MAX_VALUE);
+        assertThat(segmentFiles()).hasSize(1);
+        assertThat(log.firstPosition()).isEqualTo(log.segmentStart(last));
+        long next = log.append(bytes("after delete"));
+        log.awaitDurable(next);
+        log.close();
+
+        Recorded recovered = new Recorded();
+        MessageLog.open(dir, SEGMENT_BYTES, recovered).close();
+        assertThat(recovered.positions.get(0)).isEqualTo(log.segmentStart(last));
+        assertThat(recovered.texts).endsWith(texts.get(49), "after delete");
+    }
+
+    @Test
+    void unclosedLogKeepsEverythingThatWasDurable() throws IOException {
+        MessageLog crashed = MessageLog.open(dir, SEGMENT_BYTES, (position, payload) -> {
+        });
+        List<String> texts = appendAll(crashed, 30);
+        // no close(): the process is gone, its mapped pages are what the next start finds
+
+        Recorded recovered = new Recorded();
+        MessageLog.open(dir, SEGMENT_BYTES, recovered).close();
+
+        assertThat(recovered.texts).containsExactlyElementsOf(texts);
+    }
+
+    @Test
+    void tornRecordAtTheEndIsDropped() throws IOException {
+        Recorded written = new Recorded();
+        MessageLog log = MessageLog.open(dir, SEGMENT_BYTES, written);
+        List<String> texts = appendAll(log, 10);
+        long end = log.durablePosition();
+        log.close();
+
+        // a record whose header made it to disk but whose payload did not
+        ByteBuffer header = ByteBuffer.allocate(12).putInt(40).putInt(0x12345678).putInt(0x41414141).flip();
+        writeAt(end, header);
+
+        Recorded recovered = new Recorded();
+        MessageLog reopened = MessageLog.open(dir, SEGMENT_BYTES, recovered);
+        List<String> replayed = List.copyOf(recovered.texts);
+        long next = reopened.append(bytes("replaces the torn one"));
+        reopened.close();
+        Recorded again = new Recorded();
+        MessageLog.open(dir, SEGMENT_BYTES, again).close();
+
+        assertThat(replayed).containsExactlyElementsOf(texts);
+        assertThat(next).isEqualTo(end);
+        assertThat(again.texts).hasSize(11).endsWith("replaces the torn one");
+    }
+
+    @Test
+    void corruptRecordEndsTheLogAndLaterSegmentsAreDeleted() throws IOException {
+        Recorded written = new Recorded();
+        MessageLog log = MessageLog.open(dir, SEGMENT_BYTES, written);
+        List<String> texts = appendAll(log, 40);
+        log.close();
+        int segments = segmentFiles().size();
+
+        // flip a payload byte of the fifth record
+        long position = written.positions.get(4);
+        writeAt(position + 8, ByteBuffer.wrap(new byte[]{'X'}));
+
+        Recorded recovered = new Recorded();
+        MessageLog.open(dir, SEGMENT_BYTES, recovered).close();
+
+        assertThat(recovered.texts).containsExactlyElementsOf(texts.subList(0, 4));
+        assertThat(segmentFiles()).hasSize(1).hasSizeLessThan(segments);
+    }
+
+    private static List<String> appendAll(MessageLog log, int count) {
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String text = "record " + i + " " + "x".repeat(i % 7);
+            log.awaitDurable(log.append(bytes(text)));
+            texts.add(text);
+        }
+        return texts;
+    }
+
+    private void writeAt(long position, ByteBuffer data) throws IOException {
+        long base = position - position % SEGMENT_BYTES;
+        Path segment = dir.resolve(String.format("%020d.log", base));
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(data, position - base);
+        }
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(path -> path.toString().endsWith(".log")).toList();
+        }
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(ByteBuffer payload) {
+        byte[] bytes = new byte[payload.remaining()];
+        payload.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static final class Recorded implements MessageLog.RecordListener {
+
+        final List<Long> positions = new ArrayList<>();
+        final List<String> texts = new ArrayList<>();
+
+        @Override
+        public synchronized void accept(long position, ByteBuffer payload) {
+            positions.add(position);
+            texts.add(text(payload));
+        }
+    }
+}
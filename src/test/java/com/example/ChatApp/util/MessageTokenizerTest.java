@@ -0,0 +1,25 @@
+package com.example.ChatApp.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MessageTokenizerTest {
+
+    @Test
+    void splitsOnNonLetters() {
+        assertThat(MessageTokenizer.terms("Hello, hello WORLD! a 42 x-ray Größe"))
+                .containsExactly(
+                        Map.entry("hello", 2), Map.entry("world", 1), Map.entry("42", 1),
+                        Map.entry("ray", 1), Map.entry("größe", 1));
+    }
+
+    @Test
+    void cutsLongTerms() {
+        String longTerm = "x".repeat(40);
+        assertThat(MessageTokenizer.terms(longTerm + " " + longTerm.substring(0, 35)))
+                .containsExactly(Map.entry("x".repeat(MessageTokenizer.MAX_TERM_LENGTH), 2));
+    }
+}
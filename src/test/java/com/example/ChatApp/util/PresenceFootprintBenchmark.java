@@ -0,0 +1,168 @@
+package com.example.ChatApp.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Presence bookkeeping per session: the per-user session counts of WebSocketPresenceListener
+ * plus the online set of the tracker, boxed (ConcurrentHashMap with Long keys and
+ * AtomicInteger counts) against primitive ({@link LongIntCounterMap}, {@link ConcurrentLongSet}).
+ * {@code main} prints the retained bytes per session measured with JOL, then runs the JMH
+ * connect/disconnect churn with {@code gc.alloc.rate.norm} (bytes/op):
+ * <pre>
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -Djol.magicFieldOffset=true -cp target/test-classes:target/classes:$(cat target/cp.txt) \
+ *     com.example.ChatApp.util.PresenceFootprintBenchmark
+ * </pre>
+ * One in five users has a second session, as with a phone and a browser tab. It also prints
+ * the retained bytes per online user of each {@link ClusterOnlineUserTracker} in a three-node
+ * cluster, where a node holds every user in its view and in its own or a peer's set.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PresenceFootprintBenchmark {
+
+    // time-ordered ids are spaced by the generator's node and sequence bits
+    private static final long FIRST_USER_ID = 232_031_882_051_584L;
+    private static final long ID_STEP = 1L << 10;
+
+    @Param({"10000", "500000"})
+    int sessions;
+
+    private Boxed boxed;
+    private Primitive primitive;
+    private long churnUser;
+
+    @Setup
+    public void setUp() {
+        boxed = new Boxed();
+        primitive = new Primitive();
+        populate(sessions, boxed, primitive);
+        churnUser = FIRST_USER_ID - ID_STEP;
+    }
+
+    @Benchmark
+    public boolean boxedConnectDisconnect() {
+        boxed.connect(churnUser);
+        return boxed.disconnect(churnUser);
+    }
+
+    @Benchmark
+    public boolean primitiveConnectDisconnect() {
+        primitive.connect(churnUser);
+        return primitive.disconnect(churnUser);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int count : new int[]{10_000, 500_000}) {
+            Boxed boxed = new Boxed();
+            Primitive primitive = new Primitive();
+            populate(count, boxed, primitive);
+            long boxedBytes = GraphLayout.parseInstance(boxed.counts, boxed.online).totalSize();
+            long primitiveBytes = GraphLayout.parseInstance(primitive.counts, primitive.online).totalSize();
+            System.out.printf("%,9d sessions: boxed %5.1f B/session, primitive %5.1f B/session%n",
+                    count, (double) boxedBytes / count, (double) primitiveBytes / count);
+        }
+
+        printClusterFootprint(100_000, 3);
+
+        new Runner(new OptionsBuilder()
+                .include(PresenceFootprintBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+
+    private static void printClusterFootprint(int users, int nodes) {
+        InMemoryPresenceStore store = new InMemoryPresenceStore();
+        ClusterOnlineUserTracker[] trackers = new ClusterOnlineUserTracker[nodes];
+        for (int nodeId = 0; nodeId < nodes; nodeId++) {
+            trackers[nodeId] = new ClusterOnlineUserTracker(store, nodeId, 5000, System::nanoTime);
+        }
+        for (int user = 0; user < users; user++) {
+            trackers[user % nodes].userConnected(FIRST_USER_ID + user * ID_STEP);
+        }
+        for (int round = 0; round < 2; round++) {
+            for (ClusterOnlineUserTracker tracker : trackers) {
+                tracker.heartbeat();
+            }
+        }
+        long trackerBytes = GraphLayout.parseInstance((Object[]) trackers).totalSize()
+                - GraphLayout.parseInstance(store).totalSize();
+        System.out.printf("%,9d users on %d nodes: %5.1f B/user per node, %5.1f B/user in the presence store%n",
+                users, nodes, (double) trackerBytes / users / nodes,
+                (double) store.entries.values().stream().mapToLong(e -> e.users().length * 8L).sum() / users);
+    }
+
+    private static void populate(int sessions, Boxed boxed, Primitive primitive) {
+        long userId = FIRST_USER_ID;
+        for (int session = 0; session < sessions; session++) {
+            boxed.connect(userId);
+            primitive.connect(userId);
+            if (session % 5 != 0) {
+                userId += ID_STEP;
+            }
+        }
+    }
+
+    /** The layout before: boxed keys, an AtomicInteger per user and a map node per entry. */
+    private static final class Boxed {
+
+        final Map<Long, AtomicInteger> counts = new ConcurrentHashMap<>();
+        final Set<Long> online = ConcurrentHashMap.newKeySet();
+
+        void connect(long userId) {
+            if (counts.computeIfAbsent(userId, id -> new AtomicInteger()).incrementAndGet() == 1) {
+                online.add(userId);
+            }
+        }
+
+        boolean disconnect(long userId) {
+            AtomicInteger counter = counts.get(userId);
+            if (counter != null && counter.decrementAndGet() <= 0) {
+                counts.remove(userId, counter);
+                return online.remove(userId);
+            }
+            return false;
+        }
+    }
+
+    private static final class Primitive {
+
+        final LongIntCounterMap counts = new LongIntCounterMap();
+        final ConcurrentLongSet online = new ConcurrentLongSet();
+
+        void connect(long userId) {
+            if (counts.increment(userId) == 1) {
+                online.add(userId);
+            }
+        }
+
+        boolean disconnect(long userId) {
+            return counts.decrement(userId) == 0 && online.remove(userId);
+        }
+    }
+}